@@ -0,0 +1,84 @@
+import java.io.PrintStream;
+import java.util.Locale;
+import java.util.function.IntToLongFunction;
+
+/**
+ * Minimal timing harness for the benchmarks in this folder.  Each benchmark is a function from an
+ * invocation number to a result; results are folded into a sink so the JIT cannot discard the work.
+ * Every benchmark is warmed up, then timed over several fixed-length iterations, and reported as
+ * one JSON object per line so that runs can be compared by scripts.
+ */
+public class BenchmarkHarness {
+	
+	private final int warmupIterations;
+	private final int measurementIterations;
+	private final long iterationNanos;
+	private final PrintStream out;
+	
+	// Accumulates benchmark results so they are not optimized away
+	private long sink;
+	
+	public BenchmarkHarness(int warmupIterations, int measurementIterations, long iterationMillis, PrintStream out) {
+		this.warmupIterations = warmupIterations;
+		this.measurementIterations = measurementIterations;
+		this.iterationNanos = iterationMillis * 1000000L;
+		this.out = out;
+	}
+	
+	/**
+	 * Times the given operation and prints a single result line.
+	 * 
+	 * @param name The name of the benchmark
+	 * @param numPlayers The number of players in the benchmarked scenarios
+	 * @param op Called with an increasing invocation number, which can be used to cycle inputs
+	 */
+	public void run(String name, int numPlayers, IntToLongFunction op) {
+		for (int i = 0; i < warmupIterations; i++) {
+			runIteration(op);
+		}
+		
+		double[] nanosPerOp = new double[measurementIterations];
+		long totalOps = 0;
+		for (int i = 0; i < measurementIterations; i++) {
+			long[] result = runIteration(op);
+			nanosPerOp[i] = (double) result[1] / result[0];
+			totalOps += result[0];
+		}
+		
+		double mean = 0;
+		for (double n : nanosPerOp) mean += n;
+		mean /= nanosPerOp.length;
+		double variance = 0;
+		for (double n : nanosPerOp) variance += (n - mean) * (n - mean);
+		double stdDev = nanosPerOp.length > 1 ? Math.sqrt(variance / (nanosPerOp.length - 1)) : 0;
+		
+		out.println(String.format(Locale.ROOT, 
+				"{\"benchmark\":\"%s\",\"players\":%d,\"iterations\":%d,\"ops\":%d,\"nsPerOp\":%.2f,\"nsPerOpStdDev\":%.2f,\"opsPerSec\":%.0f}",
+				name, numPlayers, measurementIterations, totalOps, mean, stdDev, 1e9 / mean));
+		out.flush();
+	}
+	
+	/**
+	 * Runs the operation repeatedly for one iteration length.
+	 * @return The number of operations run and the nanoseconds they took
+	 */
+	private long[] runIteration(IntToLongFunction op) {
+		long ops = 0;
+		int invocation = 0;
+		long start = System.nanoTime();
+		long elapsed;
+		do {
+			// Check the clock only every so often so timing does not dominate short operations
+			for (int i = 0; i < 64; i++) {
+				sink += op.applyAsLong(invocation++);
+			}
+			ops += 64;
+			elapsed = System.nanoTime() - start;
+		} while (elapsed < iterationNanos);
+		return new long[] {ops, elapsed};
+	}
+	
+	public long getSink() {
+		return sink;
+	}
+}
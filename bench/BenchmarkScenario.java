@@ -0,0 +1,106 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A realistic mid-trick position used as benchmark input: a full deal for the given number of
+ * players, a lead chosen by CommonSenseAI, and a valid response from every other player.
+ */
+public class BenchmarkScenario {
+	
+	final int numPlayers;
+	final int numDecks;
+	final GameInfo gameInfo;
+	final TrumpOrder order;
+	final List<List<Card>> hands;
+	// The hand of the leading player, before leading
+	final List<Card> leadHand;
+	final List<Card> lead;
+	// The leading player's hand with the cards left over from the deal, as the host picks up the kitty
+	final List<Card> handPlusKitty;
+	final int kittySize;
+	// The hand of the first follower and its response to the lead
+	final List<Card> followHand;
+	final long followIndices;
+	final List<List<Card>> plays;
+	final CardHand leadCards;
+	final CardHand followCards;
+	final CardHand followPlay;
+	// The same deal played with default plays until every hand has ENDGAME_CARDS cards left
+	final GameState endgame;
+	
+	static final int ENDGAME_CARDS = 5;
+	
+	BenchmarkScenario(int numPlayers, Random random) {
+		this.numPlayers = numPlayers;
+		this.numDecks = (numPlayers + 1) / 2;
+		List<Card> deck = new ArrayList<>();
+		for (int i = 0; i < numDecks; i++) {
+			for (int j = 0; j < 54; j++) {
+				deck.add(Card.of(j));
+			}
+		}
+		Collections.shuffle(deck, random);
+		
+		int numCardsPerPlayer = (deck.size() - 6) / numPlayers;
+		hands = new ArrayList<>();
+		for (int i = 0; i < numPlayers; i++) {
+			hands.add(new ArrayList<>(deck.subList(i * numCardsPerPlayer, (i + 1) * numCardsPerPlayer)));
+		}
+		
+		handPlusKitty = new ArrayList<>(hands.get(0));
+		handPlusKitty.addAll(deck.subList(numPlayers * numCardsPerPlayer, deck.size()));
+		kittySize = deck.size() - numPlayers * numCardsPerPlayer;
+		
+		Suit trumpSuit = Suit.values()[random.nextInt(Suit.values().length)];
+		Rank trumpRank = Rank.values()[random.nextInt(Rank.ACE.ordinal() + 1)];
+		gameInfo = new GameInfo(numPlayers, numDecks, 0, trumpRank, trumpSuit == Suit.TRUMP ? null : trumpSuit, null, 0);
+		order = gameInfo.getTrumpOrder();
+		
+		leadHand = hands.get(0);
+		lead = CardSelection.toCards(leadHand, new CommonSenseAI(0).lead(leadHand, gameInfo));
+		plays = new ArrayList<>();
+		plays.add(lead);
+		long firstFollow = CardSelection.NONE;
+		for (int i = 1; i < numPlayers; i++) {
+			long play = new DumbAIPlayer(i).play(plays, hands.get(i), gameInfo);
+			if (i == 1) firstFollow = play;
+			plays.add(CardSelection.toCards(hands.get(i), play));
+		}
+		followHand = hands.get(1);
+		followIndices = firstFollow;
+		
+		leadCards = CardHand.fromCards(lead, numDecks);
+		followCards = CardHand.fromCards(followHand, numDecks);
+		followPlay = CardHand.fromCards(plays.get(1), numDecks);
+		
+		CardHand[] cardHands = new CardHand[numPlayers];
+		for (int i = 0; i < numPlayers; i++) {
+			cardHands[i] = CardHand.fromCards(hands.get(i), numDecks);
+		}
+		endgame = new GameState(order, cardHands, CardHand.fromCards(deck.subList(deck.size() - 6, deck.size()), numDecks), 
+				0, new PartnerCall(Card.of(random.nextInt(52)), 1));
+		while (!endgame.isTrickComplete() || endgame.getHand(endgame.getLeader()).size() > ENDGAME_CARDS) {
+			CardHand hand = endgame.getHand(endgame.getCurrentPlayer());
+			endgame.apply(endgame.isTrickComplete() ? GameRules.getDefaultLead(hand, order) 
+					: GameRules.getDefaultPlay(endgame.getLead(), hand, order));
+		}
+	}
+	
+	/**
+	 * Deals count independent scenarios from a fixed seed, so runs are comparable.
+	 * @param numPlayers
+	 * @param count
+	 * @param seed
+	 * @return
+	 */
+	static BenchmarkScenario[] generate(int numPlayers, int count, long seed) {
+		Random random = new Random(seed);
+		BenchmarkScenario[] scenarios = new BenchmarkScenario[count];
+		for (int i = 0; i < count; i++) {
+			scenarios[i] = new BenchmarkScenario(numPlayers, random);
+		}
+		return scenarios;
+	}
+}
@@ -0,0 +1,68 @@
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs a {@link GameServer} against scripted bot clients over loopback sockets.  Every table is filled
+ * at once, so all tables are in play concurrently; the harness checks that every table finishes and
+ * reports throughput, heap used per table while all were open, and how often the engine had to choose
+ * for a client.
+ *
+ * Usage: LoopbackHarness [tables] [players] [rounds] [seed]
+ */
+public class LoopbackHarness {
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		int numTables = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+		int numPlayers = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+		int numRounds = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+		long seed = args.length > 3 ? Long.parseLong(args[3]) : System.nanoTime();
+
+		GameMetrics metrics = new GameMetrics(numPlayers);
+		AtomicLong roundsPlayed = new AtomicLong();
+		List<PlayerFactory> lineup = GameEngine.defaultLineup(numPlayers);
+		long baseline = usedHeap();
+		try (GameServer server = new GameServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0),
+				numPlayers, numRounds, seed);
+				GameClient client = new GameClient(id -> lineup.get(id).create(id))) {
+			server.setMetrics(metrics);
+			server.setListener(result -> roundsPlayed.addAndGet(result.getNumRounds()));
+			server.start();
+			client.start();
+
+			long start = System.nanoTime();
+			InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getPort());
+			for (int i = 0; i < numTables * numPlayers; i++) {
+				client.connect(address);
+			}
+			while (server.getTablesStarted() < numTables) {
+				Thread.sleep(1);
+			}
+			long connected = System.nanoTime();
+			long perTable = (usedHeap() - baseline) / numTables;
+			System.out.println(String.format(Locale.ROOT, "Connected %d clients in %.2f s, %d tables started, ~%d bytes of heap per table",
+					numTables * numPlayers, (connected - start) / 1e9, server.getTablesStarted(), perTable));
+
+			while (client.getNumOpen() > 0) {
+				Thread.sleep(10);
+			}
+			double seconds = (System.nanoTime() - start) / 1e9;
+			System.out.println(String.format(Locale.ROOT, "%d of %d tables finished, %d rounds in %.2f s, %.0f rounds/s",
+					server.getTablesFinished(), numTables, roundsPlayed.get(), seconds, roundsPlayed.get() / seconds));
+			System.out.println(metrics);
+			if (client.getNumFinished() != numTables * numPlayers) {
+				System.out.println((numTables * numPlayers - client.getNumFinished()) + " clients were disconnected early");
+				System.exit(1);
+			}
+		}
+	}
+
+	private static long usedHeap() {
+		System.gc();
+		Runtime runtime = Runtime.getRuntime();
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
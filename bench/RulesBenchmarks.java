@@ -0,0 +1,116 @@
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+import java.util.function.IntToLongFunction;
+
+/**
+ * Benchmarks of the rule engine and AI hot paths on realistic deals for 4, 6 and 8 players.
+ * Prints one JSON line per benchmark, to the console or to the given file.
+ * 
+ * Usage: RulesBenchmarks [output file] [benchmark name filter]
+ */
+public class RulesBenchmarks {
+	
+	private static final int[] PLAYER_COUNTS = {4, 6, 8};
+	// Number of distinct scenarios cycled through, so results do not depend on one lucky deal
+	private static final int NUM_SCENARIOS = 256;
+	private static final long SEED = 20161018L;
+	
+	private final BenchmarkHarness harness;
+	private final String filter;
+	
+	public RulesBenchmarks(BenchmarkHarness harness, String filter) {
+		this.harness = harness;
+		this.filter = filter;
+	}
+	
+	public static void main(String[] args) throws FileNotFoundException {
+		PrintStream out = args.length > 0 ? new PrintStream(new FileOutputStream(args[0])) : System.out;
+		String filter = args.length > 1 ? args[1] : null;
+		BenchmarkHarness harness = new BenchmarkHarness(5, 10, 200, out);
+		RulesBenchmarks benchmarks = new RulesBenchmarks(harness, filter);
+		for (int numPlayers : PLAYER_COUNTS) {
+			benchmarks.runAll(BenchmarkScenario.generate(numPlayers, NUM_SCENARIOS, SEED + numPlayers));
+		}
+		if (out != System.out) out.close();
+	}
+	
+	private void runAll(BenchmarkScenario[] s) {
+		int numPlayers = s[0].numPlayers;
+		int mask = s.length - 1;
+		
+		run("isValidLead", numPlayers, i -> GameRules.isValidLead(s[i & mask].lead, s[i & mask].order) ? 1 : 0);
+		run("isValidLeadCardHand", numPlayers, i -> GameRules.isValidLead(s[i & mask].leadCards, s[i & mask].order) ? 1 : 0);
+		run("isValidPlay", numPlayers, i -> {
+			BenchmarkScenario sc = s[i & mask];
+			return GameRules.isValidPlay(sc.lead, sc.followIndices, sc.followHand, sc.order) ? 1 : 0;
+		});
+		run("isValidPlayCardHand", numPlayers, i -> {
+			BenchmarkScenario sc = s[i & mask];
+			return GameRules.isValidPlay(sc.leadCards, sc.followPlay, sc.followCards, sc.order) ? 1 : 0;
+		});
+		run("partitionCardsToStraights", numPlayers, i -> {
+			BenchmarkScenario sc = s[i & mask];
+			return GameRules.partitionCardsToStraights(sc.leadHand, Suit.TRUMP, 2, sc.order).length;
+		});
+		run("getWinningIndex", numPlayers, i -> GameRules.getWinningIndex(s[i & mask].plays, s[i & mask].order));
+		run("getCardsMultiplicity", numPlayers, i -> {
+			BenchmarkScenario sc = s[i & mask];
+			return GameAIUtils.getCardsMultiplicity(sc.followHand, sc.order.getSuit(sc.lead.get(0)), 2, sc.order).length;
+		});
+		
+		// The partner odds asked by every player, from the endgame of the scenario
+		PartnerTracker[] partners = new PartnerTracker[s.length];
+		for (int i = 0; i < s.length; i++) {
+			KnowledgeTracker knowledge = new KnowledgeTracker(numPlayers, s[i].numDecks);
+			knowledge.reset(s[i].order);
+			partners[i] = new PartnerTracker(knowledge, s[i].endgame);
+		}
+		run("PartnerTracker.getPartnerProbability", numPlayers, i -> {
+			double total = 0;
+			for (int p = 0; p < numPlayers; p++) {
+				total += partners[i & mask].getPartnerProbability(p, -1, 0);
+			}
+			return (long) (total * 1000);
+		});
+		
+		// One player per scenario and hand, as each keeps an index of its own hand between decisions
+		CommonSenseAI[] leaders = new CommonSenseAI[s.length];
+		CommonSenseAI[] followers = new CommonSenseAI[s.length];
+		for (int i = 0; i < s.length; i++) {
+			leaders[i] = new CommonSenseAI(0);
+			followers[i] = new CommonSenseAI(1);
+		}
+		DumbAIPlayer dumb = new DumbAIPlayer(1);
+		run("CommonSenseAI.lead", numPlayers, i -> CardSelection.size(leaders[i & mask].lead(s[i & mask].leadHand, s[i & mask].gameInfo)));
+		run("CommonSenseAI.play", numPlayers, i -> {
+			BenchmarkScenario sc = s[i & mask];
+			return CardSelection.size(followers[i & mask].play(sc.plays.subList(0, 1), sc.followHand, sc.gameInfo));
+		});
+		run("KittyOptimizer.choose", numPlayers, i -> {
+			BenchmarkScenario sc = s[i & mask];
+			return KittyOptimizer.choose(sc.handPlusKitty, sc.kittySize, sc.order, Long.MAX_VALUE);
+		});
+		run("DumbAIPlayer.lead", numPlayers, i -> CardSelection.size(dumb.lead(s[i & mask].leadHand, s[i & mask].gameInfo)));
+		run("DumbAIPlayer.play", numPlayers, i -> {
+			BenchmarkScenario sc = s[i & mask];
+			return CardSelection.size(dumb.play(sc.plays.subList(0, 1), sc.followHand, sc.gameInfo));
+		});
+		
+		// Solved from an empty table each time, and only for 4 players, whose endgames take milliseconds
+		// rather than seconds
+		if (numPlayers == 4) {
+			EndgameSolver solver = new EndgameSolver(numPlayers, s[0].numDecks, 1 << 20);
+			run("EndgameSolver.solve", numPlayers, i -> {
+				solver.clear();
+				solver.solve(s[i & mask].endgame);
+				return solver.getValue();
+			});
+		}
+	}
+	
+	private void run(String name, int numPlayers, IntToLongFunction op) {
+		if (filter != null && !name.contains(filter)) return;
+		harness.run(name, numPlayers, op);
+	}
+}
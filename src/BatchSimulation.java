@@ -0,0 +1,143 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Runs many independent rounds headlessly, spread over a fork-join pool.  Every round gets its own
+ * engine seeded from the master seed and the round's index, so results do not depend on the number
+ * of threads or the order in which rounds are scheduled, and threads share no state while running.
+ * Any round can be replayed on its own with {@link #runRound}.
+ */
+public class BatchSimulation {
+	
+	// Rounds run sequentially by one task before splitting stops being worthwhile
+	private static final int ROUNDS_PER_TASK = 64;
+	
+	private final int numRounds;
+	private final int numPlayers;
+	private final int numThreads;
+	private final long masterSeed;
+	// Destination for the record of every round, or null
+	private GameRecordWriter recordWriter;
+	// Instrumentation shared by every engine, or null
+	private GameMetrics metrics;
+	// Deals used by the rounds, by round index, or null to shuffle
+	private DealBank dealBank;
+	// Whether engines print the progress of their round, for replaying single rounds
+	private boolean verbose;
+	
+	public BatchSimulation(int numRounds, int numPlayers, int numThreads, long masterSeed) {
+		this.numRounds = numRounds;
+		this.numPlayers = numPlayers;
+		this.numThreads = numThreads;
+		this.masterSeed = masterSeed;
+	}
+	
+	/**
+	 * Sets where every round played is recorded, or null to not record.
+	 * @param recordWriter
+	 */
+	public void setRecordWriter(GameRecordWriter recordWriter) {
+		this.recordWriter = recordWriter;
+	}
+	
+	/**
+	 * Sets the metrics shared by the engines of every round, or null to not measure.
+	 * @param metrics
+	 */
+	public void setMetrics(GameMetrics metrics) {
+		this.metrics = metrics;
+	}
+	
+	/**
+	 * Sets the bank that round i of the batch takes deal i from, or null to shuffle.  The bank must hold 
+	 * at least as many deals as there are rounds, of (numPlayers + 1) / 2 decks.
+	 * @param dealBank
+	 */
+	public void setDealBank(DealBank dealBank) {
+		int numDecks = (numPlayers + 1) / 2;
+		if (dealBank != null && dealBank.getNumDecks() != numDecks) {
+			throw new IllegalArgumentException("Deal bank has " + dealBank.getNumDecks() + " decks, batch uses " + numDecks);
+		}
+		if (dealBank != null && dealBank.getNumDeals() < numRounds) {
+			throw new IllegalArgumentException("Deal bank holds " + dealBank.getNumDeals() + " deals, batch needs " + numRounds);
+		}
+		this.dealBank = dealBank;
+	}
+	
+	public void setVerbose(boolean verbose) {
+		this.verbose = verbose;
+	}
+	
+	/**
+	 * Runs all the rounds, blocking until they are finished.
+	 * @return The aggregated results of every round
+	 */
+	public SimulationStats run() {
+		ForkJoinPool pool = new ForkJoinPool(numThreads);
+		try {
+			return pool.invoke(new RoundsTask(0, numRounds));
+		} finally {
+			pool.shutdown();
+		}
+	}
+	
+	/**
+	 * Plays a single round of the batch; the same index always produces the same round.
+	 * @param roundIndex
+	 * @return
+	 */
+	public RoundResult runRound(int roundIndex) {
+		GameEngine engine = new GameEngine(numPlayers, roundSeed(masterSeed, roundIndex));
+		engine.setVerbose(verbose);
+		engine.setRecordWriter(recordWriter);
+		engine.setMetrics(metrics);
+		engine.setDealBank(dealBank, roundIndex);
+		return engine.start();
+	}
+	
+	/**
+	 * Derives the seed of a single round from the master seed, so that neighbouring rounds
+	 * get unrelated random sequences (SplitMix64 finalizer).
+	 * @param masterSeed
+	 * @param roundIndex
+	 * @return
+	 */
+	public static long roundSeed(long masterSeed, long roundIndex) {
+		long z = masterSeed + (roundIndex + 1) * 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+	
+	/**
+	 * Plays the rounds with indices in [from, to), splitting the range in half until it is small.
+	 */
+	private class RoundsTask extends RecursiveTask<SimulationStats> {
+		private static final long serialVersionUID = 1L;
+		private final int from;
+		private final int to;
+		
+		RoundsTask(int from, int to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected SimulationStats compute() {
+			if (to - from <= ROUNDS_PER_TASK) {
+				SimulationStats stats = new SimulationStats(numPlayers);
+				for (int i = from; i < to; i++) {
+					stats.add(runRound(i));
+				}
+				return stats;
+			}
+			
+			int mid = (from + to) >>> 1;
+			RoundsTask left = new RoundsTask(from, mid);
+			left.fork();
+			SimulationStats stats = new RoundsTask(mid, to).compute();
+			stats.merge(left.join());
+			return stats;
+		}
+	}
+}
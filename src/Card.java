@@ -1,16 +1,24 @@
-
+/**
+ * A physical card.  Cards are pure values; how a card plays under a given trump is described by
+ * {@link TrumpOrder}, so the same Card may be shared freely between engines and threads.
+ */
 public class Card implements Comparable<Card> {
 
+	// One shared instance of each valid card
+	private static final Card[] CARDS = new Card[54];
+	
+	static {
+		for (int id = 0; id < CARDS.length; id++) {
+			CARDS[id] = new Card(id);
+		}
+	}
+
 	// The actual id of this card, a number from 0 to 53
-	private int id;
+	private final int id;
 	// The suit, as written on the physical card
 	private final Suit baseSuit;
 	// The rank, as written on the physical card
 	private final Rank baseRank;
-	// The suit, for the purposes of playing (includes trump)
-	private Suit suit;
-	// The rank, for the purposes of playing (reorders to account for trump)
-	private Rank rank;
 
 	public Card(int id) {
 		this.id = id;
@@ -29,52 +37,33 @@ public class Card implements Comparable<Card> {
 	 * @param rank
 	 */
 	public Card(Suit suit, Rank rank) {
-		// check for jokers everything else is simple
-		if (rank.ordinal() >= Rank.JOKER.ordinal()) {
-			this.baseSuit = Suit.TRUMP;
-			this.baseRank = rank;
-			this.id = 52 + (rank == Rank.COLOR_JOKER ? 1 : 0);
-		} else {
-			this.baseSuit = suit;
-			this.baseRank = rank;
-			this.id = 13 * suit.ordinal() + rank.ordinal();
-		}
+		this(getId(suit, rank));
 	}
 	
-	private Card(Card card) {
-		this.id = card.id;
-		this.baseSuit = card.getBaseSuit();
-		this.suit = card.getSuit();
-		this.baseRank = card.getBaseRank();
-		this.rank = card.getRank();
+	/**
+	 * Returns the shared instance of the card with the given id.  Since cards are immutable, the same 
+	 * instance can be handed to every player without copying.
+	 * @param id
+	 * @return
+	 */
+	public static Card of(int id) {
+		return CARDS[id];
 	}
 	
 	/**
-	 * Updates the practical suit and rank of this physical card, assuming the given suit and rank
-	 * are trump.  Does not necessarily declare this particular card to be trump (if it is not trump,
-	 * its suit and rank will match its base suit and rank)
-	 * 
-	 * @param trumpSuit Null if no trump
-	 * @param trumpRank 2 through A only
+	 * Returns the shared instance of the given card.
+	 * @param suit Ignored for jokers
+	 * @param rank
+	 * @return
 	 */
-	public void setTrump(Suit trumpSuit, Rank trumpRank) {
-		if (id >= 52) {
-			suit = baseSuit;
-			rank = baseRank;
-			return;
-		}
-		
-		if (baseSuit == trumpSuit) {
-			suit = Suit.TRUMP;
-		} else {
-			suit = baseSuit;
-		}
-		if (baseRank == trumpRank) {
-			suit = Suit.TRUMP;
-			rank = (baseSuit == trumpSuit) ? Rank.SUITED_NUMBER : Rank.NUMBER;
-		} else {
-			rank = baseRank;
-		}
+	public static Card of(Suit suit, Rank rank) {
+		return CARDS[getId(suit, rank)];
+	}
+	
+	private static int getId(Suit suit, Rank rank) {
+		// check for jokers everything else is simple
+		if (rank.ordinal() >= Rank.JOKER.ordinal()) return 52 + (rank == Rank.COLOR_JOKER ? 1 : 0);
+		return 13 * suit.ordinal() + rank.ordinal();
 	}
 	
 	@Override
@@ -92,14 +81,6 @@ public class Card implements Comparable<Card> {
 		return baseRank;
 	}
 	
-	public Suit getSuit() {
-		return suit;
-	}
-	
-	public Rank getRank() {
-		return rank;
-	}
-	
 	public int getId() {
 		return id;
 	}
@@ -108,10 +89,6 @@ public class Card implements Comparable<Card> {
 		return id > 51;
 	}
 	
-	public boolean isTrump() {
-		return this.getSuit() == Suit.TRUMP;
-	}
-	
 	public int getPointValue() {
 		if (baseRank == Rank.FIVE) return 5;
 		if (baseRank == Rank.TEN || baseRank == Rank.KING) return 10;
@@ -119,28 +96,12 @@ public class Card implements Comparable<Card> {
 	}
 
 	/**
-	 * Compares this card, based on suit and rank (not base suit and base rank).
-	 * Gives an absolute ordering to the cards, but does not necessarily give 
-	 * the card that would win a trick when played.  Used for displaying cards.
+	 * Compares this card by id, i.e. by base suit and then base rank.  Does not account for
+	 * trump; use {@link TrumpOrder} to order cards for play or display.
 	 */
 	@Override
 	public int compareTo(Card o) {
-		if (getSuit() == Suit.TRUMP) {
-			if (o.getSuit() == Suit.TRUMP) {
-				int dif = getRank().ordinal() - o.getRank().ordinal();
-				if (dif != 0) return dif;
-				// Differentiate between offsuit trumps
-				return getId() - o.getId();
-			} else {
-				return 1;
-			}
-		} else {
-			if (o.getSuit() == Suit.TRUMP) {
-				return -1;
-			} else {
-				return getId() - o.getId();
-			}
-		}
+		return getId() - o.getId();
 	}
 	
 	@Override
@@ -150,12 +111,9 @@ public class Card implements Comparable<Card> {
 		return getId() == other.getId();
 	}
 	
-	/**
-	 * Returns a card identical to this one, but in a separate object
-	 * @return
-	 */
-	public Card clone() {
-		return new Card(this);
+	@Override
+	public int hashCode() {
+		return id;
 	}
 	
 	/**
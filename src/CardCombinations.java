@@ -0,0 +1,93 @@
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Lazily enumerates every distinct sub-multiset of a given size from the cards of a hand whose ids
+ * are in a mask.  Identical cards are never distinguished, so each combination is produced exactly
+ * once no matter how many copies of a card are held.  Each combination may optionally be added to a
+ * fixed base set of cards.
+ */
+public class CardCombinations implements Iterator<CardHand> {
+
+	private final int numDecks;
+	private final CardHand base;
+	// The distinct ids available, and how many copies of each may be taken
+	private final int[] ids;
+	private final int[] caps;
+	// Copies of each id in the current combination, or null when exhausted
+	private int[] counts;
+
+	/**
+	 * @param hand The cards to choose from
+	 * @param mask Only ids in this mask are chosen
+	 * @param size The number of cards in each combination
+	 * @param base Cards included in every combination, or null
+	 */
+	public CardCombinations(CardHand hand, long mask, int size, CardHand base) {
+		this.numDecks = hand.getNumDecks();
+		this.base = base;
+		long distinct = hand.distinct() & mask;
+		ids = new int[Long.bitCount(distinct)];
+		caps = new int[ids.length];
+		int n = 0;
+		for (long bits = distinct; bits != 0; bits &= bits - 1) {
+			int id = Long.numberOfTrailingZeros(bits);
+			ids[n] = id;
+			caps[n] = hand.count(id);
+			n++;
+		}
+
+		counts = new int[ids.length];
+		if (!fill(0, size)) counts = null;
+	}
+
+	@Override
+	public boolean hasNext() {
+		return counts != null;
+	}
+
+	@Override
+	public CardHand next() {
+		if (counts == null) throw new NoSuchElementException();
+		CardHand combination = new CardHand(numDecks);
+		if (base != null) combination.copyFrom(base);
+		for (int i = 0; i < ids.length; i++) {
+			for (int c = 0; c < counts[i]; c++) {
+				combination.add(ids[i]);
+			}
+		}
+		advance();
+		return combination;
+	}
+
+	/**
+	 * Moves to the next combination: finds the rightmost position that can give up one card to the
+	 * positions after it, then refills those positions as far left as possible.
+	 */
+	private void advance() {
+		int tail = 0;
+		int tailCapacity = 0;
+		for (int i = ids.length - 1; i >= 0; i--) {
+			if (counts[i] > 0 && tailCapacity > tail) {
+				counts[i]--;
+				fill(i + 1, tail + 1);
+				return;
+			}
+			tail += counts[i];
+			tailCapacity += caps[i];
+		}
+		counts = null;
+	}
+
+	/**
+	 * Distributes amount cards over positions from onwards, as far left as possible.
+	 * @return false if there is not enough room
+	 */
+	private boolean fill(int from, int amount) {
+		for (int i = from; i < ids.length; i++) {
+			counts[i] = Math.min(caps[i], amount);
+			amount -= counts[i];
+		}
+		return amount == 0;
+	}
+}
@@ -0,0 +1,293 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compact multiset of cards indexed by card id, for games played with any number of decks.  Layer k
+ * is a bitboard of the ids held at least k + 1 times, so counting cards of a suit or finding all pairs
+ * reduces to a few masks and bit counts instead of building histograms.  Combined with the suit
+ * masks of a {@link TrumpOrder}, the rules can be evaluated without touching any Card objects.
+ */
+public class CardHand {
+
+	public static final int NUM_IDS = 54;
+	public static final long ALL_IDS = (1L << NUM_IDS) - 1;
+
+	// layers[k] has bit id set iff at least k + 1 copies of card id are held
+	private final long[] layers;
+	private int size;
+
+	public CardHand(int numDecks) {
+		this.layers = new long[numDecks];
+		this.size = 0;
+	}
+
+	private CardHand(CardHand other) {
+		this.layers = other.layers.clone();
+		this.size = other.size;
+	}
+
+	/**
+	 * Builds a hand containing every card in the given list.
+	 * @param cards
+	 * @param numDecks
+	 * @return
+	 */
+	public static CardHand fromCards(List<Card> cards, int numDecks) {
+		CardHand hand = new CardHand(numDecks);
+		for (Card c : cards) {
+			hand.add(c.getId());
+		}
+		return hand;
+	}
+
+	/**
+	 * Replaces the contents of this hand with the selected cards of the given list.  Used to reuse a 
+	 * single scratch hand when validating plays.
+	 * @param cards
+	 * @param selection A {@link CardSelection} of cards
+	 */
+	public void setCards(List<Card> cards, long selection) {
+		clear();
+		for (long bits = selection; bits != 0; bits &= bits - 1) {
+			add(cards.get(Long.numberOfTrailingZeros(bits)).getId());
+		}
+	}
+
+	/**
+	 * Replaces the contents of this hand with the given cards.
+	 * @param cards
+	 */
+	public void setCards(List<Card> cards) {
+		clear();
+		for (Card c : cards) {
+			add(c.getId());
+		}
+	}
+
+	public void add(int id) {
+		long bit = 1L << id;
+		int k = 0;
+		while ((layers[k] & bit) != 0) k++;
+		layers[k] |= bit;
+		size++;
+	}
+
+	public void add(Card card) {
+		add(card.getId());
+	}
+
+	/**
+	 * Removes a single copy of the given card id.
+	 * @param id
+	 * @return false if the card was not in the hand
+	 */
+	public boolean remove(int id) {
+		int count = count(id);
+		if (count == 0) return false;
+		layers[count - 1] &= ~(1L << id);
+		size--;
+		return true;
+	}
+
+	public boolean remove(Card card) {
+		return remove(card.getId());
+	}
+
+	/**
+	 * Adds every card of other to this hand.
+	 * @param other
+	 */
+	public void addAll(CardHand other) {
+		for (int k = 0; k < other.layers.length; k++) {
+			for (long bits = other.layers[k]; bits != 0; bits &= bits - 1) {
+				add(Long.numberOfTrailingZeros(bits));
+			}
+		}
+	}
+
+	/**
+	 * Removes every card of other from this hand.
+	 * @param other A subset of this hand
+	 */
+	public void removeAll(CardHand other) {
+		for (int k = other.layers.length - 1; k >= 0; k--) {
+			for (long bits = other.layers[k]; bits != 0; bits &= bits - 1) {
+				remove(Long.numberOfTrailingZeros(bits));
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of copies of the given card id in this hand
+	 * @param id
+	 * @return
+	 */
+	public int count(int id) {
+		long bit = 1L << id;
+		int k = 0;
+		while (k < layers.length && (layers[k] & bit) != 0) k++;
+		return k;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public int getNumDecks() {
+		return layers.length;
+	}
+
+	public void clear() {
+		for (int k = 0; k < layers.length; k++) {
+			layers[k] = 0;
+		}
+		size = 0;
+	}
+
+	/**
+	 * Overwrites this hand with the contents of other, which must use the same number of decks.
+	 * @param other
+	 */
+	public void copyFrom(CardHand other) {
+		System.arraycopy(other.layers, 0, layers, 0, layers.length);
+		size = other.size;
+	}
+
+	/**
+	 * Removes every card whose id is not in the given mask.
+	 * @param mask
+	 */
+	public void retain(long mask) {
+		size = 0;
+		for (int k = 0; k < layers.length; k++) {
+			layers[k] &= mask;
+			size += Long.bitCount(layers[k]);
+		}
+	}
+
+	public CardHand copy() {
+		return new CardHand(this);
+	}
+
+	/**
+	 * Returns a bitboard of every card id held at least multiplicity times.
+	 * @param multiplicity >= 1
+	 * @return
+	 */
+	public long atLeast(int multiplicity) {
+		if (multiplicity > layers.length) return 0;
+		return layers[multiplicity - 1];
+	}
+
+	/**
+	 * Returns a bitboard of every distinct card id in this hand.
+	 * @return
+	 */
+	public long distinct() {
+		return layers[0];
+	}
+
+	/**
+	 * Returns the number of cards in this hand whose id is in the given mask, counting copies.
+	 * @param mask
+	 * @return
+	 */
+	public int countIn(long mask) {
+		int count = 0;
+		for (int k = 0; k < layers.length; k++) {
+			long layer = layers[k] & mask;
+			if (layer == 0) break;
+			count += Long.bitCount(layer);
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the number of disjoint groups of multiplicity identical cards with ids in the given mask.
+	 * @param mask
+	 * @param multiplicity >= 1
+	 * @return
+	 */
+	public int groupCount(long mask, int multiplicity) {
+		int count = 0;
+		for (int k = multiplicity - 1; k < layers.length; k += multiplicity) {
+			long layer = layers[k] & mask;
+			if (layer == 0) break;
+			count += Long.bitCount(layer);
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the count shared by every card in this hand, or 0 if there exist multiple counts
+	 * or the hand is empty.
+	 * @return
+	 */
+	public int uniformCount() {
+		if (size == 0) return 0;
+		int count = count(Long.numberOfTrailingZeros(layers[0]));
+		if (layers[count - 1] != layers[0]) return 0;
+		if (count < layers.length && layers[count] != 0) return 0;
+		return count;
+	}
+
+	/**
+	 * Returns whether every copy of every card in this hand is also in other.
+	 * @param other
+	 * @return
+	 */
+	public boolean isSubsetOf(CardHand other) {
+		for (int k = 0; k < layers.length; k++) {
+			long otherLayer = k < other.layers.length ? other.layers[k] : 0;
+			if ((layers[k] & ~otherLayer) != 0) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the cards of this hand, including copies, in increasing order of id
+	 * @return
+	 */
+	public List<Card> toCards() {
+		List<Card> cards = new ArrayList<>(size);
+		for (long bits = layers[0]; bits != 0; bits &= bits - 1) {
+			int id = Long.numberOfTrailingZeros(bits);
+			int count = count(id);
+			for (int i = 0; i < count; i++) {
+				cards.add(Card.of(id));
+			}
+		}
+		return cards;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (!(o instanceof CardHand)) return false;
+		CardHand other = (CardHand) o;
+		int maxLayers = Math.max(layers.length, other.layers.length);
+		for (int k = 0; k < maxLayers; k++) {
+			long layer = k < layers.length ? layers[k] : 0;
+			long otherLayer = k < other.layers.length ? other.layers[k] : 0;
+			if (layer != otherLayer) return false;
+		}
+		return true;
+	}
+
+	@Override
+	public int hashCode() {
+		long hash = 0;
+		for (int k = 0; k < layers.length && layers[k] != 0; k++) {
+			hash = hash * 31 + layers[k];
+		}
+		return (int) (hash ^ (hash >>> 32));
+	}
+
+	@Override
+	public String toString() {
+		return toCards().toString();
+	}
+}
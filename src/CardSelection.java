@@ -0,0 +1,96 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Static helpers for card selections, the primitive type players use to pick cards from a hand.  A
+ * selection is a long with bit i set iff the card at index i of the hand is selected, so building,
+ * checking and walking a selection never boxes or allocates.  Selected indices are always visited in
+ * increasing order, which lets cards be removed from a list without sorting the indices first.
+ * Hands, including the host's hand plus the kitty, may hold at most MAX_HAND_SIZE cards.
+ */
+public class CardSelection {
+
+	public static final int MAX_HAND_SIZE = 64;
+	// The empty selection, also used by players to decline to declare trump
+	public static final long NONE = 0;
+
+	/**
+	 * Returns the selection of the given indices.
+	 * @param indices Between 0 and MAX_HAND_SIZE - 1
+	 * @return
+	 */
+	public static long of(int... indices) {
+		long selection = NONE;
+		for (int i : indices) {
+			selection = with(selection, i);
+		}
+		return selection;
+	}
+
+	/**
+	 * Returns the selection of the first count indices of a hand.
+	 * @param count Between 0 and MAX_HAND_SIZE
+	 * @return
+	 */
+	public static long firstN(int count) {
+		return count == MAX_HAND_SIZE ? -1L : (1L << count) - 1;
+	}
+
+	public static long with(long selection, int index) {
+		return selection | 1L << index;
+	}
+
+	public static boolean contains(long selection, int index) {
+		return (selection >>> index & 1) != 0;
+	}
+
+	public static int size(long selection) {
+		return Long.bitCount(selection);
+	}
+
+	public static boolean isEmpty(long selection) {
+		return selection == NONE;
+	}
+
+	/**
+	 * Returns the lowest selected index, or -1 if the selection is empty.
+	 * @param selection
+	 * @return
+	 */
+	public static int first(long selection) {
+		return selection == NONE ? -1 : Long.numberOfTrailingZeros(selection);
+	}
+
+	/**
+	 * Returns the highest selected index, or -1 if the selection is empty.
+	 * @param selection
+	 * @return
+	 */
+	public static int last(long selection) {
+		return 63 - Long.numberOfLeadingZeros(selection);
+	}
+
+	/**
+	 * Returns whether every selected index is within a hand of the given size.
+	 * @param selection
+	 * @param handSize
+	 * @return
+	 */
+	public static boolean isWithin(long selection, int handSize) {
+		return handSize >= MAX_HAND_SIZE || selection >>> handSize == 0;
+	}
+
+	/**
+	 * Returns the selected cards of the given hand, in hand order.
+	 * @param hand
+	 * @param selection
+	 * @return
+	 */
+	public static List<Card> toCards(List<Card> hand, long selection) {
+		List<Card> cards = new ArrayList<>(size(selection));
+		for (long bits = selection; bits != 0; bits &= bits - 1) {
+			cards.add(hand.get(Long.numberOfTrailingZeros(bits)));
+		}
+		return cards;
+	}
+}
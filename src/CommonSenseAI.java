@@ -1,10 +1,15 @@
-import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
 
 public class CommonSenseAI extends Player {
 
+	// The most nodes the kitty search tries in each suit; a node budget rather than a time budget keeps
+	// every round replayable
+	static final long KITTY_NODES = 100000;
+
+	// The pairs and tractors of the hand, kept up to date as cards are drawn and played
+	private TractorIndex handIndex;
+	private int round;
+
 	public CommonSenseAI(int id) {
 		super(id);
 		// TODO Auto-generated constructor stub
@@ -12,139 +17,145 @@ public class CommonSenseAI extends Player {
 
 	@Override
 	void initializeRound(GameInfo gameInfo) {
-		// TODO Auto-generated method stub
-
+		handIndex = new TractorIndex(gameInfo.getNumDecks(), gameInfo.getTrumpOrder());
+		round = gameInfo.getRound();
 	}
 
 	@Override
-	Set<Integer> draw(Card newCard, List<Card> hand, GameInfo gameInfo) {
-		if (gameInfo.getRound() == 0) {
-			if (gameInfo.getTrumpSuit() == null && newCard.getBaseRank() == gameInfo.getTrumpRank()) {
+	int draw(Card newCard, DeclarationState declarations) {
+		if (handIndex != null) {
+			if (handIndex.getOrder() != declarations.getTrumpOrder()) handIndex.setOrder(declarations.getTrumpOrder());
+			handIndex.add(newCard);
+		}
+		if (round == 0) {
+			if (declarations.getTrumpSuit() == null && newCard.getBaseRank() == declarations.getTrumpRank()) {
 				// no one else called yet
-				Set<Integer> trump = new HashSet<>();
-				trump.add(hand.indexOf(newCard));
-				return trump;
+				return DeclarationState.bid(newCard, 1);
 			}
 		}
-		return null;
+		return DeclarationState.NONE;
 	}
 
 	@Override
-	Set<Integer> handleKitty(List<Card> handPlusKitty, int kittySize, GameInfo gameInfo) {
-		// Void the shortest suits
-		Map<Suit, List<Integer>> sortedCards = GameAIUtils.sortCardsBySuit(handPlusKitty);
-		Set<Integer> returnIndices = new HashSet<Integer>();
-		while (returnIndices.size() < kittySize) {
-			int numNeeded = kittySize - returnIndices.size();
-			Suit shortestSuit = GameAIUtils.getShortestOffSuit(sortedCards);
-			List<Integer> shortestCards = sortedCards.get(shortestSuit);
-			for (int i = 0; i < Math.min(shortestCards.size(), numNeeded); i++) {
-				returnIndices.add(shortestCards.get(i));
-			}
-			sortedCards.remove(shortestSuit);
-		}
-		
-		return returnIndices;
+	long handleKitty(List<Card> handPlusKitty, int kittySize, GameInfo gameInfo) {
+		return KittyOptimizer.choose(handPlusKitty, kittySize, gameInfo.getTrumpOrder(), KITTY_NODES);
 	}
 
 	@Override
 	PartnerCall callPartner(List<Card> hand, List<Card> kitty, GameInfo gameInfo) {
 		// TODO Auto-generated method stub
+		TrumpOrder order = gameInfo.getTrumpOrder();
 		int id = 0;
 		Card c;
 		do {
-			c = new Card(id);
+			c = Card.of(id);
 			id++;
-			c.setTrump(gameInfo.getTrumpSuit(), gameInfo.getTrumpRank());
-		} while (c.isTrump() || hand.contains(c));
+		} while (order.isTrump(c) || hand.contains(c));
 		
 		return new PartnerCall(c, 1);
 	}
 
 	@Override
-	Set<Integer> lead(List<Card> hand, GameInfo gameInfo) {
+	long lead(List<Card> hand, GameInfo gameInfo) {
 		// TODO Auto-generated method stub
-		Set<Integer> lead = new HashSet<>();
 		// Attempt to play any tractors first, in decreasing order of size
+		TractorIndex index = getHandIndex(hand, gameInfo);
 		for (int multiplicity = gameInfo.getNumDecks(); multiplicity>= 2; multiplicity--) {
 			int maxStraightLen = 0;
-			Set<Integer> maxIndices = null;
+			Suit maxSuit = null;
 			for (Suit suit : Suit.values()) {
-				List<Set<Integer>> partition = GameRules.partitionCardsToStraights(hand, suit, multiplicity);
-				for (Set<Integer> straight : partition) {
-					if (straight.size() > maxStraightLen) {
-						maxStraightLen = straight.size();
-						maxIndices = straight;
-					}
+				if (index.getLongestTractor(suit, multiplicity) > maxStraightLen) {
+					maxStraightLen = index.getLongestTractor(suit, multiplicity);
+					maxSuit = suit;
 				}
 			}
 			
-			if (maxIndices != null) {
-				return maxIndices;
+			if (maxSuit != null) {
+				return index.selectLongestTractor(hand, maxSuit, multiplicity);
 			}
 		}
 		
 		// Default to best card TODO
-		lead.add(hand.size() - 1);
-		return lead;
+		return CardSelection.of(hand.size() - 1);
 	}
 
 	@Override
-	Set<Integer> play(List<List<Card>> previousPlays, List<Card> hand, GameInfo gameInfo) {
+	long play(List<List<Card>> previousPlays, List<Card> hand, GameInfo gameInfo) {
 		// TODO Auto-generated method stub
+		TrumpOrder order = gameInfo.getTrumpOrder();
 		List<Card> lead = previousPlays.get(0);
-		Suit suit = lead.get(0).getSuit();
-		Set<Integer> play = new HashSet<>();
+		Suit suit = order.getSuit(lead.get(0));
+		long play = CardSelection.NONE;
 		int pointsSoFar = GameRules.getNumPointsPlay(previousPlays);
 		if (lead.size() == 1) {
 			// special single card-case
 			// check for matching suit; if not fill hand with garbage
-			List<Integer> sameSuit = GameAIUtils.getSameSuit(hand, suit);
-			if (!sameSuit.isEmpty()) {
-				play.add(sameSuit.get(sameSuit.size() - 1));
-			} else {
-				if (pointsSoFar > 0) {
-					// Attempt to trump points
-					fillPlay(play, hand, lead.size(), Suit.TRUMP);
-				}
-				fillPlay(play, hand, lead.size(), null);
+			long sameSuit = GameAIUtils.getSameSuit(hand, suit, order);
+			if (!CardSelection.isEmpty(sameSuit)) {
+				return CardSelection.of(CardSelection.last(sameSuit));
 			}
-			return play;
+			if (pointsSoFar > 0) {
+				// Attempt to trump points
+				play = fillPlay(play, hand, lead.size(), Suit.TRUMP, order);
+			}
+			return fillPlay(play, hand, lead.size(), null, order);
 		}
 		
-		int straightLen = GameRules.isConsecutiveRanks(lead);
+		int straightLen = GameRules.isConsecutiveRanks(lead, order);
 		int leadMultiplicity = lead.size() / straightLen;
 		
 		// Match multiples
-		List<Set<Integer>> matches = GameAIUtils.getCardsMultiplicity(hand, suit, leadMultiplicity);
-		for (int i = 0; i < Math.min(matches.size(), straightLen); i++) {
-			play.addAll(matches.get(i));
+		long[] matches = GameAIUtils.getCardsMultiplicity(hand, getHandIndex(hand, gameInfo), suit, leadMultiplicity, order);
+		for (int i = 0; i < Math.min(matches.length, straightLen); i++) {
+			play |= matches[i];
 		}
 		
 		// Match singles of same suit
-		fillPlay(play, hand, lead.size(), suit);
+		play = fillPlay(play, hand, lead.size(), suit, order);
 		// fill in with "lowest" cards in hand
-		fillPlay(play, hand, lead.size(), null);
-		
-		return play;
+		return fillPlay(play, hand, lead.size(), null, order);
+	}
+	
+	@Override
+	void trickComplete(List<List<Card>> plays, int leadPlayerId, int winnerId, GameInfo gameInfo) {
+		if (handIndex != null) handIndex.removeAll(plays.get(Math.floorMod(getId() - leadPlayerId, plays.size())));
+	}
+	
+	/**
+	 * Returns the index of the given hand, rebuilding it if it does not hold the hand, such as after the
+	 * kitty is exchanged or when called without the earlier callbacks of the round.
+	 * @param hand
+	 * @param gameInfo
+	 * @return
+	 */
+	private TractorIndex getHandIndex(List<Card> hand, GameInfo gameInfo) {
+		TrumpOrder order = gameInfo.getTrumpOrder();
+		if (handIndex == null) handIndex = new TractorIndex(gameInfo.getNumDecks(), order);
+		if (handIndex.getOrder() != order) handIndex.setOrder(order);
+		if (!handIndex.matches(hand)) handIndex.reset(hand, order);
+		return handIndex;
 	}
 	
 	/**
-	 * Helper method that fills in the set play with arbitrary new cards from hand until
+	 * Helper method that fills in the selection play with arbitrary new cards from hand until
 	 * the size of play is targetSize. If suit is not null, added cards must have suit suit,
 	 * though the final size of play is not guaranteed to be targetSize in this case;
-	 * @param play A set that is of size at most targetSize
+	 * @param play A selection that is of size at most targetSize
 	 * @param hand
 	 * @param targetSize between 0 and hand.size()
+	 * @param suit
+	 * @param order
+	 * @return The filled selection
 	 */
-	private void fillPlay(Set<Integer> play, List<Card> hand, int targetSize, Suit suit) {
-		if (play.size() == targetSize) return;
+	private long fillPlay(long play, List<Card> hand, int targetSize, Suit suit, TrumpOrder order) {
+		if (CardSelection.size(play) == targetSize) return play;
 		for (int i = 0; i < hand.size(); i++) {
-			if (play.contains(i)) continue;
-			if (suit != null && hand.get(i).getSuit() != suit) continue;
-			play.add(i);
-			if (play.size() == targetSize) return;
+			if (CardSelection.contains(play, i)) continue;
+			if (suit != null && order.getSuit(hand.get(i)) != suit) continue;
+			play = CardSelection.with(play, i);
+			if (CardSelection.size(play) == targetSize) return play;
 		}
+		return play;
 	}
 
 }
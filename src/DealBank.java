@@ -0,0 +1,156 @@
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * A fixed set of pre-shuffled decks stored in a file, so that every player implementation, run and
+ * machine can be given exactly the same deals.  The file starts with a header of MAGIC, VERSION and
+ * the number of decks as ints, then the number of deals and the seed they were shuffled from as
+ * longs, followed by the deals:  54 * numDecks card id bytes each, in the order they are dealt.
+ *
+ * The file is read through a memory mapping, split into windows of whole deals when it is larger than
+ * a single mapping.  Reading a deal only copies its bytes, and a bank may be shared by engines on any
+ * number of threads.
+ */
+public class DealBank implements Closeable {
+
+	static final int MAGIC = 0x5A504442;
+	static final int VERSION = 1;
+	private static final int HEADER_SIZE = 28;
+	// Largest region mapped at once
+	private static final long MAX_WINDOW = Integer.MAX_VALUE;
+
+	private final FileChannel channel;
+	private final int numDecks;
+	private final long numDeals;
+	private final long seed;
+	private final int dealSize;
+	private final long dealsPerWindow;
+	private final MappedByteBuffer[] windows;
+
+	public DealBank(Path path) throws IOException {
+		channel = FileChannel.open(path, StandardOpenOption.READ);
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		while (header.hasRemaining() && channel.read(header) >= 0);
+		if (header.position() < HEADER_SIZE || header.getInt(0) != MAGIC) {
+			channel.close();
+			throw new IOException("Not a deal bank file: " + path);
+		}
+		if (header.getInt(4) != VERSION) {
+			channel.close();
+			throw new IOException("Unsupported deal bank version " + header.getInt(4));
+		}
+		numDecks = header.getInt(8);
+		numDeals = header.getLong(12);
+		seed = header.getLong(20);
+		if (numDecks <= 0 || numDeals < 0) {
+			channel.close();
+			throw new IOException("Corrupt deal bank header: " + numDecks + " decks, " + numDeals + " deals");
+		}
+		dealSize = CardHand.NUM_IDS * numDecks;
+		if (channel.size() < HEADER_SIZE + numDeals * dealSize) {
+			channel.close();
+			throw new IOException("Truncated deal bank: " + path);
+		}
+
+		dealsPerWindow = MAX_WINDOW / dealSize;
+		windows = new MappedByteBuffer[(int) ((numDeals + dealsPerWindow - 1) / dealsPerWindow)];
+		for (int w = 0; w < windows.length; w++) {
+			long first = w * dealsPerWindow;
+			long count = Math.min(dealsPerWindow, numDeals - first);
+			windows[w] = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + first * dealSize, count * dealSize);
+		}
+	}
+
+	/**
+	 * Shuffles numDeals decks and writes them to a new deal bank file.  Deal i is shuffled from its own
+	 * generator, derived from the seed and i, so the same arguments always produce the same file.
+	 * @param path
+	 * @param numDecks
+	 * @param numDeals
+	 * @param seed
+	 * @throws IOException
+	 */
+	public static void generate(Path path, int numDecks, long numDeals, long seed) throws IOException {
+		try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(path), 1 << 16)) {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			header.putInt(MAGIC).putInt(VERSION).putInt(numDecks).putLong(numDeals).putLong(seed);
+			out.write(header.array());
+
+			byte[] deal = new byte[CardHand.NUM_IDS * numDecks];
+			for (long d = 0; d < numDeals; d++) {
+				for (int i = 0; i < deal.length; i++) {
+					deal[i] = (byte) (i % CardHand.NUM_IDS);
+				}
+				SplittableRandom random = new SplittableRandom(BatchSimulation.roundSeed(seed, d));
+				for (int i = deal.length - 1; i > 0; i--) {
+					int j = random.nextInt(i + 1);
+					byte tmp = deal[i];
+					deal[i] = deal[j];
+					deal[j] = tmp;
+				}
+				out.write(deal);
+			}
+		}
+	}
+
+	public int getNumDecks() {
+		return numDecks;
+	}
+
+	public long getNumDeals() {
+		return numDeals;
+	}
+
+	/**
+	 * The seed the deals were shuffled from
+	 */
+	public long getSeed() {
+		return seed;
+	}
+
+	/**
+	 * Returns the id of the i-th card dealt in the given deal.
+	 * @param deal
+	 * @param i
+	 * @return
+	 */
+	public int getCard(long deal, int i) {
+		checkDeal(deal);
+		return windows[(int) (deal / dealsPerWindow)].get((int) (deal % dealsPerWindow) * dealSize + i);
+	}
+
+	/**
+	 * Replaces the cards of the given deck with the given deal, in the order they are dealt.
+	 * @param deal
+	 * @param deck A list of 54 * numDecks cards
+	 */
+	public void copyDeal(long deal, List<Card> deck) {
+		checkDeal(deal);
+		MappedByteBuffer window = windows[(int) (deal / dealsPerWindow)];
+		int offset = (int) (deal % dealsPerWindow) * dealSize;
+		for (int i = 0; i < dealSize; i++) {
+			deck.set(i, Card.of(window.get(offset + i)));
+		}
+	}
+
+	private void checkDeal(long deal) {
+		if (deal < 0 || deal >= numDeals) {
+			throw new IndexOutOfBoundsException("Deal " + deal + " of a bank of " + numDeals);
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+}
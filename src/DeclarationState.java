@@ -0,0 +1,123 @@
+/**
+ * The trump declared so far while cards are drawn.  The engine updates a single instance as declarations
+ * are made and passes it with every drawn card, instead of a new GameInfo and the whole hand, so that
+ * dealing takes constant time per card.  Players that want their hand while drawing keep it themselves
+ * from the cards they are given.
+ *
+ * A declaration shows copies of a card of the trump rank, making its suit the trump suit, or a pair of
+ * jokers, making the round no trump.  Bids are ints holding the card and the number of copies shown,
+ * built with {@link #bid(Card, int)}; NONE is no bid.
+ */
+public class DeclarationState {
+
+	public static final int NONE = 0;
+
+	private Rank trumpRank;
+	// TRUMP if jokers were declared, or null if nothing has been declared
+	private Suit trumpSuit;
+	private int numDeclared;
+	private int declarer = -1;
+
+	public DeclarationState(Rank trumpRank) {
+		this.trumpRank = trumpRank;
+	}
+
+	/**
+	 * Starts a new deal with nothing declared.
+	 * @param trumpRank
+	 */
+	public void reset(Rank trumpRank) {
+		this.trumpRank = trumpRank;
+		trumpSuit = null;
+		numDeclared = 0;
+		declarer = -1;
+	}
+
+	/**
+	 * Records a declaration, replacing any before it.
+	 * @param player
+	 * @param suit The suit declared, or TRUMP for no trump
+	 * @param copies
+	 */
+	public void declare(int player, Suit suit, int copies) {
+		trumpSuit = suit;
+		numDeclared = copies;
+		declarer = player;
+	}
+
+	/**
+	 * Returns an independent copy of this state.
+	 * @return
+	 */
+	public DeclarationState copy() {
+		DeclarationState copy = new DeclarationState(trumpRank);
+		copy.declare(declarer, trumpSuit, numDeclared);
+		return copy;
+	}
+
+	public Rank getTrumpRank() {
+		return trumpRank;
+	}
+
+	/**
+	 * The suit declared, TRUMP if jokers were declared for no trump, or null if nothing has been declared
+	 * @return
+	 */
+	public Suit getTrumpSuit() {
+		return trumpSuit;
+	}
+
+	/**
+	 * The number of copies shown by the current declaration, or 0 if none
+	 * @return
+	 */
+	public int getNumDeclared() {
+		return numDeclared;
+	}
+
+	/**
+	 * The player who made the current declaration, or -1 if none
+	 * @return
+	 */
+	public int getDeclarer() {
+		return declarer;
+	}
+
+	/**
+	 * Returns how each card plays under the trump declared so far.
+	 * @return
+	 */
+	public TrumpOrder getTrumpOrder() {
+		return TrumpOrder.of(trumpSuit, trumpRank);
+	}
+
+	/**
+	 * Returns a bid showing the given number of copies of the card.
+	 * @param card
+	 * @param copies At least 1
+	 * @return
+	 */
+	public static int bid(Card card, int copies) {
+		return copies << 8 | card.getId();
+	}
+
+	/**
+	 * Returns the card shown by the bid, or null for NONE or a bid that names no card
+	 * @param bid
+	 * @return
+	 */
+	public static Card getCard(int bid) {
+		if (getCopies(bid) == 0) return null;
+		int id = bid & 0xFF;
+		return id < CardHand.NUM_IDS ? Card.of(id) : null;
+	}
+
+	/**
+	 * Returns the number of copies shown by the bid
+	 * @param bid
+	 * @return
+	 */
+	public static int getCopies(int bid) {
+		return bid >>> 8;
+	}
+}
@@ -1,7 +1,4 @@
-import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
-import java.util.Set;
 
 /**
  * The simplest functional AI player, mostly for testing
@@ -22,98 +19,93 @@ public class DumbAIPlayer extends Player {
 	}
 
 	@Override
-	public Set<Integer> draw(Card newCard, List<Card> hand, GameInfo gameInfo) {
+	public int draw(Card newCard, DeclarationState declarations) {
 		// TODO Auto-generated method stub
-		return null;
+		return DeclarationState.NONE;
 	}
 
 	@Override
-	Set<Integer> handleKitty(List<Card> handPlusKitty, int kittySize, GameInfo gameInfo) {
+	long handleKitty(List<Card> handPlusKitty, int kittySize, GameInfo gameInfo) {
 		// TODO Auto-generated method stub
-		Set<Integer> kitty = new HashSet<>();
-		for (int i = 0; i < kittySize; i++) {
-			kitty.add(i);
-		}
-		return kitty;
+		return CardSelection.firstN(kittySize);
 	}
 
 	@Override
 	PartnerCall callPartner(List<Card> hand, List<Card> kitty, GameInfo gameInfo) {
 		// TODO Auto-generated method stub
+		TrumpOrder order = gameInfo.getTrumpOrder();
 		int id = 0;
 		Card c;
 		do {
-			c = new Card(id);
+			c = Card.of(id);
 			id++;
-			c.setTrump(gameInfo.getTrumpSuit(), gameInfo.getTrumpRank());
-		} while (c.isTrump() || hand.contains(c));
+		} while (order.isTrump(c) || hand.contains(c));
 		
 		return new PartnerCall(c, 1);
 	}
 
 	@Override
-	Set<Integer> lead(List<Card> hand, GameInfo gameInfo) {
+	long lead(List<Card> hand, GameInfo gameInfo) {
 		// TODO Auto-generated method stub
-		Set<Integer> lead = new HashSet<>();
-		lead.add(hand.size() - 1);
-		
-		return lead;
+		return CardSelection.of(hand.size() - 1);
 	}
 
 	@Override
-	Set<Integer> play(List<List<Card>> previousPlays, List<Card> hand, GameInfo gameInfo) {
+	long play(List<List<Card>> previousPlays, List<Card> hand, GameInfo gameInfo) {
+		TrumpOrder order = gameInfo.getTrumpOrder();
 		List<Card> lead = previousPlays.get(0);
-		Suit suit = lead.get(0).getSuit();
-		Set<Integer> play = new HashSet<>();
+		Suit suit = order.getSuit(lead.get(0));
+		long play = CardSelection.NONE;
 		if (lead.size() == 1) {
 			// special single card-case
 			// check for matching suit; if not fill hand with garbage
-			List<Integer> sameSuit = GameAIUtils.getSameSuit(hand, suit);
-			if (!sameSuit.isEmpty()) {
-				play.add(sameSuit.get(sameSuit.size() - 1));
-			} else {
-				fillPlay(play, hand, lead.size(), null);
+			long sameSuit = GameAIUtils.getSameSuit(hand, suit, order);
+			if (!CardSelection.isEmpty(sameSuit)) {
+				return CardSelection.of(CardSelection.last(sameSuit));
 			}
-			return play;
+			return fillPlay(play, hand, lead.size(), null, order);
 		}
 		
-		int straightLen = GameRules.isConsecutiveRanks(lead);
+		int straightLen = GameRules.isConsecutiveRanks(lead, order);
 		int leadMultiplicity = lead.size() / straightLen;
 		
 		// Match multiples
-		List<Set<Integer>> matches = GameAIUtils.getCardsMultiplicity(hand, suit, leadMultiplicity);
-		for (int i = 0; i < Math.min(matches.size(), straightLen); i++) {
+		long[] matches = GameAIUtils.getCardsMultiplicity(hand, suit, leadMultiplicity, order);
+		for (int i = 0; i < Math.min(matches.length, straightLen); i++) {
 			// Add multiplicity of them
-			Iterator<Integer> iter = matches.get(i).iterator();
+			long match = matches[i];
 			for (int j = 0; j < leadMultiplicity; j++) {
-				play.add(iter.next());
+				play = CardSelection.with(play, CardSelection.first(match));
+				match &= match - 1;
 			}
 		}
 		
 		// Match singles of same suit
-		fillPlay(play, hand, lead.size(), suit);
+		play = fillPlay(play, hand, lead.size(), suit, order);
 		// fill in with "lowest" cards in hand
-		fillPlay(play, hand, lead.size(), null);
-		
-		return play;
+		return fillPlay(play, hand, lead.size(), null, order);
 	}
 	
 	/**
-	 * Helper method that fills in the set play with arbitrary new cards from hand until
+	 * Helper method that fills in the selection play with arbitrary new cards from hand until
 	 * the size of play is targetSize. If suit is not null, added cards must have suit suit,
 	 * though the final size of play is not guaranteed to be targetSize in this case;
-	 * @param play A set that is of size at most targetSize
+	 * @param play A selection that is of size at most targetSize
 	 * @param hand
 	 * @param targetSize between 0 and hand.size()
+	 * @param suit
+	 * @param order
+	 * @return The filled selection
 	 */
-	private void fillPlay(Set<Integer> play, List<Card> hand, int targetSize, Suit suit) {
-		if (play.size() == targetSize) return;
+	private long fillPlay(long play, List<Card> hand, int targetSize, Suit suit, TrumpOrder order) {
+		if (CardSelection.size(play) == targetSize) return play;
 		for (int i = 0; i < hand.size(); i++) {
-			if (play.contains(i)) continue;
-			if (suit != null && hand.get(i).getSuit() != suit) continue;
-			play.add(i);
-			if (play.size() == targetSize) return;
+			if (CardSelection.contains(play, i)) continue;
+			if (suit != null && order.getSuit(hand.get(i)) != suit) continue;
+			play = CardSelection.with(play, i);
+			if (CardSelection.size(play) == targetSize) return play;
 		}
+		return play;
 	}
 
 }
@@ -0,0 +1,483 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Exact double-dummy solver for the end of a round, when every hand is known and few cards are left.
+ * Finds the play for the current player that maximises the points their side wins from the given
+ * position on, assuming every player plays perfectly for their side.  The value of a position is the
+ * points the attackers win from it on, including the kitty bonus when the kitty is known; the host's
+ * side minimises it.
+ *
+ * Searches with alpha-beta, trying the best move found for a position before and otherwise the
+ * strongest moves first.  Positions between tricks are stored in a transposition table keyed by a
+ * Zobrist hash of the hands and the leader, so transposed orders of tricks are solved once.  The
+ * table has a fixed number of entries, each replacing any older entry in its slot, and is kept
+ * between calls, so solving successive positions of a round reuses earlier work.  The sides, kitty
+ * points and trump are mixed into every key, so entries solved under other rules are never reused.
+ *
+ * Sides are fixed for the search:  the host and the revealed partner, or, if the partner has not been
+ * revealed, the player holding the most of the copies of the called card still needed to reveal them.
+ */
+public class EndgameSolver {
+
+	// Bytes of each table entry:  the key, and the value, bound and best move packed in an int
+	private static final int ENTRY_BYTES = 12;
+	private static final int EXACT = 1;
+	private static final int LOWER = 2;
+	private static final int UPPER = 3;
+	// Best moves beyond this index are not stored
+	private static final int MAX_MOVE_INDEX = (1 << 14) - 1;
+	private static final Suit[] SUITS = Suit.values();
+
+	private final int numPlayers;
+	private final int numDecks;
+	// Zobrist keys of each copy of each card in each hand, and of each leader
+	private final long[] cardKeys;
+	private final long[] leaderKeys;
+	private final long[] tableKeys;
+	private final int[] tableEntries;
+	private final int tableMask;
+
+	// The position being solved, and its hash without the leader
+	private GameState state;
+	private long handsHash;
+	// Bit p is set if player p is on the host's side
+	private int hostSide;
+	private int kittyPoints;
+	// Mixed into every key, so entries of positions with other sides, kitty or trump are not reused
+	private long contextKey;
+	// Moves generated at each depth, reused between nodes
+	private final List<List<CardHand>> movesAtDepth = new ArrayList<>();
+	// The card each id of the current player's hand is interchangeable with, and a random key of each id
+	private final int[] classOf = new int[CardHand.NUM_IDS];
+	private final long[] classKeys = new long[CardHand.NUM_IDS];
+	// The plays of the last trick, reused
+	private final CardHand[] lastCards;
+	// Keys and ordering scores of the moves generated so far at a node
+	private long[] moveKeys = new long[16];
+	private int[] moveScores = new int[16];
+	private long nodes;
+
+	private CardHand bestMove;
+	private int value;
+
+	/**
+	 * @param numPlayers
+	 * @param numDecks
+	 * @param tableBytes Memory to use for the transposition table, at least ENTRY_BYTES
+	 */
+	public EndgameSolver(int numPlayers, int numDecks, long tableBytes) {
+		this.numPlayers = numPlayers;
+		this.numDecks = numDecks;
+		SplittableRandom random = new SplittableRandom(0x5A4F42524953544CL);
+		cardKeys = new long[numPlayers * CardHand.NUM_IDS * numDecks];
+		for (int i = 0; i < cardKeys.length; i++) {
+			cardKeys[i] = random.nextLong();
+		}
+		leaderKeys = new long[numPlayers];
+		for (int i = 0; i < numPlayers; i++) {
+			leaderKeys[i] = random.nextLong();
+		}
+		for (int id = 0; id < CardHand.NUM_IDS; id++) {
+			classKeys[id] = random.nextLong();
+		}
+		lastCards = new CardHand[numPlayers];
+		for (int i = 0; i < numPlayers; i++) {
+			lastCards[i] = new CardHand(numDecks);
+		}
+		int capacity = Integer.highestOneBit((int) Math.min(1 << 30, Math.max(1, tableBytes / ENTRY_BYTES)));
+		tableKeys = new long[capacity];
+		tableEntries = new int[capacity];
+		tableMask = capacity - 1;
+	}
+
+	/**
+	 * Finds the best play for the current player of the given position.  The state is searched in
+	 * place, by applying and undoing plays, and is left as it was given.
+	 * @param state A position with every hand known, and the kitty if the bonus should be counted
+	 * @return The best play, or null if the round is over
+	 */
+	public CardHand solve(GameState state) {
+		this.state = state;
+		nodes = 0;
+		bestMove = null;
+		hostSide = getHostSide(state);
+		kittyPoints = state.getKitty() == null ? 0 : GameRules.getNumPoints(state.getKitty());
+		TrumpOrder order = state.getTrumpOrder();
+		int trump = (order.getTrumpSuit() == null ? Suit.TRUMP : order.getTrumpSuit()).ordinal() * 16
+				+ order.getTrumpRank().ordinal();
+		contextKey = new SplittableRandom((hostSide * 1000003L + kittyPoints) * 1024 + trump).nextLong();
+		handsHash = 0;
+		for (int p = 0; p < numPlayers; p++) {
+			CardHand hand = state.getHand(p);
+			for (long bits = hand.distinct(); bits != 0; bits &= bits - 1) {
+				int id = Long.numberOfTrailingZeros(bits);
+				for (int c = 0; c < hand.count(id); c++) {
+					handsHash ^= cardKey(p, id, c);
+				}
+			}
+		}
+
+		if (state.isRoundOver()) {
+			value = 0;
+			return null;
+		}
+		
+		// Narrow down the value with null-window searches, which the table makes cheap to repeat.  Each
+		// search that proves a bound for the current player's side gives a move achieving it.
+		boolean maximise = !isHostSide(state.getCurrentPlayer());
+		CardHand proven = null;
+		int lower = 0;
+		int upper = getPointsLeft();
+		while (lower < upper) {
+			// Points only come in fives, so only multiples of five are tested
+			int test = lower + ((upper - lower) / 5 + 1) / 2 * 5;
+			int result = search(0, test - 1, test, true);
+			if (result >= test) {
+				lower = result;
+				if (maximise) proven = bestMove;
+			} else {
+				upper = result;
+				if (!maximise) proven = bestMove;
+			}
+		}
+		value = lower;
+		// Otherwise every move is as good as any other
+		bestMove = proven != null ? proven : generateMoves(0, maximise).get(0);
+		return bestMove;
+	}
+
+	/**
+	 * The points the attackers win from the last position solved on, with best play
+	 * @return
+	 */
+	public int getValue() {
+		return value;
+	}
+
+	/**
+	 * The number of positions visited by the last solve
+	 * @return
+	 */
+	public long getNodes() {
+		return nodes;
+	}
+
+	/**
+	 * Empties the transposition table.
+	 */
+	public void clear() {
+		Arrays.fill(tableKeys, 0);
+		Arrays.fill(tableEntries, 0);
+	}
+
+	/**
+	 * Returns whether the given player is on the host's side for the search of the given state
+	 * @param player
+	 * @return
+	 */
+	public boolean isHostSide(int player) {
+		return (hostSide >>> player & 1) != 0;
+	}
+
+	private int getHostSide(GameState state) {
+		int side = 1 << state.getHost();
+		if (state.getPartner() >= 0) return side | 1 << state.getPartner();
+		int calledId = state.getCalledId();
+		if (calledId < 0 || state.getCopiesToReveal() <= 0) return side;
+		int partner = -1;
+		int mostCopies = 0;
+		int totalCopies = 0;
+		for (int p = 0; p < numPlayers; p++) {
+			int copies = state.getHand(p).count(calledId);
+			totalCopies += copies;
+			if (copies > mostCopies) {
+				mostCopies = copies;
+				partner = p;
+			}
+		}
+		// The partner is never revealed if not enough copies are left in hands
+		if (totalCopies < state.getCopiesToReveal()) return side;
+		return side | 1 << partner;
+	}
+
+	private long cardKey(int player, int id, int copy) {
+		return cardKeys[(player * CardHand.NUM_IDS + id) * numDecks + copy];
+	}
+
+	/**
+	 * Returns the change in hash of the current player's hand from playing the given cards.
+	 */
+	private long playKey(int player, CardHand play) {
+		CardHand hand = state.getHand(player);
+		long key = 0;
+		for (long bits = play.distinct(); bits != 0; bits &= bits - 1) {
+			int id = Long.numberOfTrailingZeros(bits);
+			int held = hand.count(id);
+			for (int c = held - play.count(id); c < held; c++) {
+				key ^= cardKey(player, id, c);
+			}
+		}
+		return key;
+	}
+
+	/**
+	 * Returns the points the attackers win from the current position on, if within (alpha, beta);
+	 * otherwise a bound on them beyond the window.
+	 * @param depth Plays made since the root
+	 * @param alpha
+	 * @param beta
+	 * @param root Whether to remember the best move
+	 * @return
+	 */
+	private int search(int depth, int alpha, int beta, boolean root) {
+		nodes++;
+		boolean betweenTricks = state.isTrickComplete();
+		int slot = -1;
+		long key = 0;
+		int ttMove = -1;
+		if (betweenTricks) {
+			key = handsHash ^ leaderKeys[state.getLeader()] ^ contextKey;
+			slot = (int) (key ^ key >>> 32) & tableMask;
+			int entry = tableEntries[slot];
+			if (entry != 0 && tableKeys[slot] == key) {
+				int bound = entry & 3;
+				int stored = entry >>> 16;
+				ttMove = (entry >>> 2 & MAX_MOVE_INDEX) - 1;
+				if (!root) {
+					if (bound == EXACT) return stored;
+					if (bound == LOWER && stored >= beta) return stored;
+					if (bound == UPPER && stored <= alpha) return stored;
+				}
+			}
+		}
+
+		// The attackers win between nothing and every point left, plus the largest possible bonus
+		int upper = getPointsLeft();
+		if (upper == 0 || upper <= alpha) return upper;
+		if (beta <= 0) return 0;
+		if (betweenTricks && state.getHand(state.getLeader()).size() == 1) return playLastTrick();
+
+		int player = state.getCurrentPlayer();
+		boolean maximise = !isHostSide(player);
+		List<CardHand> moves = generateMoves(depth, maximise);
+		if (ttMove >= moves.size()) ttMove = -1;
+		int first = Math.max(ttMove, 0);
+		int best = maximise ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+		int bestIndex = first;
+		int originalAlpha = alpha;
+		int originalBeta = beta;
+		int pointsBefore = getAttackerPoints();
+		for (int k = 0; k < moves.size(); k++) {
+			// The stored best move first, then the rest in order
+			int i = k == 0 ? first : k <= first ? k - 1 : k;
+			CardHand move = moves.get(i);
+			long moveKey = playKey(player, move);
+			state.apply(move);
+			handsHash ^= moveKey;
+
+			int moveValue = getAttackerPoints() - pointsBefore;
+			if (state.isRoundOver()) {
+				if (!isHostSide(state.getLeader())) moveValue += GameRules.getKittyBonus(kittyPoints, move.size());
+			} else {
+				moveValue += search(depth + 1, subtract(alpha, moveValue), subtract(beta, moveValue), false);
+			}
+
+			handsHash ^= moveKey;
+			state.undo();
+
+			if (maximise ? moveValue > best : moveValue < best) {
+				best = moveValue;
+				bestIndex = i;
+				if (root) bestMove = move;
+			}
+			if (maximise) alpha = Math.max(alpha, best);
+			else beta = Math.min(beta, best);
+			if (alpha >= beta) break;
+		}
+
+		if (betweenTricks) {
+			int bound = best <= originalAlpha ? UPPER : best >= originalBeta ? LOWER : EXACT;
+			tableKeys[slot] = key;
+			tableEntries[slot] = best << 16 | Math.min(bestIndex + 1, MAX_MOVE_INDEX) << 2 | bound;
+		}
+		return best;
+	}
+
+	/**
+	 * Returns the points the attackers win from the last trick, when every player has one card left
+	 * and so has only one play.
+	 */
+	private int playLastTrick() {
+		int pointsBefore = getAttackerPoints();
+		for (int i = 0; i < numPlayers; i++) {
+			CardHand last = lastCards[i];
+			last.copyFrom(state.getHand(state.getCurrentPlayer()));
+			state.apply(last);
+		}
+		int points = getAttackerPoints() - pointsBefore;
+		if (!isHostSide(state.getLeader())) points += GameRules.getKittyBonus(kittyPoints, 1);
+		for (int i = 0; i < numPlayers; i++) {
+			state.undo();
+		}
+		return points;
+	}
+
+	/**
+	 * Returns the legal moves of the current player, likely best first, keeping only one of each set
+	 * of interchangeable moves.  The order depends only on the position, so a stored index of a best
+	 * move refers to the same move when the position recurs.
+	 * @param depth
+	 * @param maximise Whether the player is an attacker
+	 * @return A list owned by the given depth, valid until the next call for the same depth
+	 */
+	private List<CardHand> generateMoves(int depth, boolean maximise) {
+		while (movesAtDepth.size() <= depth) {
+			movesAtDepth.add(new ArrayList<>());
+		}
+		List<CardHand> moves = movesAtDepth.get(depth);
+		moves.clear();
+		int player = state.getCurrentPlayer();
+		CardHand hand = state.getHand(player);
+		TrumpOrder order = state.getTrumpOrder();
+		findClasses(player, hand, order);
+		
+		// Plays are scored by whether they take the trick and how many points they give up
+		boolean leading = state.isTrickComplete();
+		int winningKey = state.getWinningKey();
+		boolean sideWinning = !leading && isHostSide(state.getWinner()) != maximise;
+		Iterator<CardHand> candidates = leading ? GameRules.getLegalLeads(hand, order).iterator()
+				: GameRules.getLegalPlays(state.getLead(), hand, order);
+		int numMoves = 0;
+		candidates:
+		while (candidates.hasNext()) {
+			CardHand move = candidates.next();
+			long key = 0;
+			for (long bits = move.distinct(); bits != 0; bits &= bits - 1) {
+				int id = Long.numberOfTrailingZeros(bits);
+				key += move.count(id) * classKeys[classOf[id]];
+			}
+			for (int i = 0; i < numMoves; i++) {
+				if (moveKeys[i] == key) continue candidates;
+			}
+			
+			int power = GameRules.getHighestPower(move, order);
+			int score;
+			if (leading) {
+				score = move.size() << 10 | power;
+			} else if (sideWinning) {
+				score = GameRules.getNumPoints(move) << 10 | 1023 - power;
+			} else if (GameRules.getHigherKey(winningKey, GameRules.getShapeKey(move, order)) == 1) {
+				score = 1 << 20 | 1023 - power;
+			} else {
+				score = -(GameRules.getNumPoints(move) << 10 | power);
+			}
+			
+			if (numMoves == moveKeys.length) {
+				moveKeys = Arrays.copyOf(moveKeys, numMoves * 2);
+				moveScores = Arrays.copyOf(moveScores, numMoves * 2);
+			}
+			// Insert in order of decreasing score, after moves of equal score
+			int i = numMoves++;
+			moves.add(move);
+			for (; i > 0 && moveScores[i - 1] < score; i--) {
+				moveKeys[i] = moveKeys[i - 1];
+				moveScores[i] = moveScores[i - 1];
+				moves.set(i, moves.get(i - 1));
+			}
+			moveKeys[i] = key;
+			moveScores[i] = score;
+			moves.set(i, move);
+		}
+		return moves;
+	}
+
+	/**
+	 * Groups the single cards of the player's hand that are interchangeable:  those of the same suit and
+	 * points, with no card of another hand or of the current trick between them in power.  Playing
+	 * either wins and loses the same tricks now and later.  Cards held more than once are never grouped,
+	 * since they may be played as pairs and tractors.
+	 */
+	private void findClasses(int player, CardHand hand, TrumpOrder order) {
+		for (long bits = hand.distinct(); bits != 0; bits &= bits - 1) {
+			int id = Long.numberOfTrailingZeros(bits);
+			classOf[id] = id;
+		}
+		long singles = hand.distinct() & ~hand.atLeast(2);
+		long blockers = -1;
+		for (Suit suit : SUITS) {
+			long suitSingles = singles & order.getSuitMask(suit);
+			if (Long.bitCount(suitSingles) < 2) continue;
+			if (blockers == -1) {
+				blockers = 0;
+				for (int p = 0; p < numPlayers; p++) {
+					if (p != player) blockers |= state.getHand(p).distinct();
+				}
+				for (int i = 0; i < state.getTrickSize(); i++) {
+					blockers |= state.getTrickPlay(i).distinct();
+				}
+			}
+			
+			int[] ids = order.getSuitIds(suit);
+			int rep = -1;
+			int repPoints = 0;
+			// Cards of equal power are taken together, and a group holding a blocker ends the class
+			for (int start = 0, end; start < ids.length && suitSingles != 0; start = end) {
+				int power = order.getPower(ids[start]);
+				boolean blocked = false;
+				for (end = start; end < ids.length && order.getPower(ids[end]) == power; end++) {
+					blocked |= (blockers >>> ids[end] & 1) != 0;
+				}
+				if (blocked) rep = -1;
+				for (int i = start; i < end; i++) {
+					int id = ids[i];
+					if (blocked || (suitSingles >>> id & 1) == 0) continue;
+					suitSingles &= ~(1L << id);
+					int points = Card.of(id).getPointValue();
+					if (rep < 0 || points != repPoints) {
+						rep = id;
+						repPoints = points;
+					}
+					classOf[id] = rep;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the most the attackers could win from the current position:  the points in every hand
+	 * and in the current trick, plus the largest kitty bonus still possible.
+	 */
+	private int getPointsLeft() {
+		int points = 0;
+		int maxHand = 0;
+		for (int p = 0; p < numPlayers; p++) {
+			CardHand hand = state.getHand(p);
+			points += GameRules.getNumPoints(hand);
+			maxHand = Math.max(maxHand, hand.size());
+		}
+		for (int i = 0; i < state.getTrickSize(); i++) {
+			points += GameRules.getNumPoints(state.getTrickPlay(i));
+		}
+		return points + GameRules.getKittyBonus(kittyPoints, maxHand);
+	}
+
+	/**
+	 * Returns the points won so far by the attackers.
+	 */
+	private int getAttackerPoints() {
+		int points = 0;
+		for (int p = 0; p < numPlayers; p++) {
+			if (!isHostSide(p)) points += state.getPoints(p);
+		}
+		return points;
+	}
+
+	private static int subtract(int bound, int points) {
+		if (bound == Integer.MIN_VALUE || bound == Integer.MAX_VALUE) return bound;
+		return bound - points;
+	}
+}
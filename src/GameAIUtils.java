@@ -1,10 +1,8 @@
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.function.IntUnaryOperator;
 
 /**
  * Class of utility functions that are helpful for players (AIs in particular) to use to ensure they follow suit, etc.
@@ -15,100 +13,114 @@ public class GameAIUtils {
 
 	/**
 	 * Gets all cards of the given suit whose multiplicity is at least multiplicity and returns them, ordered by
-	 * rank in sets containing all the same card.  Used to determine forced plays based on lead.
+	 * rank in selections containing all the same card.  Used to determine forced plays based on lead.
 	 * 
 	 * @param cards
 	 * @param suit
 	 * @param multiplicity
+	 * @param order
 	 * @return
 	 */
-	public static List<Set<Integer>> getCardsMultiplicity(List<Card> cards, Suit suit, int multiplicity) {
+	public static long[] getCardsMultiplicity(List<Card> cards, Suit suit, int multiplicity, TrumpOrder order) {
 		int[] histogram = GameRules.makeCardHistogram(cards);
-		List<Card> hand = new ArrayList<>(cards);
-		Collections.sort(hand);
-		List<Set<Integer>> sortedCards = new ArrayList<>();
-		for (Card c : hand) {
-			if (histogram[c.getId()] >= multiplicity && c.getSuit() == suit) {
-				sortedCards.add(getMatchingCards(cards, c));
-				histogram[c.getId()] = 0;
+		return getCardsMultiplicity(cards, id -> histogram[id], suit, multiplicity, order);
+	}
+	
+	/**
+	 * Gets all cards of the given suit whose multiplicity is at least multiplicity, as 
+	 * {@link #getCardsMultiplicity(List, Suit, int, TrumpOrder)} does, reading the copies of each card from
+	 * an index of the cards instead of counting them.
+	 * 
+	 * @param cards
+	 * @param index An index holding exactly the cards
+	 * @param suit
+	 * @param multiplicity
+	 * @param order
+	 * @return
+	 */
+	public static long[] getCardsMultiplicity(List<Card> cards, TractorIndex index, Suit suit, int multiplicity, 
+			TrumpOrder order) {
+		return getCardsMultiplicity(cards, index::getCount, suit, multiplicity, order);
+	}
+	
+	private static long[] getCardsMultiplicity(List<Card> cards, IntUnaryOperator counts, Suit suit, int multiplicity, 
+			TrumpOrder order) {
+		// The ids of a suit are already in the order's sort order
+		int[] ids = order.getSuitIds(suit);
+		int numMatches = 0;
+		for (int id : ids) {
+			if (counts.applyAsInt(id) >= multiplicity) numMatches++;
+		}
+		long[] sortedCards = new long[numMatches];
+		int n = 0;
+		for (int id : ids) {
+			if (counts.applyAsInt(id) >= multiplicity) {
+				sortedCards[n++] = getMatchingCards(cards, Card.of(id));
 			}
 		}
 		return sortedCards;
 	}
 	
 	/**
-	 * Returns a set of the indices of the cards matching the given card exactly.
+	 * Returns a selection of the cards matching the given card exactly.
 	 * @param cards
 	 * @param c
 	 * @return
 	 */
-	public static Set<Integer> getMatchingCards(List<Card> cards, Card toMatch) {
-		Set<Integer> matches = new HashSet<>();
+	public static long getMatchingCards(List<Card> cards, Card toMatch) {
+		long matches = CardSelection.NONE;
 		for (int i = 0; i < cards.size(); i++) {
 			Card c = cards.get(i);
 			if (toMatch.equals(c)) {
-				matches.add(i);
+				matches = CardSelection.with(matches, i);
 			}
 		}
 		return matches;
 	}
 	
 	/**
-	 * Gets the indices of all cards matching the given suit in the given set of cards.
-	 * Cards are given in the same order as the hand.
+	 * Gets a selection of all cards matching the given suit in the given set of cards.
 	 * @param cards
 	 * @param suit
+	 * @param order
 	 * @return
 	 */
-	public static List<Integer> getSameSuit(List<Card> cards, Suit suit) {
-		List<Integer> indices = new ArrayList<>();
+	public static long getSameSuit(List<Card> cards, Suit suit, TrumpOrder order) {
+		long indices = CardSelection.NONE;
 		for (int i = 0; i < cards.size(); i++) {
-			if (cards.get(i).getSuit() == suit) {
-				indices.add(i);
+			if (order.getSuit(cards.get(i)) == suit) {
+				indices = CardSelection.with(indices, i);
 			}
 		}
 		return indices;
 	}
 	
-	/**
-	 * Returns the cards at the given indices in the given hand.
-	 * @param hand
-	 * @param indices
-	 * @return
-	 */
-	public static List<Card> indicesToCards(List<Card> hand, Set<Integer> indices) {
-		List<Card> cards = new ArrayList<>();
-		for (Integer i : indices) {
-			cards.add(hand.get(i));
-		}
-		Collections.sort(cards);
-		return cards;
-	}
-	
 	/**
 	 * Returns the number of cards matching the given suit
 	 * @param cards
 	 * @param suit
+	 * @param order
 	 * @return
 	 */
-	public static long countSuit(List<Card> cards, Suit suit) {
-		return cards.stream().filter(c -> c.getSuit() == suit).count();
+	public static long countSuit(List<Card> cards, Suit suit, TrumpOrder order) {
+		return cards.stream().filter(c -> order.getSuit(c) == suit).count();
 	}
 	
 	/**
 	 * Returns a map from suit to the indices of the cards matching those suits
 	 * @param cards
+	 * @param order
 	 * @return
 	 */
-	public static Map<Suit, List<Integer>> sortCardsBySuit(List<Card> cards) {
-		Map<Suit, List<Integer>> sortedCards = new HashMap<>();
+	public static Map<Suit, List<Integer>> sortCardsBySuit(List<Card> cards, TrumpOrder order) {
+		Map<Suit, List<Integer>> sortedCards = new EnumMap<>(Suit.class);
 		for (Suit suit : Suit.values()) {
 			sortedCards.put(suit, new ArrayList<>());
 		}
 		
 		for (int i = 0; i < cards.size(); i++) {
 			Card c = cards.get(i);
-			sortedCards.get(c.getSuit()).add(i);
+			sortedCards.get(order.getSuit(c)).add(i);
 		}
 		
 		return sortedCards;
@@ -0,0 +1,234 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.List;
+import java.util.Queue;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Plays at {@link GameServer} tables with local players.  Each connection is given a player from the
+ * factory once it is seated, and every message from the server is answered by calling that player.  Any
+ * number of connections are driven by a single selector thread, which also runs the players, so this
+ * suits fast players such as the scripted AIs.
+ */
+public class GameClient implements Closeable {
+
+	private final PlayerFactory factory;
+	private final Selector selector;
+	// Connections opened but not yet registered with the selector
+	private final Queue<Session> pendingSessions = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger numOpen = new AtomicInteger();
+	private final AtomicInteger numFinished = new AtomicInteger();
+	private Thread selectorThread;
+
+	public GameClient(PlayerFactory factory) throws IOException {
+		this.factory = factory;
+		selector = Selector.open();
+	}
+
+	/**
+	 * Starts handling connections on a new thread.
+	 */
+	public void start() {
+		selectorThread = new Thread(this::runSelector, "game-client");
+		selectorThread.setDaemon(true);
+		selectorThread.start();
+	}
+
+	/**
+	 * Opens a new connection to the server, which will be seated at the next table with room.
+	 * @param address
+	 * @throws IOException
+	 */
+	public void connect(InetSocketAddress address) throws IOException {
+		SocketChannel channel = SocketChannel.open(address);
+		channel.configureBlocking(false);
+		channel.socket().setTcpNoDelay(true);
+		numOpen.incrementAndGet();
+		pendingSessions.add(new Session(channel));
+		selector.wakeup();
+	}
+
+	/**
+	 * Returns the number of connections still open
+	 * @return
+	 */
+	public int getNumOpen() {
+		return numOpen.get();
+	}
+
+	/**
+	 * Returns the number of connections whose table has finished all its rounds
+	 * @return
+	 */
+	public int getNumFinished() {
+		return numFinished.get();
+	}
+
+	private void runSelector() {
+		try {
+			while (selector.isOpen()) {
+				try {
+					selector.select();
+				} catch (IOException e) {
+					// Nothing was selected; try again unless the selector has been closed
+					continue;
+				}
+				Session pending;
+				while ((pending = pendingSessions.poll()) != null) {
+					try {
+						pending.key = pending.channel.register(selector, SelectionKey.OP_READ, pending);
+					} catch (IOException e) {
+						pending.close();
+					}
+				}
+				for (SelectionKey key : selector.selectedKeys()) {
+					Session session = (Session) key.attachment();
+					if (key.isValid() && key.isReadable()) session.read();
+					if (key.isValid() && key.isWritable()) session.write();
+				}
+				selector.selectedKeys().clear();
+			}
+		} catch (ClosedSelectorException e) {
+			// Closed by close()
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		selector.close();
+	}
+
+	/**
+	 * A connection and the player it plays for, only used by the selector thread.
+	 */
+	private class Session {
+		private final SocketChannel channel;
+		private SelectionKey key;
+		private final ByteBuffer in = ByteBuffer.allocate(GameProtocol.MAX_FRAME);
+		private final ByteBuffer out = ByteBuffer.allocate(GameProtocol.MAX_FRAME);
+		private Player player;
+		// The trump declared in the current deal, read from each DRAW
+		private DeclarationState declarations;
+
+		private Session(SocketChannel channel) {
+			this.channel = channel;
+		}
+
+		private void read() {
+			try {
+				if (channel.read(in) < 0) {
+					close();
+					return;
+				}
+				in.flip();
+				int length;
+				while (channel.isOpen() && (length = GameProtocol.frameLength(in)) > 0) {
+					ByteBuffer frame = in.duplicate();
+					frame.limit(in.position() + length);
+					frame.position(in.position() + 2);
+					in.position(in.position() + length);
+					handle(frame);
+				}
+				in.compact();
+				write();
+			} catch (IOException | RuntimeException e) {
+				close();
+			}
+		}
+
+		/**
+		 * Calls the player for a message from the server, queueing any answer.
+		 * @param frame The type and payload of the message
+		 */
+		private void handle(ByteBuffer frame) {
+			byte type = frame.get();
+			if (type == GameProtocol.SEAT) {
+				player = factory.create(frame.get());
+				return;
+			}
+			if (type == GameProtocol.END) {
+				numFinished.incrementAndGet();
+				close();
+				return;
+			}
+			if (type == GameProtocol.DRAW) {
+				Card card = GameProtocol.getCard(frame);
+				GameProtocol.getDeclarations(frame, declarations);
+				reply(player.draw(card, declarations));
+				return;
+			}
+
+			GameInfo info = GameProtocol.getInfo(frame);
+			switch (type) {
+			case GameProtocol.ROUND:
+				player.setRandom(new SplittableRandom(frame.getLong()));
+				declarations = new DeclarationState(info.getTrumpRank());
+				player.initializeRound(info);
+				break;
+			case GameProtocol.KITTY:
+				int kittySize = frame.get();
+				reply(player.handleKitty(GameProtocol.getCards(frame), kittySize, info));
+				break;
+			case GameProtocol.CALL_PARTNER:
+				List<Card> hand = GameProtocol.getCards(frame);
+				PartnerCall call = player.callPartner(hand, GameProtocol.getCards(frame), info);
+				int start = GameProtocol.beginFrame(out, GameProtocol.PARTNER);
+				GameProtocol.putPartnerCall(out, call);
+				GameProtocol.endFrame(out, start);
+				break;
+			case GameProtocol.LEAD:
+				reply(player.lead(GameProtocol.getCards(frame), info));
+				break;
+			case GameProtocol.PLAY:
+				List<List<Card>> plays = GameProtocol.getPlays(frame);
+				reply(player.play(plays, GameProtocol.getCards(frame), info));
+				break;
+			case GameProtocol.TRICK:
+				int leader = frame.get();
+				int winner = frame.get();
+				player.trickComplete(GameProtocol.getPlays(frame), leader, winner, info);
+				break;
+			default:
+				throw new IllegalStateException("Unknown message type " + type);
+			}
+		}
+
+		private void reply(long selection) {
+			int start = GameProtocol.beginFrame(out, GameProtocol.SELECTION);
+			out.putLong(selection);
+			GameProtocol.endFrame(out, start);
+		}
+
+		private void write() {
+			if (!channel.isOpen()) return;
+			out.flip();
+			try {
+				channel.write(out);
+			} catch (IOException e) {
+				close();
+				return;
+			} finally {
+				out.compact();
+			}
+			key.interestOps(out.position() > 0 ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+		}
+
+		private void close() {
+			if (!channel.isOpen()) return;
+			numOpen.decrementAndGet();
+			try {
+				channel.close();
+			} catch (IOException e) {
+				// Already closed
+			}
+		}
+	}
+}
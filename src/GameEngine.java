@@ -1,9 +1,17 @@
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.Set;
-import java.util.SortedSet;
-import java.util.TreeSet;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
 
 /**
  * Game engine to control interactions between players and coordinate the game.
@@ -12,6 +20,9 @@ import java.util.TreeSet;
  */
 public class GameEngine {
 	
+	// Number of times a player may answer invalidly before a default choice is made for them
+	private static final int MAX_INVALID_ATTEMPTS = 3;
+	
 	private final int numPlayers;
 	private final int numDecks;
 	private final int numCardsPerPlayer;
@@ -19,122 +30,597 @@ public class GameEngine {
 	private List<Card> cards;
 	private List<Player> players;
 	private List<List<Card>> playerHands;
+	// Unmodifiable views of playerHands, handed to the players
+	private List<List<Card>> handViews;
+	// Bitboard copies of playerHands, kept in sync by the GameState of the play phase
+	private List<CardHand> cardHands;
 	private List<Card> kitty;
+	// Bitboard copy of the buried kitty
+	private final CardHand kittyHand;
+	// Scratch hands reused when validating each lead and play
+	private final CardHand leadScratch;
+	private final CardHand playScratch;
+	// The host's hand plus the kitty while the host chooses what to bury, and views of it and the kitty
+	private final List<Card> handPlusKitty;
+	private final List<Card> handPlusKittyView;
+	private final List<Card> kittyView;
+	// State of the play phase, reset for each round
+	private final GameState state;
+	// What the players know from the cards played, reset for each round
+	private final KnowledgeTracker knowledge;
+	private final PartnerTracker partners;
+	// The trump declared while drawing, reset for each deal
+	private final DeclarationState declarations = new DeclarationState(Rank.TWO);
 	
 	private int round;
 	private Player host;
+	// Each player's level, as the ordinal of the rank they are on; a level past ACE wins the match
+	private final int[] levels;
+	// The host of the next round, or null if decided by the first trump call
+	private Player nextHost;
 	// The trump for the current round
 	private Suit trumpSuit;
 	private Rank trumpRank;
+	private TrumpOrder trumpOrder;
 	private Player leadPlayer;
 	private PartnerCall partnerCall;
 	
+	// Seed from which the deal and the players' generators of each round are derived
+	private final long seed;
+	// Whether to print the progress of the game to the console
+	private boolean verbose;
+	// Destination for the record of each round, or null
+	private GameRecordWriter recordWriter;
+	// Source of pre-shuffled decks, and the deal used by the first round, or null to shuffle
+	private DealBank dealBank;
+	private long firstDeal;
+	// Instrumentation of each round, or null
+	private GameMetrics metrics;
+	// Runs player callbacks when decisions have a deadline, or null to call players directly
+	private ExecutorService decisionExecutor;
+	private long decisionTimeoutNanos;
+	// Runs each player's callbacks on the decision executor one at a time, or null
+	private PlayerExecutor[] playerExecutors;
+	// Whether the last decision missed its deadline or failed, so should not be asked for again
+	private boolean decisionMissed;
+	
 	public GameEngine(int numPlayers) {
-		this.numPlayers = numPlayers;
+		this(numPlayers, new Random().nextLong());
+	}
+	
+	/**
+	 * Creates an engine whose deals, and the generators given to its players, are determined entirely 
+	 * by the given seed and the round number, for reproducible simulations.
+	 * @param numPlayers
+	 * @param seed
+	 */
+	public GameEngine(int numPlayers, long seed) {
+		this(defaultLineup(numPlayers), seed);
+	}
+	
+	/**
+	 * Creates an engine with one player per factory, seated in order.
+	 * @param lineup
+	 * @param seed
+	 */
+	public GameEngine(List<PlayerFactory> lineup, long seed) {
+		this.numPlayers = lineup.size();
 		this.numDecks = (numPlayers + 1) / 2;
 		cards = new ArrayList<>();
 		for (int i = 0; i < numDecks; i++) {
 			for (int j = 0; j < 54; j++) {
-				Card c = new Card(j);
-				cards.add(c);
+				cards.add(Card.of(j));
 			}
 		}
 		numCardsPerPlayer = (cards.size() - 6) / numPlayers; 
+		// The host's hand plus the kitty must fit in a card selection
+		if (cards.size() - (numPlayers - 1) * numCardsPerPlayer > CardSelection.MAX_HAND_SIZE) {
+			throw new IllegalArgumentException("Too many players: " + numPlayers);
+		}
+		leadScratch = new CardHand(numDecks);
+		playScratch = new CardHand(numDecks);
+		
+		playerHands = new ArrayList<>();
+		handViews = new ArrayList<>();
+		cardHands = new ArrayList<>();
+		for (int i = 0; i < numPlayers; i++) {
+			List<Card> hand = new ArrayList<>();
+			playerHands.add(hand);
+			handViews.add(Collections.unmodifiableList(hand));
+			cardHands.add(new CardHand(numDecks));
+		}
+		kitty = new ArrayList<>();
+		kittyView = Collections.unmodifiableList(kitty);
+		kittyHand = new CardHand(numDecks);
+		handPlusKitty = new ArrayList<>();
+		handPlusKittyView = Collections.unmodifiableList(handPlusKitty);
+		state = new GameState(null, cardHands.toArray(new CardHand[numPlayers]), kittyHand, 0, null);
+		knowledge = new KnowledgeTracker(numPlayers, numDecks);
+		partners = new PartnerTracker(knowledge, state);
+		levels = new int[numPlayers];
 		
 		players = new ArrayList<>();
-		players.add(new CommonSenseAI(0));
-		for (int i = 1; i < numPlayers; i++) {
-			players.add(new DumbAIPlayer(i));
+		for (int i = 0; i < numPlayers; i++) {
+			players.add(lineup.get(i).create(i));
 		}
 		
 		round = 0;
 		host = null;
+		nextHost = null;
 		partnerCall = null;
+		this.seed = seed;
+		verbose = true;
+	}
+	
+	/**
+	 * Returns the players used when none are given:  one CommonSenseAI in seat 0 and DumbAIPlayers
+	 * in the other seats.
+	 * @param numPlayers
+	 * @return
+	 */
+	public static List<PlayerFactory> defaultLineup(int numPlayers) {
+		List<PlayerFactory> lineup = new ArrayList<>();
+		lineup.add(CommonSenseAI::new);
+		for (int i = 1; i < numPlayers; i++) {
+			lineup.add(DumbAIPlayer::new);
+		}
+		return lineup;
+	}
+	
+	/**
+	 * Sets whether the engine prints the progress of the game to the console.  Should be disabled
+	 * when running many games, where printing would dominate the running time.
+	 * @param verbose
+	 */
+	public void setVerbose(boolean verbose) {
+		this.verbose = verbose;
+	}
+	
+	/**
+	 * Sets where the engine writes the record of each round it plays, or null to stop recording.
+	 * @param recordWriter
+	 */
+	public void setRecordWriter(GameRecordWriter recordWriter) {
+		this.recordWriter = recordWriter;
+	}
+	
+	/**
+	 * Makes the engine deal its rounds from the given bank instead of shuffling:  the first round uses
+	 * deal firstDeal, and each following round the next deal.  Players' generators are still derived
+	 * from the engine's seed.
+	 * @param dealBank The bank, or null to shuffle again
+	 * @param firstDeal
+	 */
+	public void setDealBank(DealBank dealBank, long firstDeal) {
+		if (dealBank != null && dealBank.getNumDecks() != numDecks) {
+			throw new IllegalArgumentException("Deal bank has " + dealBank.getNumDecks() + " decks, engine uses " + numDecks);
+		}
+		this.dealBank = dealBank;
+		this.firstDeal = firstDeal;
+	}
+	
+	/**
+	 * Sets the metrics that record the timing of each round and player decision, or null to not measure.
+	 * @param metrics Metrics for the same number of players, possibly shared with other engines
+	 */
+	public void setMetrics(GameMetrics metrics) {
+		this.metrics = metrics;
+	}
+	
+	/**
+	 * Runs every player callback on the given executor with a deadline.  A player that misses the
+	 * deadline or throws is not asked again for that decision; the engine makes the default choice 
+	 * for it instead, and the late callback is interrupted.  Each player's callbacks run one at a time:
+	 * while a late callback is still running, the player's next callbacks are skipped and take the
+	 * default choice, so a player is never called from two threads at once.  Players are given copies
+	 * of the engine's lists and snapshots of the knowledge and partner inference, since a late callback
+	 * may still be reading them after the engine moves on.
+	 * @param executor The executor to run callbacks on, or null to call players directly on the engine's
+	 *                 thread without a deadline
+	 * @param timeoutMillis
+	 */
+	public void setDecisionDeadline(ExecutorService executor, long timeoutMillis) {
+		this.decisionExecutor = executor;
+		this.decisionTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+		if (executor == null) {
+			playerExecutors = null;
+		} else {
+			playerExecutors = new PlayerExecutor[numPlayers];
+			for (int i = 0; i < numPlayers; i++) {
+				playerExecutors[i] = new PlayerExecutor(executor);
+			}
+		}
 	}
 	
 	/**
-	 * Runs the actual game
+	 * Runs the next round of the match, then advances the winning team's levels and chooses the 
+	 * next host.
+	 * @return The outcome of the round played
 	 */
-	public void start() {
-		runRound();
+	public RoundResult start() {
+		if (isMatchOver()) throw new IllegalStateException("The match is over");
+		RoundResult result = runRound();
+		updateLevels(result);
 		round++;
+		return result;
+	}
+	
+	/**
+	 * Plays rounds until a player's level passes ACE, or until the given number of rounds is reached.
+	 * @param maxRounds
+	 * @return
+	 */
+	public MatchResult playMatch(int maxRounds) {
+		int numRounds = 0;
+		while (!isMatchOver() && numRounds < maxRounds) {
+			start();
+			numRounds++;
+		}
+		
+		boolean[] winners = new boolean[numPlayers];
+		for (int i = 0; i < numPlayers; i++) {
+			winners[i] = levels[i] > Rank.ACE.ordinal();
+		}
+		return new MatchResult(numRounds, levels.clone(), winners);
+	}
+	
+	/**
+	 * Returns whether a player has won the match by advancing past ACE
+	 * @return
+	 */
+	public boolean isMatchOver() {
+		for (int level : levels) {
+			if (level > Rank.ACE.ordinal()) return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * Returns the rank the given player is on
+	 * @param playerId
+	 * @return
+	 */
+	public Rank getLevel(int playerId) {
+		return Rank.values()[Math.min(levels[playerId], Rank.ACE.ordinal())];
 	}
 	
-	private void runRound() {
-		trumpRank = Rank.TWO;
+	private RoundResult runRound() {
+		GameRecordWriter.Round record = recordWriter == null ? null 
+				: recordWriter.beginRound(seed, round, numPlayers, numDecks);
+		// The host is known before the deal except in the first round, when every player is on TWO
+		host = nextHost;
+		partnerCall = null;
+		trumpRank = host == null ? Rank.TWO : getLevel(host.getId());
+		long start = startTiming();
 		trumpSuit = distributeCards(trumpRank);
-		updateCards(trumpSuit, trumpRank);
+		trumpOrder = TrumpOrder.of(trumpSuit, trumpRank);
+		knowledge.reset(trumpOrder);
+		start = recordPhase(GameMetrics.Phase.DRAW, start);
+		if (record != null) {
+			record.deal(playerHands, kitty);
+			record.trump(host.getId(), trumpSuit, trumpRank);
+		}
 		partnerCall = runHost();
-		printPlayerHands();
-		roundPlayPhase();
+		start = recordPhase(GameMetrics.Phase.HOST, start);
+		if (record != null) record.host(kitty, partnerCall);
+		if (verbose) printPlayerHands();
+		RoundResult result = roundPlayPhase(record);
+		recordPhase(GameMetrics.Phase.PLAY, start);
+		if (record != null) record.finish();
+		if (metrics != null) metrics.recordRound();
+		return result;
+	}
+	
+	/**
+	 * Returns the time to measure a phase or decision from, without reading the clock if not measuring.
+	 */
+	private long startTiming() {
+		return metrics == null ? 0 : System.nanoTime();
+	}
+	
+	/**
+	 * Records the time since start as a phase of the round.
+	 * @return The current time, for timing the next phase
+	 */
+	private long recordPhase(GameMetrics.Phase phase, long start) {
+		if (metrics == null) return 0;
+		long now = System.nanoTime();
+		metrics.recordPhase(phase, now - start);
+		return now;
+	}
+	
+	/**
+	 * Asks a player for a decision, measuring how long it takes.  With a deadline, returns null and sets
+	 * decisionMissed if the player does not answer in time, throws, or is still running a late callback.
+	 * @param player
+	 * @param callback
+	 * @param decision Calls the player
+	 * @return The player's answer
+	 */
+	private <T> T decide(Player player, GameMetrics.Callback callback, Supplier<T> decision) {
+		long start = startTiming();
+		decisionMissed = false;
+		T answer = null;
+		if (decisionExecutor == null) {
+			answer = decision.get();
+		} else {
+			PlayerExecutor executor = playerExecutors[player.getId()];
+			CompletableFuture<T> future = executor.submit(decision);
+			if (future == null) {
+				decisionMissed = true;
+			} else {
+				try {
+					answer = future.get(decisionTimeoutNanos, TimeUnit.NANOSECONDS);
+				} catch (TimeoutException | ExecutionException e) {
+					executor.interrupt();
+					decisionMissed = true;
+				} catch (InterruptedException e) {
+					executor.interrupt();
+					Thread.currentThread().interrupt();
+					throw new IllegalStateException("Interrupted waiting for player " + player.getId(), e);
+				}
+			}
+			if (decisionMissed && metrics != null) metrics.recordMissedDeadline(player.getId(), callback);
+		}
+		if (metrics != null) metrics.recordDecision(player.getId(), callback, System.nanoTime() - start);
+		return answer;
+	}
+	
+	/**
+	 * Asks a player for a selection of cards, as {@link #decide} does but without boxing the answer when
+	 * players are called directly.  Returns an empty selection if the player misses the deadline.
+	 * @param player
+	 * @param callback
+	 * @param decision Calls the player
+	 * @return The player's answer
+	 */
+	private long decideSelection(Player player, GameMetrics.Callback callback, LongSupplier decision) {
+		if (decisionExecutor != null) {
+			Long answer = decide(player, callback, decision::getAsLong);
+			return answer == null ? CardSelection.NONE : answer;
+		}
+		long start = startTiming();
+		decisionMissed = false;
+		long answer = decision.getAsLong();
+		if (metrics != null) metrics.recordDecision(player.getId(), callback, System.nanoTime() - start);
+		return answer;
+	}
+	
+	/**
+	 * Asks a player for a trump bid, as {@link #decideSelection} does for selections.  Returns no bid if
+	 * the player misses the deadline.
+	 * @param player
+	 * @param callback
+	 * @param decision Calls the player
+	 * @return The player's bid
+	 */
+	private int decideBid(Player player, GameMetrics.Callback callback, IntSupplier decision) {
+		if (decisionExecutor != null) {
+			Integer answer = decide(player, callback, decision::getAsInt);
+			return answer == null ? DeclarationState.NONE : answer;
+		}
+		long start = startTiming();
+		decisionMissed = false;
+		int answer = decision.getAsInt();
+		if (metrics != null) metrics.recordDecision(player.getId(), callback, System.nanoTime() - start);
+		return answer;
+	}
+	
+	/**
+	 * Tells a player about the game, as {@link #decide} asks for a decision.  With a deadline, a player
+	 * that does not return in time or is still running a late callback misses the update.
+	 * @param player
+	 * @param callback
+	 * @param update Calls the player
+	 */
+	private void inform(Player player, GameMetrics.Callback callback, Runnable update) {
+		decide(player, callback, () -> {
+			update.run();
+			return Boolean.TRUE;
+		});
+	}
+	
+	/**
+	 * Returns the list to pass to a player given an unmodifiable view of it:  the view itself if players 
+	 * are called directly, or a copy if a late callback could still be reading it after the engine 
+	 * changes it.
+	 */
+	private <T> List<T> forPlayer(List<T> view) {
+		return decisionExecutor == null ? view : Collections.unmodifiableList(new ArrayList<>(view));
+	}
+	
+	/**
+	 * Returns the information to pass to a player:  the engine's own if players are called directly, or
+	 * one with snapshots of the live knowledge and partner inference if a late callback could still be
+	 * reading them after the engine updates them.
+	 */
+	private GameInfo forPlayer(GameInfo gameInfo) {
+		if (decisionExecutor == null || gameInfo.getKnowledge() == null) return gameInfo;
+		KnowledgeTracker knowledgeCopy = knowledge.copy();
+		PartnerInference partnersCopy = gameInfo.getPartners() == null ? null : new PartnerTracker(knowledgeCopy, state.copy());
+		return new GameInfo(numPlayers, numDecks, gameInfo.getHost(), gameInfo.getTrumpRank(), gameInfo.getTrumpSuit(), 
+				gameInfo.getPartnerCall(), gameInfo.getRound(), knowledgeCopy, partnersCopy);
+	}
+	
+	private void recordInvalidAnswer(Player player, GameMetrics.Callback callback) {
+		if (metrics != null) metrics.recordInvalidAnswer(player.getId(), callback);
 	}
 	
 	/**
 	 * Runs the play phase of a round, when players actually play cards
+	 * @param record The record to add each trick to, or null
+	 * @return The points won by each player
 	 */
-	private void roundPlayPhase() {
-		System.out.println("Playing round with trump " + trumpSuit + " and " + trumpRank);
-		leadPlayer = host;
-		int playNum = 0;
-		int[] playerScores = new int[numPlayers];
+	private RoundResult roundPlayPhase(GameRecordWriter.Round record) {
+		if (verbose) System.out.println("Playing round with trump " + trumpSuit + " and " + trumpRank);
+		kittyHand.setCards(kitty);
+		state.reset(trumpOrder, host.getId(), partnerCall);
+		GameInfo gameInfo = new GameInfo(numPlayers, numDecks, host.getId(), trumpRank, trumpSuit, partnerCall, round, 
+				knowledge, partners);
+		int lastLeadSize = 0;
 		
-		while (playerHands.get(0).size() != 0) {
+		while (!state.isRoundOver()) {
+			leadPlayer = players.get(state.getLeader());
+			int playNum = state.getNumTricks();
 			List<List<Card>> previousPlays = new ArrayList<>();
-			GameInfo gameInfo = new GameInfo(numPlayers, numDecks, host.getId(), trumpRank, trumpSuit, partnerCall, round);
-			SortedSet<Integer> lead;
-			do {
-				lead = new TreeSet<>(leadPlayer.lead(getPlayerHand(leadPlayer), gameInfo));
-			} while (!GameRules.isValidLead(getPlayerHand(leadPlayer), lead));
-			
-			List<Card> leadCards = removeCardsFromHand(leadPlayer, lead);
-			previousPlays.add(makeCardList(leadCards));
-			printPlay(leadPlayer, leadCards, playNum);
+			List<List<Card>> playsView = Collections.unmodifiableList(previousPlays);
+			long lead = requestLead(leadPlayer, gameInfo);
+			List<Card> leadCards = removeCardsFromHand(leadPlayer, lead, state);
+			lastLeadSize = leadCards.size();
+			knowledge.recordLead(leadCards);
+			previousPlays.add(Collections.unmodifiableList(leadCards));
+			if (verbose) printPlay(leadPlayer, leadCards, playNum);
 
 			for (int i = 1; i < numPlayers; i++) {
-				int playerId = (leadPlayer.getId() + i) % numPlayers;
-				Player player = players.get(playerId);
-				SortedSet<Integer> play;
-				do {
-					play = new TreeSet<>(player.play(previousPlays, getPlayerHand(player), gameInfo));
-					//printPlay(player, GameAIUtils.indicesToCards(getPlayerHand(player), play), playNum);
-				} while (!GameRules.isValidPlay(leadCards, play, getPlayerHand(player)));
-				
-				List<Card> playedCards = removeCardsFromHand(player, play);
-				previousPlays.add(makeCardList(playedCards));
-				printPlay(player, playedCards, playNum);
-				// TODO:  EACH PLAYER GETS OWN COPY OF PREVIOUS PLAY
+				Player player = players.get(state.getCurrentPlayer());
+				long play = requestPlay(player, playsView, gameInfo);
+				List<Card> playedCards = removeCardsFromHand(player, play, state);
+				knowledge.recordPlay(player.getId(), playedCards);
+				previousPlays.add(Collections.unmodifiableList(playedCards));
+				if (verbose) printPlay(player, playedCards, playNum);
 			}
 			
-			// Determine winner, prepare for next play, etc
-			int winningIndex = GameRules.getWinningIndex(previousPlays);
-			Player winningPlayer = players.get((winningIndex + leadPlayer.getId()) % numPlayers);
-			int numPoints = GameRules.getNumPointsPlay(previousPlays);
-			playerScores[winningPlayer.getId()] += numPoints;
-			System.out.println("Player " + winningPlayer.getId() + " wins hand " + playNum + " for " + numPoints + " points!\n");
-			leadPlayer = winningPlayer;
-			playNum++;
+			// The trick was resolved by the last play, so the winner leads next
+			Player winningPlayer = players.get(state.getLeader());
+			if (verbose) {
+				int numPoints = GameRules.getNumPointsPlay(previousPlays);
+				System.out.println("Player " + winningPlayer.getId() + " wins hand " + playNum + " for " + numPoints + " points!\n");
+			}
+			if (record != null) record.trick(leadPlayer.getId(), winningPlayer.getId(), previousPlays);
+			if (metrics != null) metrics.recordTrick();
+			List<List<Card>> completedPlays = forPlayer(playsView);
+			GameInfo trickInfo = forPlayer(gameInfo);
+			int leaderId = leadPlayer.getId();
+			int winnerId = winningPlayer.getId();
+			for (Player player : players) {
+				inform(player, GameMetrics.Callback.TRICK_COMPLETE, 
+						() -> player.trickComplete(completedPlays, leaderId, winnerId, trickInfo));
+			}
+		}
+		
+		// A partner call answered by the host leaves the host playing alone
+		int partner = state.getPartner() == host.getId() ? -1 : state.getPartner();
+		int[] playerScores = new int[numPlayers];
+		int attackerPoints = 0;
+		for (int i = 0; i < numPlayers; i++) {
+			playerScores[i] = state.getPoints(i);
+			if (i != host.getId() && i != partner) attackerPoints += playerScores[i];
+		}
+		int kittyPoints = GameRules.getNumPoints(kitty);
+		int lastWinner = state.getLeader();
+		if (lastWinner != host.getId() && lastWinner != partner) {
+			attackerPoints += GameRules.getKittyBonus(kittyPoints, lastLeadSize);
+		}
+		if (verbose) {
+			System.out.println("=================== Final Scores ================");
+			for (int i = 0; i < numPlayers; i++) {
+				System.out.println("Player " + i + ": " + playerScores[i]);
+			}
+			System.out.println("Kitty: " + kittyPoints);
+			System.out.println("Attackers: " + attackerPoints);
 		}
 		
-		System.out.println("=================== Final Scores ================");
+		return new RoundResult(host.getId(), partner, trumpSuit, trumpRank, playerScores, kittyPoints, 
+				state.getNumTricks(), attackerPoints);
+	}
+	
+	/**
+	 * Advances the levels of the winning team of a round and chooses the next host.  If the host's team
+	 * wins, the partner hosts next (or the host again, if playing alone); otherwise the player after
+	 * the host does.
+	 * @param result
+	 */
+	private void updateLevels(RoundResult result) {
+		boolean hostWin = GameRules.isHostWin(result.getAttackerPoints(), numDecks);
+		int gain = GameRules.getLevelGain(result.getAttackerPoints(), numDecks);
 		for (int i = 0; i < numPlayers; i++) {
-			System.out.println("Player " + i + ": " + playerScores[i]);
+			if (result.isHostTeam(i) == hostWin) levels[i] += gain;
 		}
-		System.out.println("Kitty: " + GameRules.getNumPoints(kitty));
 		
+		if (hostWin) {
+			nextHost = players.get(result.getPartner() >= 0 ? result.getPartner() : result.getHost());
+		} else {
+			nextHost = players.get((result.getHost() + 1) % numPlayers);
+		}
+		if (verbose) {
+			System.out.println((hostWin ? "Host" : "Attackers") + " win and go up " + gain + " levels");
+		}
 	}
 	
 	private List<Card> getPlayerHand(Player player) {
 		return playerHands.get(player.getId());
 	}
 	
-	private List<Card> removeCardsFromHand(Player player, SortedSet<Integer> indices) {
+	private List<Card> getHandView(Player player) {
+		return handViews.get(player.getId());
+	}
+	
+	/**
+	 * Asks the player to lead until a valid lead is given, falling back to a default lead after
+	 * too many invalid attempts.  Leaves the lead in leadScratch.
+	 * 
+	 * @return The selection of the lead in the player's hand
+	 */
+	private long requestLead(Player player, GameInfo gameInfo) {
+		List<Card> hand = getPlayerHand(player);
+		GameInfo info = forPlayer(gameInfo);
+		for (int attempt = 0; attempt < MAX_INVALID_ATTEMPTS; attempt++) {
+			List<Card> handView = forPlayer(getHandView(player));
+			long lead = decideSelection(player, GameMetrics.Callback.LEAD, () -> player.lead(handView, info));
+			if (CardSelection.isWithin(lead, hand.size())) {
+				leadScratch.setCards(hand, lead);
+				if (GameRules.isValidLead(leadScratch, trumpOrder)) return lead;
+			}
+			recordInvalidAnswer(player, GameMetrics.Callback.LEAD);
+			if (decisionMissed) break;
+		}
+		
+		CardHand defaultLead = GameRules.getDefaultLead(cardHands.get(player.getId()), trumpOrder);
+		leadScratch.copyFrom(defaultLead);
+		return GameRules.cardsToIndices(hand, defaultLead);
+	}
+	
+	/**
+	 * Asks the player to respond to the lead in leadScratch until a valid play is given, falling 
+	 * back to a default play after too many invalid attempts.
+	 * 
+	 * @return The selection of the play in the player's hand
+	 */
+	private long requestPlay(Player player, List<List<Card>> previousPlays, GameInfo gameInfo) {
+		List<Card> hand = getPlayerHand(player);
+		CardHand cardHand = cardHands.get(player.getId());
+		GameInfo info = forPlayer(gameInfo);
+		for (int attempt = 0; attempt < MAX_INVALID_ATTEMPTS; attempt++) {
+			List<List<Card>> playsView = forPlayer(previousPlays);
+			List<Card> handView = forPlayer(getHandView(player));
+			long play = decideSelection(player, GameMetrics.Callback.PLAY, () -> player.play(playsView, handView, info));
+			if (CardSelection.isWithin(play, hand.size())) {
+				playScratch.setCards(hand, play);
+				if (GameRules.isValidPlay(leadScratch, playScratch, cardHand, trumpOrder)) return play;
+			}
+			recordInvalidAnswer(player, GameMetrics.Callback.PLAY);
+			if (decisionMissed) break;
+		}
+		
+		CardHand defaultPlay = GameRules.getDefaultPlay(leadScratch, cardHand, trumpOrder);
+		return GameRules.cardsToIndices(hand, defaultPlay);
+	}
+	
+	/**
+	 * Removes the selected cards from the player's hand and applies them as the player's play to the 
+	 * state
+	 * @return The cards removed
+	 */
+	private List<Card> removeCardsFromHand(Player player, long selection, GameState state) {
 		List<Card> playerHand = getPlayerHand(player);
-		List<Card> removedCards = new ArrayList<>();
+		List<Card> removedCards = new ArrayList<>(CardSelection.size(selection));
+		// Indices are visited in increasing order, so each is shifted by the cards already removed
 		int numRemoved = 0;
-		for (Integer i : indices) {
-			removedCards.add(playerHand.remove(i.intValue() - numRemoved));
+		for (long bits = selection; bits != 0; bits &= bits - 1) {
+			removedCards.add(playerHand.remove(Long.numberOfTrailingZeros(bits) - numRemoved));
 			numRemoved++;
 		}
+		state.apply(CardHand.fromCards(removedCards, numDecks));
 		return removedCards;
 	}
 	
@@ -150,31 +636,49 @@ public class GameEngine {
 	 */
 	private PartnerCall runHost() {
 		int kittySize = kitty.size();
-		List<Card> handPlusKitty = new ArrayList<>();
+		handPlusKitty.clear();
 		handPlusKitty.addAll(kitty);
 		handPlusKitty.addAll(playerHands.get(host.getId()));
 		
-		SortedSet<Integer> returnKitty;
-		GameInfo kittyInfo = new GameInfo(numPlayers, numDecks, host.getId(), trumpRank, trumpSuit, partnerCall, round);
-		do {
-			returnKitty = new TreeSet<>(host.handleKitty(makeCardList(handPlusKitty), kittySize, kittyInfo));
-		} while (returnKitty.size() != kittySize);
+		// Default to returning the kitty as it was dealt
+		long returnKitty = CardSelection.firstN(kittySize);
+		GameInfo kittyInfo = forPlayer(new GameInfo(numPlayers, numDecks, host.getId(), trumpRank, trumpSuit, partnerCall, round, 
+				knowledge));
+		for (int attempt = 0; attempt < MAX_INVALID_ATTEMPTS; attempt++) {
+			List<Card> cardsView = forPlayer(handPlusKittyView);
+			long chosen = decideSelection(host, GameMetrics.Callback.HANDLE_KITTY, 
+					() -> host.handleKitty(cardsView, kittySize, kittyInfo));
+			if (CardSelection.isWithin(chosen, handPlusKitty.size()) && CardSelection.size(chosen) == kittySize) {
+				returnKitty = chosen;
+				break;
+			}
+			recordInvalidAnswer(host, GameMetrics.Callback.HANDLE_KITTY);
+			if (decisionMissed) break;
+		}
 		
-		kitty = new ArrayList<>();
+		kitty.clear();
 		int numRemoved = 0;
-		for (Integer i : returnKitty) {
-			kitty.add(handPlusKitty.remove(i.intValue() - numRemoved));
+		for (long bits = returnKitty; bits != 0; bits &= bits - 1) {
+			kitty.add(handPlusKitty.remove(Long.numberOfTrailingZeros(bits) - numRemoved));
 			numRemoved++;
 		}
 		
-		playerHands.set(host.getId(), handPlusKitty);
+		List<Card> hostHand = playerHands.get(host.getId());
+		hostHand.clear();
+		hostHand.addAll(handPlusKitty);
+		cardHands.get(host.getId()).setCards(hostHand);
 		
-		PartnerCall partnerCall = null;
-		do {
-			partnerCall = host.callPartner(handPlusKitty, kitty, kittyInfo);
-		} while (!verifyPartnerCall(partnerCall));
+		for (int attempt = 0; attempt < MAX_INVALID_ATTEMPTS; attempt++) {
+			List<Card> handView = forPlayer(getHandView(host));
+			List<Card> kittyCards = forPlayer(kittyView);
+			PartnerCall partnerCall = decide(host, GameMetrics.Callback.CALL_PARTNER, 
+					() -> host.callPartner(handView, kittyCards, kittyInfo));
+			if (verifyPartnerCall(partnerCall)) return partnerCall;
+			recordInvalidAnswer(host, GameMetrics.Callback.CALL_PARTNER);
+			if (decisionMissed) break;
+		}
 		
-		return partnerCall;
+		return GameRules.getDefaultPartnerCall(hostHand, trumpOrder);
 	}
 	
 	/**
@@ -183,50 +687,77 @@ public class GameEngine {
 	 * @return
 	 */
 	private boolean verifyPartnerCall(PartnerCall partnerCall) {
+		if (partnerCall == null || partnerCall.getCard() == null) return false;
 		Card card = partnerCall.getCard();
-		card.setTrump(trumpSuit, trumpRank);
-		if (card.isTrump()) {
+		if (!card.isValid() || trumpOrder.isTrump(card)) {
 			return false;
 		}
-		if (0 >= partnerCall.getInstance() || partnerCall.getInstance() >= numDecks) {
+		if (0 >= partnerCall.getInstance() || partnerCall.getInstance() > numDecks) {
 			return false;
 		}
 		
 		return true;
 	}
 	
+	/**
+	 * Puts the deck back in order and shuffles it, so that the deal depends only on the generator.
+	 * @param random
+	 */
+	private void shuffleDeck(SplittableRandom random) {
+		for (int i = 0; i < cards.size(); i++) {
+			cards.set(i, Card.of(i % 54));
+		}
+		for (int i = cards.size() - 1; i > 0; i--) {
+			Collections.swap(cards, i, random.nextInt(i + 1));
+		}
+	}
+	
 	/**
 	 * Distributes cards to the players.
 	 * @return The trump suit, as declared by the players
 	 */
 	private Suit distributeCards(Rank trumpRank) {
-		Suit trumpSuit = null;
-		int numTrump = 0;
-		// the id of the called player
-		Player calledPlayer = null;
+		declarations.reset(trumpRank);
 		
-		Collections.shuffle(cards);
+		// Each round draws from its own generator, so it can be replayed without the rounds before it
+		SplittableRandom random = new SplittableRandom(BatchSimulation.roundSeed(seed, round));
+		if (dealBank == null) {
+			shuffleDeck(random);
+		} else {
+			dealBank.copyDeal(firstDeal + round, cards);
+		}
 		int currentCardIndex = 0;
 		
 		// Reset hands to be empty
-		playerHands = new ArrayList<>();
 		for (int i = 0; i < numPlayers; i++) {
-			playerHands.add(new ArrayList<>());
+			playerHands.get(i).clear();
+			cardHands.get(i).clear();
 		}
 		
+		int hostId = host == null ? -1 : host.getId();
+		GameInfo roundInfo = new GameInfo(numPlayers, numDecks, hostId, trumpRank, null, null, round);
+		for (Player player : players) {
+			SplittableRandom playerRandom = random.split();
+			inform(player, GameMetrics.Callback.INITIALIZE_ROUND, () -> {
+				player.setRandom(playerRandom);
+				player.initializeRound(roundInfo);
+			});
+		}
+		
+		// Each card costs the same however many are dealt:  players are given only the new card and the 
+		// shared declarations, and bids are checked against the copies counted in each hand
 		for (int j = 0; j < numCardsPerPlayer; j++) {
 			for (int i = 0; i < numPlayers; i++) {
 				Card c = cards.get(currentCardIndex);
 				Player player = players.get(i);
-				List<Card> hand = playerHands.get(i);
-				hand.add(c);
-				GameInfo gameInfo = new GameInfo(numPlayers, numDecks, -1, trumpRank, trumpSuit, partnerCall, round);
-				Set<Integer> calledTrump = player.draw(c.clone(), makeCardList(hand), gameInfo);
+				playerHands.get(i).add(c);
+				cardHands.get(i).add(c);
+				DeclarationState declarationsView = decisionExecutor == null ? declarations : declarations.copy();
+				int bid = decideBid(player, GameMetrics.Callback.DRAW, () -> player.draw(c, declarationsView));
 				
-				if (verifyTrumpCall(trumpSuit, numTrump, calledPlayer, player, calledTrump, hand)) {
-					trumpSuit = hand.get(GameRules.getFirst(calledTrump)).getBaseSuit();
-					numTrump = calledTrump.size();
-					calledPlayer = player;
+				if (verifyTrumpCall(declarations, cardHands.get(i), i, bid)) {
+					Card card = DeclarationState.getCard(bid);
+					declarations.declare(i, card.getBaseSuit(), DeclarationState.getCopies(bid));
 				}
 				
 				currentCardIndex++;
@@ -234,60 +765,50 @@ public class GameEngine {
 		}
 		
 		// Put remaining cards in the kitty
-		kitty = new ArrayList<>();
+		kitty.clear();
 		while (currentCardIndex < cards.size()) {
 			kitty.add(cards.get(currentCardIndex));
 			currentCardIndex++;
 		}
 		
 		// Set host if first round
-		if (round == 0) {
-			host = calledPlayer;
-			if (host == null) {
-				// no one called, so default to player 0
-				host = players.get(0);
-			}
+		if (host == null) {
+			// if no one called, default to player 0
+			host = players.get(Math.max(declarations.getDeclarer(), 0));
 		}
 		
-		if (trumpSuit == Suit.TRUMP) return null;
-		return trumpSuit;	
+		if (declarations.getTrumpSuit() == Suit.TRUMP) return null;
+		return declarations.getTrumpSuit();	
 	}
 	
 	/**
-	 * Returns whether the given attempt at a call for trump is a valid call for trump.
+	 * Returns whether the given bid for trump is a valid call for trump, overturning the declaration so
+	 * far.  The player must hold the copies shown, counted in their hand as it is dealt.
 	 * 
 	 * TODO:  FIND ACTUAL RULES FOR OVERTURNING TRUMP WTIH MORE THAN 2 DECKS
-	 * @param trumpSuit
-	 * @param numTrump
-	 * @param calledPlayer
-	 * @param player
-	 * @param newTrump
-	 * @param hand
+	 * @param declarations The declarations so far
+	 * @param hand The cards dealt to the player so far
+	 * @param playerId
+	 * @param bid
 	 * @return
 	 */
-	private boolean verifyTrumpCall(Suit trumpSuit, int numTrump, Player calledPlayer, Player player, 
-									Set<Integer> newTrump, List<Card> hand) {
+	static boolean verifyTrumpCall(DeclarationState declarations, CardHand hand, int playerId, int bid) {
 		// Ignore no-calls
-		if (newTrump == null) return false;
+		Card card = DeclarationState.getCard(bid);
+		int copies = DeclarationState.getCopies(bid);
+		if (card == null || copies <= 0 || hand.count(card.getId()) < copies) return false;
 		
 		// Verify not over-turning self
-		if (calledPlayer == player) return false;
-	
-		// Verify all called cards are the same
-		Card firstCard = hand.get(GameRules.getFirst(newTrump));
-		for (Integer c : newTrump) {
-			if (firstCard.getId() != hand.get(c).getId()) {
-				return false;
-			}
-		}
+		if (declarations.getDeclarer() == playerId) return false;
 		
 		// Handle pair of joker no-trump call
-		if (firstCard.isJoker()) {
-			return newTrump.size() > 1;
+		if (card.isJoker()) {
+			return copies > 1;
 		}
 		
-		// Verify more cards called than previously called
-		if (newTrump.size() <= numTrump) return false;
+		// Only the trump rank can be declared, and with more cards than previously called
+		if (card.getBaseRank() != declarations.getTrumpRank()) return false;
+		if (copies <= declarations.getNumDeclared()) return false;
 			
 		return true;
 	}
@@ -299,14 +820,14 @@ public class GameEngine {
 		for (int i = 0; i < numPlayers; i++) {
 			Player player = players.get(i);
 			List<Card> hand = playerHands.get(i);
-			hand.sort(null);
+			hand.sort(trumpOrder);
 			System.out.println("Player " + player.getId() + ":");
 			System.out.print("    ");
 			System.out.println(hand);
 		}
 		
 		System.out.println("Kitty: ");
-		kitty.sort(null);
+		kitty.sort(trumpOrder);
 		System.out.print("    ");
 		System.out.println(kitty);
 	}
@@ -322,31 +843,62 @@ public class GameEngine {
 		System.out.println(play);
 	}
 	
-	/** 
-	 * Updates all the cards to take into account the trump suit.
-	 * For now does not use object vars to allow different trumps
-	 * to be set (possible uses with AIs)
-	 * @param trump
-	 */
-	private void updateCards(Suit trumpSuit, Rank trumpRank) {
-		for (Card c : cards) {
-			c.setTrump(trumpSuit, trumpRank);
-		}
-	}
-	
-
-	
 	/**
-	 * Returns a new list of cards identical to the old one logically but having no shared references.
-	 * Used before passing any information back to the players
-	 * @param initialCards
-	 * @return
+	 * Runs one player's callbacks on the decision executor, one at a time.  A callback is only started
+	 * once the player's previous callback has returned, even one the engine stopped waiting for, so a
+	 * player that is not thread safe is never called from two threads at once.
 	 */
-	private List<Card> makeCardList(List<Card> initialCards) {
-		List<Card> newList = new ArrayList<>();
-		for (Card c : initialCards) {
-			newList.add(c.clone());
+	private static class PlayerExecutor {
+		private final ExecutorService executor;
+		// Whether a callback has been submitted and not yet returned, and the thread running it
+		private boolean busy;
+		private Thread runner;
+		
+		PlayerExecutor(ExecutorService executor) {
+			this.executor = executor;
+		}
+		
+		/**
+		 * Starts the callback, unless the player's previous callback has not yet returned.
+		 * @param decision
+		 * @return The answer to come, or null if the callback was not started
+		 */
+		synchronized <T> CompletableFuture<T> submit(Supplier<T> decision) {
+			if (busy) return null;
+			busy = true;
+			CompletableFuture<T> answer = new CompletableFuture<>();
+			try {
+				executor.execute(() -> run(decision, answer));
+			} catch (RejectedExecutionException e) {
+				busy = false;
+				throw e;
+			}
+			return answer;
+		}
+		
+		private <T> void run(Supplier<T> decision, CompletableFuture<T> answer) {
+			synchronized (this) {
+				runner = Thread.currentThread();
+			}
+			try {
+				answer.complete(decision.get());
+			} catch (Throwable t) {
+				answer.completeExceptionally(t);
+			} finally {
+				synchronized (this) {
+					runner = null;
+					busy = false;
+				}
+				// An interrupt meant for this callback must not reach the next task of the pool thread
+				Thread.interrupted();
+			}
+		}
+		
+		/**
+		 * Interrupts the running callback, if any, once the engine has stopped waiting for it.
+		 */
+		synchronized void interrupt() {
+			if (runner != null) runner.interrupt();
 		}
-		return newList;
 	}
 }
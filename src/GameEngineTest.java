@@ -0,0 +1,171 @@
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class GameEngineTest {
+
+	/**
+	 * A player that takes far longer than the deadline to hear about each trick, ignoring interrupts,
+	 * and counts how many of its callbacks run at once.
+	 */
+	private static class SlowPlayer extends DumbAIPlayer {
+		final AtomicInteger running = new AtomicInteger();
+		final AtomicInteger mostRunning = new AtomicInteger();
+		final AtomicInteger calls = new AtomicInteger();
+
+		SlowPlayer(int id) {
+			super(id);
+		}
+
+		private void enter() {
+			calls.incrementAndGet();
+			mostRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+		}
+
+		@Override
+		long lead(List<Card> hand, GameInfo gameInfo) {
+			enter();
+			try {
+				return super.lead(hand, gameInfo);
+			} finally {
+				running.decrementAndGet();
+			}
+		}
+
+		@Override
+		long play(List<List<Card>> previousPlays, List<Card> hand, GameInfo gameInfo) {
+			enter();
+			try {
+				return super.play(previousPlays, hand, gameInfo);
+			} finally {
+				running.decrementAndGet();
+			}
+		}
+
+		@Override
+		void trickComplete(List<List<Card>> plays, int leadPlayerId, int winnerId, GameInfo gameInfo) {
+			enter();
+			long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(60);
+			while (System.nanoTime() < end) {
+				// Busy, and deaf to the engine's interrupt
+			}
+			running.decrementAndGet();
+		}
+	}
+
+	@Test
+	public void slowPlayerTest() throws InterruptedException {
+		SlowPlayer[] slow = new SlowPlayer[1];
+		List<PlayerFactory> lineup = new ArrayList<>();
+		lineup.add(id -> slow[0] = new SlowPlayer(id));
+		for (int i = 1; i < 4; i++) {
+			lineup.add(DumbAIPlayer::new);
+		}
+		GameEngine engine = new GameEngine(lineup, 7);
+		engine.setVerbose(false);
+		ExecutorService executor = Executors.newCachedThreadPool();
+		try {
+			engine.setDecisionDeadline(executor, 10);
+			RoundResult result = engine.start();
+			assertTrue(result.getNumTricks() > 0);
+		} finally {
+			executor.shutdown();
+			assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+		}
+		// The player was skipped while its late callbacks ran, instead of being called again alongside them
+		assertEquals(1, slow[0].mostRunning.get());
+		assertTrue(slow[0].calls.get() > 0);
+	}
+	
+	@Test
+	public void hostSuccessionTest() {
+		int numPlayers = 5;
+		int numDecks = (numPlayers + 1) / 2;
+		GameEngine engine = new GameEngine(numPlayers, 11);
+		engine.setVerbose(false);
+		int[] levels = new int[numPlayers];
+		int expectedHost = -1;
+		boolean hostWon = false;
+		boolean attackersWon = false;
+		while (!engine.isMatchOver()) {
+			RoundResult result = engine.start();
+			if (expectedHost >= 0) assertEquals(expectedHost, result.getHost());
+			assertEquals(Rank.values()[Math.min(levels[result.getHost()], Rank.ACE.ordinal())], result.getTrumpRank());
+			
+			boolean hostWin = GameRules.isHostWin(result.getAttackerPoints(), numDecks);
+			int gain = GameRules.getLevelGain(result.getAttackerPoints(), numDecks);
+			for (int i = 0; i < numPlayers; i++) {
+				if (result.isHostTeam(i) == hostWin) levels[i] += gain;
+				assertEquals(Rank.values()[Math.min(levels[i], Rank.ACE.ordinal())], engine.getLevel(i));
+			}
+			if (hostWin) {
+				hostWon = true;
+				expectedHost = result.getPartner() >= 0 ? result.getPartner() : result.getHost();
+			} else {
+				attackersWon = true;
+				expectedHost = (result.getHost() + 1) % numPlayers;
+			}
+		}
+		assertTrue(hostWon);
+		assertTrue(attackersWon);
+	}
+	
+	@Test
+	public void bidEncodingTest() {
+		Card card = new Card(Suit.HEARTS, Rank.FIVE);
+		for (int copies = 1; copies <= 3; copies++) {
+			int bid = DeclarationState.bid(card, copies);
+			assertNotEquals(DeclarationState.NONE, bid);
+			assertEquals(card.getId(), DeclarationState.getCard(bid).getId());
+			assertEquals(copies, DeclarationState.getCopies(bid));
+		}
+		Card joker = new Card(Suit.TRUMP, Rank.COLOR_JOKER);
+		assertEquals(joker.getId(), DeclarationState.getCard(DeclarationState.bid(joker, 2)).getId());
+		assertNull(DeclarationState.getCard(DeclarationState.NONE));
+		assertEquals(0, DeclarationState.getCopies(DeclarationState.NONE));
+	}
+	
+	@Test
+	public void trumpCallTest() {
+		DeclarationState declarations = new DeclarationState(Rank.FIVE);
+		Card heartFive = new Card(Suit.HEARTS, Rank.FIVE);
+		Card spadeFive = new Card(Suit.SPADES, Rank.FIVE);
+		Card heartSix = new Card(Suit.HEARTS, Rank.SIX);
+		Card joker = new Card(Suit.TRUMP, Rank.JOKER);
+		CardHand hand0 = CardHand.fromCards(Arrays.asList(heartFive, heartSix, heartSix, joker), 2);
+		CardHand hand1 = CardHand.fromCards(Arrays.asList(spadeFive, spadeFive, heartSix), 2);
+		CardHand hand2 = CardHand.fromCards(Arrays.asList(joker, joker, heartFive), 2);
+		
+		assertFalse(GameEngine.verifyTrumpCall(declarations, hand0, 0, DeclarationState.NONE));
+		// Only cards of the trump rank can be declared
+		assertFalse(GameEngine.verifyTrumpCall(declarations, hand0, 0, DeclarationState.bid(heartSix, 2)));
+		// The copies shown must be held
+		assertFalse(GameEngine.verifyTrumpCall(declarations, hand0, 0, DeclarationState.bid(heartFive, 2)));
+		assertFalse(GameEngine.verifyTrumpCall(declarations, hand0, 0, DeclarationState.bid(spadeFive, 1)));
+		// A single joker does not declare no trump
+		assertFalse(GameEngine.verifyTrumpCall(declarations, hand0, 0, DeclarationState.bid(joker, 1)));
+		assertTrue(GameEngine.verifyTrumpCall(declarations, hand0, 0, DeclarationState.bid(heartFive, 1)));
+		declarations.declare(0, Suit.HEARTS, 1);
+		
+		// A declaration is overturned only by more copies, and never by its own declarer
+		assertFalse(GameEngine.verifyTrumpCall(declarations, hand1, 1, DeclarationState.bid(spadeFive, 1)));
+		assertTrue(GameEngine.verifyTrumpCall(declarations, hand1, 1, DeclarationState.bid(spadeFive, 2)));
+		declarations.declare(1, Suit.SPADES, 2);
+		assertFalse(GameEngine.verifyTrumpCall(declarations, hand1, 1, DeclarationState.bid(spadeFive, 2)));
+		assertFalse(GameEngine.verifyTrumpCall(declarations, hand2, 2, DeclarationState.bid(heartFive, 1)));
+		
+		// A pair of jokers overturns a pair of a suit
+		assertTrue(GameEngine.verifyTrumpCall(declarations, hand2, 2, DeclarationState.bid(joker, 2)));
+		declarations.declare(2, joker.getBaseSuit(), 2);
+		assertEquals(Suit.TRUMP, declarations.getTrumpSuit());
+		assertEquals(2, declarations.getDeclarer());
+	}
+}
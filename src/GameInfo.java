@@ -11,17 +11,35 @@ public class GameInfo {
 	private final Integer host;
 	private final Rank trumpRank;
 	private final Suit trumpSuit;
+	private final TrumpOrder trumpOrder;
 	private final PartnerCall partnerCall;
 	private final int round;
+	// Live view of what has been played this round, or null
+	private final PublicKnowledge knowledge;
+	// Live view of what is known about the partner call this round, or null
+	private final PartnerInference partners;
 	
 	public GameInfo(int numPlayers, int numDecks, Integer host, Rank trumpRank, Suit trumpSuit, PartnerCall partnerCall, int round) {
+		this(numPlayers, numDecks, host, trumpRank, trumpSuit, partnerCall, round, null);
+	}
+	
+	public GameInfo(int numPlayers, int numDecks, Integer host, Rank trumpRank, Suit trumpSuit, PartnerCall partnerCall, int round,
+			PublicKnowledge knowledge) {
+		this(numPlayers, numDecks, host, trumpRank, trumpSuit, partnerCall, round, knowledge, null);
+	}
+	
+	public GameInfo(int numPlayers, int numDecks, Integer host, Rank trumpRank, Suit trumpSuit, PartnerCall partnerCall, int round,
+			PublicKnowledge knowledge, PartnerInference partners) {
 		this.numPlayers = numPlayers;
 		this.numDecks = numDecks;
 		this.host = host;
 		this.trumpRank = trumpRank;
 		this.trumpSuit = trumpSuit;
+		this.trumpOrder = TrumpOrder.of(trumpSuit, trumpRank);
 		this.partnerCall = partnerCall;
 		this.round = round;
+		this.knowledge = knowledge;
+		this.partners = partners;
 	}
 
 	public int getNumPlayers() {
@@ -44,6 +62,14 @@ public class GameInfo {
 		return trumpRank;
 	}
 
+	/**
+	 * Returns how each card plays under the current trump suit and rank.
+	 * @return
+	 */
+	public TrumpOrder getTrumpOrder() {
+		return trumpOrder;
+	}
+
 	public PartnerCall getPartnerCall() {
 		return partnerCall;
 	}
@@ -51,4 +77,24 @@ public class GameInfo {
 	public int getRound() {
 		return round;
 	}
+
+	/**
+	 * Returns what every player knows from the cards played so far this round.  Unlike the rest of this
+	 * class it is a live view, updated by the engine after every play; it is only given once the trump 
+	 * is known, and is null while drawing or when not provided.
+	 * @return
+	 */
+	public PublicKnowledge getKnowledge() {
+		return knowledge;
+	}
+
+	/**
+	 * Returns what every player can infer about the partner call so far this round.  Like the knowledge,
+	 * it is a live view updated by the engine after every play; it is only given once the partner has
+	 * been called, and is null before then or when not provided.
+	 * @return
+	 */
+	public PartnerInference getPartners() {
+		return partners;
+	}
 }
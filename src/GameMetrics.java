@@ -0,0 +1,150 @@
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+
+/**
+ * Timing and counting instrumentation for engines, shared by every engine of a simulation.  Records the
+ * latency of each Player callback by seat, the wall-clock time of each phase of a round, the number of
+ * invalid answers that had to be asked again, and the number of rounds and tricks played.  Engines
+ * without metrics skip all of this, including reading the clock.
+ */
+public class GameMetrics {
+
+	/**
+	 * The Player callbacks that are timed
+	 */
+	public enum Callback { INITIALIZE_ROUND, DRAW, HANDLE_KITTY, CALL_PARTNER, LEAD, PLAY, TRICK_COMPLETE }
+
+	/**
+	 * The phases of a round:  dealing and trump calls, the host's kitty and partner call, and the tricks
+	 */
+	public enum Phase { DRAW, HOST, PLAY }
+
+	private final int numPlayers;
+	// latencies[player][callback]
+	private final LatencyHistogram[][] latencies;
+	// invalidAnswers[player * number of callbacks + callback]
+	private final AtomicLongArray invalidAnswers;
+	// missedDeadlines[player * number of callbacks + callback]
+	private final AtomicLongArray missedDeadlines;
+	private final AtomicLongArray phaseNanos = new AtomicLongArray(Phase.values().length);
+	private final AtomicLong numRounds = new AtomicLong();
+	private final AtomicLong numTricks = new AtomicLong();
+	private final long startNanos = System.nanoTime();
+
+	public GameMetrics(int numPlayers) {
+		this.numPlayers = numPlayers;
+		latencies = new LatencyHistogram[numPlayers][Callback.values().length];
+		for (int i = 0; i < numPlayers; i++) {
+			for (int j = 0; j < Callback.values().length; j++) {
+				latencies[i][j] = new LatencyHistogram();
+			}
+		}
+		invalidAnswers = new AtomicLongArray(numPlayers * Callback.values().length);
+		missedDeadlines = new AtomicLongArray(numPlayers * Callback.values().length);
+	}
+
+	public void recordDecision(int playerId, Callback callback, long nanos) {
+		latencies[playerId][callback.ordinal()].record(nanos);
+	}
+
+	public void recordInvalidAnswer(int playerId, Callback callback) {
+		invalidAnswers.incrementAndGet(playerId * Callback.values().length + callback.ordinal());
+	}
+
+	/**
+	 * Records a callback that did not answer before its deadline, or threw
+	 */
+	public void recordMissedDeadline(int playerId, Callback callback) {
+		missedDeadlines.incrementAndGet(playerId * Callback.values().length + callback.ordinal());
+	}
+
+	public void recordPhase(Phase phase, long nanos) {
+		phaseNanos.addAndGet(phase.ordinal(), nanos);
+	}
+
+	public void recordTrick() {
+		numTricks.incrementAndGet();
+	}
+
+	public void recordRound() {
+		numRounds.incrementAndGet();
+	}
+
+	public LatencyHistogram getLatency(int playerId, Callback callback) {
+		return latencies[playerId][callback.ordinal()];
+	}
+
+	public long getInvalidAnswers(int playerId, Callback callback) {
+		return invalidAnswers.get(playerId * Callback.values().length + callback.ordinal());
+	}
+
+	public long getMissedDeadlines(int playerId, Callback callback) {
+		return missedDeadlines.get(playerId * Callback.values().length + callback.ordinal());
+	}
+
+	/**
+	 * The total time spent in the given phase by all engines
+	 */
+	public long getPhaseNanos(Phase phase) {
+		return phaseNanos.get(phase.ordinal());
+	}
+
+	public long getNumRounds() {
+		return numRounds.get();
+	}
+
+	public long getNumTricks() {
+		return numTricks.get();
+	}
+
+	/**
+	 * Returns the tricks played per second of wall-clock time since these metrics were created
+	 */
+	public double getTricksPerSecond() {
+		return numTricks.get() / ((System.nanoTime() - startNanos) / 1e9);
+	}
+
+	/**
+	 * Prints a report of the current metrics to the given consumer at a fixed period, on a daemon
+	 * thread, until the returned scheduler is shut down.
+	 * @param periodMillis
+	 * @param out
+	 * @return
+	 */
+	public ScheduledExecutorService reportPeriodically(long periodMillis, Consumer<String> out) {
+		ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread thread = new Thread(r, "GameMetrics report");
+			thread.setDaemon(true);
+			return thread;
+		});
+		scheduler.scheduleAtFixedRate(() -> out.accept(toString()), periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+		return scheduler;
+	}
+
+	/**
+	 * A snapshot of the current metrics, as a report
+	 */
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append(String.format("Rounds: %d, tricks: %d, %.0f tricks/s%n", getNumRounds(), getNumTricks(), getTricksPerSecond()));
+		for (Phase phase : Phase.values()) {
+			sb.append(String.format("Phase %s: %.3f s%n", phase, getPhaseNanos(phase) / 1e9));
+		}
+		for (int i = 0; i < numPlayers; i++) {
+			for (Callback callback : Callback.values()) {
+				LatencyHistogram latency = getLatency(i, callback);
+				if (latency.getCount() == 0) continue;
+				sb.append(String.format("Player %d %s: n=%d mean=%.1fus p50=%.1fus p99=%.1fus max=%.1fus invalid=%d missed=%d%n",
+						i, callback, latency.getCount(), latency.getMeanNanos() / 1e3,
+						latency.getPercentileNanos(0.5) / 1e3, latency.getPercentileNanos(0.99) / 1e3,
+						latency.getMaxNanos() / 1e3, getInvalidAnswers(i, callback), getMissedDeadlines(i, callback)));
+			}
+		}
+		return sb.toString().trim();
+	}
+}
@@ -0,0 +1,187 @@
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Static helpers for the binary protocol spoken between a {@link GameServer} and its clients.  Every
+ * message is a frame of a short giving the length of the rest of the frame, a type byte and the
+ * payload.  Cards are single id bytes, lists of cards are a count byte followed by the cards, and
+ * selections are longs as in {@link CardSelection}.
+ *
+ * The server sends SEAT when a table starts, then one message per player callback.  Decisions after
+ * the deal carry the public information of the round and every list the callback is given, so clients
+ * need not track any state then; while drawing, only the new card and the declarations so far are
+ * sent, and the trump rank is that of the ROUND before.  The client answers each decision with
+ * SELECTION, holding a bid for DRAW, or PARTNER.  END is sent when the table has finished its rounds.
+ * Frames are at most MAX_FRAME bytes, so connections may use fixed buffers.
+ *
+ *   SEAT          byte seat
+ *   ROUND         info, long seed of the player's generator for the round
+ *   DRAW          byte new card, declarations                              -> SELECTION
+ *   KITTY         info, byte kitty size, cards hand plus kitty             -> SELECTION
+ *   CALL_PARTNER  info, cards hand, cards kitty                            -> PARTNER
+ *   LEAD          info, cards hand                                         -> SELECTION
+ *   PLAY          info, byte number of plays, cards per play, cards hand   -> SELECTION
+ *   TRICK         info, byte leader, winner, number of plays, cards per play
+ *   SELECTION     long selection
+ *   PARTNER       byte card (-1 if none), instance
+ *
+ * info is the GameInfo of the callback:  byte number of players, number of decks, host (-1 if none),
+ * trump rank, trump suit (-1 if none), called card (-1 if none), called instance, then int round.
+ * declarations are the DeclarationState:  byte suit declared (-1 if none), copies shown, declarer.
+ */
+public class GameProtocol {
+
+	public static final int MAX_FRAME = 1024;
+	// Bytes before the payload:  the length and the type
+	public static final int HEADER_SIZE = 3;
+
+	public static final byte SEAT = 1;
+	public static final byte ROUND = 2;
+	public static final byte DRAW = 3;
+	public static final byte KITTY = 4;
+	public static final byte CALL_PARTNER = 5;
+	public static final byte LEAD = 6;
+	public static final byte PLAY = 7;
+	public static final byte TRICK = 8;
+	public static final byte END = 9;
+	public static final byte SELECTION = 10;
+	public static final byte PARTNER = 11;
+
+	/**
+	 * Starts a frame of the given type; the payload is put after it and the frame closed with
+	 * {@link #endFrame}.
+	 * @param buffer
+	 * @param type
+	 * @return The position of the frame, to pass to endFrame
+	 */
+	public static int beginFrame(ByteBuffer buffer, byte type) {
+		int start = buffer.position();
+		buffer.putShort((short) 0);
+		buffer.put(type);
+		return start;
+	}
+
+	/**
+	 * Writes the length of the frame started at the given position.
+	 * @param buffer
+	 * @param start
+	 */
+	public static void endFrame(ByteBuffer buffer, int start) {
+		int length = buffer.position() - start - 2;
+		if (length + 2 > MAX_FRAME) throw new IllegalStateException("Frame of " + (length + 2) + " bytes");
+		buffer.putShort(start, (short) length);
+	}
+
+	/**
+	 * Returns the length of the first complete frame in the buffer, which is in read mode, or 0 if the
+	 * frame has not been fully received.
+	 * @param buffer
+	 * @return
+	 */
+	public static int frameLength(ByteBuffer buffer) {
+		if (buffer.remaining() < 2) return 0;
+		int length = 2 + (buffer.getShort(buffer.position()) & 0xFFFF);
+		if (length < HEADER_SIZE || length > MAX_FRAME) {
+			throw new IllegalStateException("Invalid frame length " + length);
+		}
+		return buffer.remaining() < length ? 0 : length;
+	}
+
+	public static void putInfo(ByteBuffer buffer, GameInfo info) {
+		buffer.put((byte) info.getNumPlayers());
+		buffer.put((byte) info.getNumDecks());
+		buffer.put((byte) (info.getHost() == null ? -1 : info.getHost()));
+		buffer.put((byte) info.getTrumpRank().ordinal());
+		buffer.put((byte) (info.getTrumpSuit() == null ? -1 : info.getTrumpSuit().ordinal()));
+		putPartnerCall(buffer, info.getPartnerCall());
+		buffer.putInt(info.getRound());
+	}
+
+	public static GameInfo getInfo(ByteBuffer buffer) {
+		int numPlayers = buffer.get();
+		int numDecks = buffer.get();
+		int host = buffer.get();
+		Rank trumpRank = Rank.values()[buffer.get()];
+		int suit = buffer.get();
+		PartnerCall call = getPartnerCall(buffer);
+		int round = buffer.getInt();
+		return new GameInfo(numPlayers, numDecks, host < 0 ? null : host, trumpRank,
+				suit < 0 ? null : Suit.values()[suit], call, round);
+	}
+
+	public static void putDeclarations(ByteBuffer buffer, DeclarationState declarations) {
+		buffer.put((byte) (declarations.getTrumpSuit() == null ? -1 : declarations.getTrumpSuit().ordinal()));
+		buffer.put((byte) declarations.getNumDeclared());
+		buffer.put((byte) declarations.getDeclarer());
+	}
+
+	/**
+	 * Reads declarations into the given state, which keeps its trump rank.
+	 * @param buffer
+	 * @param declarations
+	 */
+	public static void getDeclarations(ByteBuffer buffer, DeclarationState declarations) {
+		int suit = buffer.get();
+		int copies = buffer.get();
+		int declarer = buffer.get();
+		declarations.declare(declarer, suit < 0 ? null : Suit.values()[suit], copies);
+	}
+
+	public static void putPartnerCall(ByteBuffer buffer, PartnerCall call) {
+		buffer.put((byte) (call == null || call.getCard() == null ? -1 : call.getCard().getId()));
+		buffer.put((byte) (call == null ? 0 : call.getInstance()));
+	}
+
+	/**
+	 * Reads a partner call, or null if none was given.  A card that does not exist is read as null.
+	 * @param buffer
+	 * @return
+	 */
+	public static PartnerCall getPartnerCall(ByteBuffer buffer) {
+		int id = buffer.get();
+		int instance = buffer.get();
+		if (id == -1) return null;
+		return new PartnerCall(0 <= id && id < CardHand.NUM_IDS ? Card.of(id) : null, instance);
+	}
+
+	public static void putCard(ByteBuffer buffer, Card card) {
+		buffer.put((byte) card.getId());
+	}
+
+	public static Card getCard(ByteBuffer buffer) {
+		return Card.of(buffer.get());
+	}
+
+	public static void putCards(ByteBuffer buffer, List<Card> cards) {
+		buffer.put((byte) cards.size());
+		for (int i = 0; i < cards.size(); i++) {
+			buffer.put((byte) cards.get(i).getId());
+		}
+	}
+
+	public static List<Card> getCards(ByteBuffer buffer) {
+		int size = buffer.get() & 0xFF;
+		List<Card> cards = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			cards.add(Card.of(buffer.get()));
+		}
+		return cards;
+	}
+
+	public static void putPlays(ByteBuffer buffer, List<List<Card>> plays) {
+		buffer.put((byte) plays.size());
+		for (List<Card> play : plays) {
+			putCards(buffer, play);
+		}
+	}
+
+	public static List<List<Card>> getPlays(ByteBuffer buffer) {
+		int size = buffer.get() & 0xFF;
+		List<List<Card>> plays = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			plays.add(getCards(buffer));
+		}
+		return plays;
+	}
+}
@@ -0,0 +1,245 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Reads a file written by GameRecordWriter through a memory mapping.  The reader is a cursor over the
+ * records:  next moves to the following record, and the accessors read card ids and other values
+ * straight from the mapped bytes, so iterating over many records creates no objects.  Files larger
+ * than a single mapping are read through successive windows.
+ */
+public class GameRecordReader implements Closeable {
+
+	// Largest region mapped at once
+	private static final long MAX_WINDOW = Integer.MAX_VALUE;
+	// Offsets within a record of the fixed-size fields
+	private static final int SEED = 4;
+	private static final int ROUND = 12;
+	private static final int NUM_PLAYERS = 16;
+	private static final int NUM_DECKS = 17;
+	private static final int HAND_SIZE = 18;
+	private static final int KITTY_SIZE = 19;
+	private static final int DEAL = 20;
+
+	private final FileChannel channel;
+	private final long fileSize;
+	private final long maxWindow;
+	private MappedByteBuffer window;
+	private long windowStart;
+	private long nextRecord;
+
+	// Offsets in the window of the current record and its sections, or record is -1 before the first
+	private int record = -1;
+	private int numPlayers;
+	private int handSize;
+	private int kittySize;
+	private int dealtKitty;
+	private int trump;
+	private int buriedKitty;
+	private int partnerCall;
+	private int numTricks;
+	private int[] tricks = new int[32];
+
+	public GameRecordReader(Path path) throws IOException {
+		this(path, MAX_WINDOW);
+	}
+
+	/**
+	 * @param path
+	 * @param maxWindow Largest region mapped at once, at least as large as any record
+	 * @throws IOException
+	 */
+	GameRecordReader(Path path, long maxWindow) throws IOException {
+		this.maxWindow = maxWindow;
+		channel = FileChannel.open(path, StandardOpenOption.READ);
+		fileSize = channel.size();
+		map(0);
+		if (fileSize < 8 || window.getInt(0) != GameRecordWriter.MAGIC) {
+			channel.close();
+			throw new IOException("Not a game record file: " + path);
+		}
+		if (window.getInt(4) != GameRecordWriter.VERSION) {
+			channel.close();
+			throw new IOException("Unsupported game record version " + window.getInt(4));
+		}
+		nextRecord = 8;
+	}
+
+	/**
+	 * Moves to the next record.
+	 * @return false if there are no more records
+	 * @throws IOException
+	 */
+	public boolean next() throws IOException {
+		if (nextRecord + 4 > fileSize) return false;
+		if (nextRecord + 4 > windowStart + window.capacity()) map(nextRecord);
+		int length = window.getInt((int) (nextRecord - windowStart));
+		if (nextRecord + 4 + length > fileSize) throw new IOException("Truncated game record at " + nextRecord);
+		if (nextRecord + 4 + length > windowStart + window.capacity()) map(nextRecord);
+
+		record = (int) (nextRecord - windowStart);
+		int end = record + 4 + length;
+		nextRecord += 4 + length;
+
+		numPlayers = window.get(record + NUM_PLAYERS);
+		handSize = window.get(record + HAND_SIZE);
+		kittySize = window.get(record + KITTY_SIZE);
+		dealtKitty = record + DEAL + numPlayers * handSize;
+		trump = dealtKitty + kittySize;
+		buriedKitty = trump + 3;
+		partnerCall = buriedKitty + kittySize;
+
+		numTricks = 0;
+		for (int offset = partnerCall + 2; offset < end; offset += 3 + numPlayers * window.get(offset + 2)) {
+			if (numTricks == tricks.length) tricks = Arrays.copyOf(tricks, numTricks * 2);
+			tricks[numTricks++] = offset;
+		}
+		return true;
+	}
+
+	private void map(long start) throws IOException {
+		windowStart = start;
+		window = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(fileSize - start, maxWindow));
+	}
+
+	public long getSeed() {
+		return window.getLong(record + SEED);
+	}
+
+	public int getRound() {
+		return window.getInt(record + ROUND);
+	}
+
+	public int getNumPlayers() {
+		return numPlayers;
+	}
+
+	public int getNumDecks() {
+		return window.get(record + NUM_DECKS);
+	}
+
+	/**
+	 * The number of cards dealt to each player
+	 */
+	public int getHandSize() {
+		return handSize;
+	}
+
+	public int getKittySize() {
+		return kittySize;
+	}
+
+	/**
+	 * Returns the id of the i-th card drawn by the given player.
+	 * @param player
+	 * @param i
+	 * @return
+	 */
+	public int getDealtCard(int player, int i) {
+		return window.get(record + DEAL + player * handSize + i);
+	}
+
+	/**
+	 * Returns the id of the i-th card of the kitty as dealt.
+	 * @param i
+	 * @return
+	 */
+	public int getDealtKittyCard(int i) {
+		return window.get(dealtKitty + i);
+	}
+
+	public int getHost() {
+		return window.get(trump);
+	}
+
+	/**
+	 * Null if no trump
+	 * @return
+	 */
+	public Suit getTrumpSuit() {
+		int suit = window.get(trump + 1);
+		return suit < 0 ? null : Suit.values()[suit];
+	}
+
+	public Rank getTrumpRank() {
+		return Rank.values()[window.get(trump + 2)];
+	}
+
+	/**
+	 * Returns the id of the i-th card of the kitty as buried by the host.
+	 * @param i
+	 * @return
+	 */
+	public int getBuriedKittyCard(int i) {
+		return window.get(buriedKitty + i);
+	}
+
+	/**
+	 * The id of the card called for partner, or -1 if none
+	 * @return
+	 */
+	public int getPartnerCard() {
+		return window.get(partnerCall);
+	}
+
+	public int getPartnerInstance() {
+		return window.get(partnerCall + 1);
+	}
+
+	public int getNumTricks() {
+		return numTricks;
+	}
+
+	public int getTrickLeader(int trick) {
+		return window.get(tricks[trick]);
+	}
+
+	public int getTrickWinner(int trick) {
+		return window.get(tricks[trick] + 1);
+	}
+
+	/**
+	 * Returns the number of cards in each play of the given trick.
+	 * @param trick
+	 * @return
+	 */
+	public int getPlaySize(int trick) {
+		return window.get(tricks[trick] + 2);
+	}
+
+	/**
+	 * Returns the id of the i-th card of a play in the given trick.
+	 * @param trick
+	 * @param play The index of the play, starting from the lead
+	 * @param i
+	 * @return
+	 */
+	public int getPlayCard(int trick, int play, int i) {
+		int size = window.get(tricks[trick] + 2);
+		return window.get(tricks[trick] + 3 + play * size + i);
+	}
+
+	/**
+	 * Replaces the contents of the given hand with a play of the given trick.
+	 * @param trick
+	 * @param play The index of the play, starting from the lead
+	 * @param into
+	 */
+	public void getPlay(int trick, int play, CardHand into) {
+		into.clear();
+		int size = window.get(tricks[trick] + 2);
+		int offset = tricks[trick] + 3 + play * size;
+		for (int i = 0; i < size; i++) {
+			into.add(window.get(offset + i));
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+}
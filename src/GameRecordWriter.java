@@ -0,0 +1,157 @@
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Writes played rounds to a compact binary file, one record per round, for offline analysis.  Cards are
+ * stored as single id bytes.  The file starts with MAGIC and VERSION as ints, followed by the records,
+ * each laid out as:
+ *
+ *   int     length of the rest of the record
+ *   long    seed of the engine, int round number
+ *   byte    number of players, number of decks, cards dealt to each player, kitty size
+ *   bytes   the deal: each player's cards in the order drawn, player 0 first
+ *   bytes   the kitty as dealt
+ *   byte    host, trump suit (-1 if no trump), trump rank
+ *   bytes   the kitty as buried by the host
+ *   byte    called card (-1 if none), called instance
+ *   tricks  until the end of the record:  byte leader, winner and cards per play, then each play's
+ *           cards in order from the leader
+ *
+ * A writer may be shared by engines on several threads; each round is written at once when finished.
+ */
+public class GameRecordWriter implements Closeable {
+
+	static final int MAGIC = 0x5A505952;
+	static final int VERSION = 1;
+
+	private final OutputStream out;
+
+	public GameRecordWriter(Path path) throws IOException {
+		out = new BufferedOutputStream(Files.newOutputStream(path), 1 << 16);
+		ByteBuffer header = ByteBuffer.allocate(8);
+		header.putInt(MAGIC).putInt(VERSION);
+		out.write(header.array());
+	}
+
+	/**
+	 * Starts the record of a round.  The sections must be added in the order of the file layout.
+	 * @param seed
+	 * @param round
+	 * @param numPlayers
+	 * @param numDecks
+	 * @return
+	 */
+	public Round beginRound(long seed, int round, int numPlayers, int numDecks) {
+		return new Round(seed, round, numPlayers, numDecks);
+	}
+
+	private synchronized void write(ByteBuffer record) {
+		try {
+			out.write(record.array(), 0, record.position());
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		out.close();
+	}
+
+	/**
+	 * The record of a single round, built up as the round is played.
+	 */
+	public class Round {
+		private ByteBuffer buffer;
+
+		private Round(long seed, int round, int numPlayers, int numDecks) {
+			buffer = ByteBuffer.allocate(1024);
+			buffer.putInt(0);
+			buffer.putLong(seed);
+			buffer.putInt(round);
+			buffer.put((byte) numPlayers);
+			buffer.put((byte) numDecks);
+		}
+
+		/**
+		 * @param hands Each player's dealt cards, in the order drawn
+		 * @param kitty
+		 */
+		public void deal(List<List<Card>> hands, List<Card> kitty) {
+			ensureCapacity(2 + hands.size() * hands.get(0).size() + kitty.size());
+			buffer.put((byte) hands.get(0).size());
+			buffer.put((byte) kitty.size());
+			for (List<Card> hand : hands) {
+				putCards(hand);
+			}
+			putCards(kitty);
+		}
+
+		/**
+		 * @param host
+		 * @param trumpSuit Null if no trump
+		 * @param trumpRank
+		 */
+		public void trump(int host, Suit trumpSuit, Rank trumpRank) {
+			ensureCapacity(3);
+			buffer.put((byte) host);
+			buffer.put((byte) (trumpSuit == null ? -1 : trumpSuit.ordinal()));
+			buffer.put((byte) trumpRank.ordinal());
+		}
+
+		/**
+		 * @param kitty The cards buried by the host
+		 * @param partnerCall
+		 */
+		public void host(List<Card> kitty, PartnerCall partnerCall) {
+			ensureCapacity(kitty.size() + 2);
+			putCards(kitty);
+			buffer.put((byte) (partnerCall == null ? -1 : partnerCall.getCard().getId()));
+			buffer.put((byte) (partnerCall == null ? 0 : partnerCall.getInstance()));
+		}
+
+		/**
+		 * @param leader
+		 * @param winner
+		 * @param plays Each play of the trick, in order from the leader
+		 */
+		public void trick(int leader, int winner, List<List<Card>> plays) {
+			ensureCapacity(3 + plays.size() * plays.get(0).size());
+			buffer.put((byte) leader);
+			buffer.put((byte) winner);
+			buffer.put((byte) plays.get(0).size());
+			for (List<Card> play : plays) {
+				putCards(play);
+			}
+		}
+
+		/**
+		 * Writes the finished record to the file.
+		 */
+		public void finish() {
+			buffer.putInt(0, buffer.position() - 4);
+			write(buffer);
+		}
+
+		private void putCards(List<Card> cards) {
+			for (Card c : cards) {
+				buffer.put((byte) c.getId());
+			}
+		}
+
+		private void ensureCapacity(int bytes) {
+			if (buffer.remaining() >= bytes) return;
+			ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+			buffer.flip();
+			larger.put(buffer);
+			buffer = larger;
+		}
+	}
+}
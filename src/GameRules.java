@@ -1,7 +1,8 @@
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -13,6 +14,22 @@ import java.util.stream.Collectors;
  */
 public class GameRules {
 	
+	// Masks of the card ids worth 5 and 10 points
+	private static final long FIVES = rankMask(Rank.FIVE);
+	private static final long TENS_AND_KINGS = rankMask(Rank.TEN) | rankMask(Rank.KING);
+	private static final Suit[] SUITS = Suit.values();
+	
+	// Fields of a shape key, from the lowest bits:  the highest power, the suit, the number of distinct
+	// cards and the copies of each, then whether the play is a single, a set of copies or a tractor
+	private static final int SUIT_SHIFT = 8;
+	private static final int LENGTH_SHIFT = 11;
+	private static final int MULTIPLICITY_SHIFT = 17;
+	private static final int FORMED = 1 << 22;
+	private static final int POWER_MASK = (1 << SUIT_SHIFT) - 1;
+	private static final int SUIT_MASK = (1 << LENGTH_SHIFT) - 1 & ~POWER_MASK;
+	private static final int SHAPE_MASK = FORMED - 1 & ~((1 << LENGTH_SHIFT) - 1);
+	private static final int TRUMP_KEY = Suit.TRUMP.ordinal() << SUIT_SHIFT;
+	
 	public static int getNumPoints(List<Card> cards) {
 		int numPoints = 0;
 		for (Card c : cards) {
@@ -21,6 +38,15 @@ public class GameRules {
 		return numPoints;
 	}
 	
+	/**
+	 * Returns the number of points in the given cards.
+	 * @param cards
+	 * @return
+	 */
+	public static int getNumPoints(CardHand cards) {
+		return 5 * cards.countIn(FIVES) + 10 * cards.countIn(TENS_AND_KINGS);
+	}
+	
 	public static int getNumPointsPlay(List<List<Card>> plays) {
 		int numPoints = 0;
 		for (List<Card> cards : plays) {
@@ -29,18 +55,68 @@ public class GameRules {
 		return numPoints;
 	}
 	
+	/**
+	 * Returns the number of points the attackers need to win a round, which is 40 per deck.
+	 * @param numDecks
+	 * @return
+	 */
+	public static int getAttackerThreshold(int numDecks) {
+		return 40 * numDecks;
+	}
+	
+	/**
+	 * Returns the points scored by the attackers for the kitty when they win the last trick:  the points 
+	 * in the kitty times twice the number of cards in the last trick's lead, so 2x for a single, 4x for a 
+	 * pair and 8x for a tractor of two pairs.
+	 * @param kittyPoints
+	 * @param lastLeadSize
+	 * @return
+	 */
+	public static int getKittyBonus(int kittyPoints, int lastLeadSize) {
+		return kittyPoints * 2 * lastLeadSize;
+	}
+	
+	/**
+	 * Returns whether the host's team wins a round in which the attackers scored the given points.
+	 * @param attackerPoints Including any kitty bonus
+	 * @param numDecks
+	 * @return
+	 */
+	public static boolean isHostWin(int attackerPoints, int numDecks) {
+		return attackerPoints < getAttackerThreshold(numDecks);
+	}
+	
+	/**
+	 * Returns the number of levels gained by the winning team of a round.  The host's team gains 3 
+	 * levels if the attackers score nothing, 2 if they score less than half the threshold and 1 otherwise.
+	 * The attackers gain a level for every 20 points per deck over the threshold, so reaching the 
+	 * threshold only takes the host away from the host's team.
+	 * @param attackerPoints Including any kitty bonus
+	 * @param numDecks
+	 * @return
+	 */
+	public static int getLevelGain(int attackerPoints, int numDecks) {
+		int threshold = getAttackerThreshold(numDecks);
+		if (attackerPoints <= 0) return 3;
+		if (attackerPoints < threshold / 2) return 2;
+		if (attackerPoints < threshold) return 1;
+		return (attackerPoints - threshold) / (threshold / 2);
+	}
+	
 	/**
 	 * Returns the index of the winning play from the given list of plays.  Assumes that all plays are valid.
 	 * @param plays
+	 * @param order The trump ordering of the current round
 	 * @return
 	 */
-	public static int getWinningIndex(List<List<Card>> plays) {
+	public static int getWinningIndex(List<List<Card>> plays, TrumpOrder order) {
 		int winningIndex = 0;
-		List<Card> winningPlay = plays.get(0);
+		int winningKey = getShapeKey(plays.get(0), order);
 		for (int i = 1; i < plays.size(); i++) {
-			if (getHigherHand(winningPlay, plays.get(i)) == 1) {
+			int key = getShapeKey(plays.get(i), order);
+			if (getHigherKey(winningKey, key) == 1) {
 				winningIndex = i;
-				winningPlay = plays.get(i);
+				winningKey = key;
 			}
 		}
 		
@@ -53,49 +129,135 @@ public class GameRules {
 	 * 
 	 * @param handZero
 	 * @param handOne
+	 * @param order
 	 * @return 0 if handZero was higher, 1 if handOne was higher
 	 */
-	public static int getHigherHand(List<Card> handZero, List<Card> handOne) {
-		Card cardZero = handZero.get(0);
-		Suit suitZero = cardZero.getSuit();
-		if (!cardsSameSuit(handOne)) return 0;
-		Card cardOne = handOne.get(0);
-		Suit suitOne = cardOne.getSuit();
-		if (handZero.size() != 1) {
-			int straightZeroLen = isConsecutiveRanks(handZero);
-			int straightOneLen = isConsecutiveRanks(handOne);
-			int straightOneMultiplicity = allCardsSameCount(handOne);
-			int straightZeroMultiplicity = allCardsSameCount(handZero);
-			if (straightOneMultiplicity != straightZeroMultiplicity) {
-				return 0;
+	public static int getHigherHand(List<Card> handZero, List<Card> handOne, TrumpOrder order) {
+		return getHigherKey(getShapeKey(handZero, order), getShapeKey(handOne, order));
+	}
+	
+	/**
+	 * Determines which hand is higher, as {@link #getHigherHand(List, List, TrumpOrder)} does, assuming 
+	 * that handZero correctly followed the rules of play and played first.
+	 * 
+	 * @param handZero
+	 * @param handOne
+	 * @param order
+	 * @return 0 if handZero was higher, 1 if handOne was higher
+	 */
+	public static int getHigherHand(CardHand handZero, CardHand handOne, TrumpOrder order) {
+		return getHigherKey(getShapeKey(handZero, order), getShapeKey(handOne, order));
+	}
+	
+	/**
+	 * Determines which play is higher from their shape keys, as {@link #getHigherHand(List, List, TrumpOrder)}
+	 * does.  A later play wins only if it is a single card, a set of copies of one card or a tractor, 
+	 * with the same number of distinct cards and copies of each as the winning play, and has a higher 
+	 * card of the same suit or is trump over a non-trump play.
+	 * 
+	 * @param keyZero The key of the play winning so far
+	 * @param keyOne The key of a later play
+	 * @return 0 if the play of keyZero was higher, 1 if the play of keyOne was higher
+	 */
+	public static int getHigherKey(int keyZero, int keyOne) {
+		if ((keyOne & FORMED) == 0 || ((keyZero ^ keyOne) & SHAPE_MASK) != 0) return 0;
+		if ((keyOne & POWER_MASK) <= (keyZero & POWER_MASK)) return 0;
+		int suitOne = keyOne & SUIT_MASK;
+		return suitOne == (keyZero & SUIT_MASK) || suitOne == TRUMP_KEY ? 1 : 0;
+	}
+	
+	/**
+	 * Returns the shape key of a play, which reduces it to what decides whether it wins a trick, so that
+	 * plays can be compared with {@link #getHigherKey(int, int)} in constant time.
+	 * 
+	 * @param play A non-empty play
+	 * @param order
+	 * @return
+	 */
+	public static int getShapeKey(CardHand play, TrumpOrder order) {
+		return getShapeKey(play.distinct(), play.size(), play.uniformCount(), order);
+	}
+	
+	/**
+	 * Returns the shape key of a play, as {@link #getShapeKey(CardHand, TrumpOrder)} does.
+	 * @param play A non-empty play
+	 * @param order
+	 * @return
+	 */
+	public static int getShapeKey(List<Card> play, TrumpOrder order) {
+		long distinct = 0;
+		for (int i = 0; i < play.size(); i++) {
+			distinct |= 1L << play.get(i).getId();
+		}
+		// The copies of each card, if every card has as many copies as the first
+		int multiplicity = play.size() / Long.bitCount(distinct);
+		for (long bits = distinct; bits != 0 && multiplicity > 0; bits &= bits - 1) {
+			int id = Long.numberOfTrailingZeros(bits);
+			int count = 0;
+			for (int i = 0; i < play.size(); i++) {
+				if (play.get(i).getId() == id) count++;
 			}
-			if (straightZeroLen >= straightOneLen) return 0;
+			if (count != multiplicity) multiplicity = 0;
 		}
-		
-		if (suitZero == Suit.TRUMP) {
-			if (suitOne != Suit.TRUMP) return 0;
-			return cardZero.getRank().ordinal() >= cardOne.getRank().ordinal() ? 0 : 1;
-		} else {
-			if (suitOne == Suit.TRUMP) return 1;
-			if (suitOne != suitZero) return 0;
-			return cardZero.getRank().ordinal() >= cardOne.getRank().ordinal() ? 0 : 1;
+		return getShapeKey(distinct, play.size(), multiplicity, order);
+	}
+	
+	/**
+	 * @param distinct The mask of card ids in the play
+	 * @param size The number of cards in the play
+	 * @param multiplicity The copies of every card, or 0 if cards have different numbers of copies
+	 * @param order
+	 * @return
+	 */
+	private static int getShapeKey(long distinct, int size, int multiplicity, TrumpOrder order) {
+		Suit suit = getSuit(distinct, order);
+		if (suit == null) return 0;
+		int power = 0;
+		int rankBits = 0;
+		for (long bits = distinct; bits != 0; bits &= bits - 1) {
+			int id = Long.numberOfTrailingZeros(bits);
+			power = Math.max(power, order.getPower(id));
+			rankBits |= 1 << order.getRank(id).ordinal();
 		}
+		int length = Long.bitCount(distinct);
+		int key = multiplicity << MULTIPLICITY_SHIFT | length << LENGTH_SHIFT | suit.ordinal() << SUIT_SHIFT | power;
 		
+		// Tractors need a card of each rank in a single run, so cards of equal rank never form one
+		if (length == 1 || (multiplicity > 1 && Integer.bitCount(rankBits) == length)) {
+			int run = rankBits >>> Integer.numberOfTrailingZeros(rankBits);
+			if ((run & (run + 1)) == 0) key |= FORMED;
+		}
+		return key;
+	}
+	
+	/**
+	 * Returns the highest power of any card in the non-empty hand.
+	 * @param cards
+	 * @param order
+	 * @return
+	 */
+	public static int getHighestPower(CardHand cards, TrumpOrder order) {
+		int power = -1;
+		for (long bits = cards.distinct(); bits != 0; bits &= bits - 1) {
+			power = Math.max(power, order.getPower(Long.numberOfTrailingZeros(bits)));
+		}
+		return power;
 	}
 	
-	public static boolean isValidLead(List<Card> hand, Set<Integer> leadIndices) {
-		List<Card> lead = GameAIUtils.indicesToCards(hand, leadIndices);
-		return isValidLead(lead);
+	public static boolean isValidLead(List<Card> hand, long leadSelection, TrumpOrder order) {
+		List<Card> lead = CardSelection.toCards(hand, leadSelection);
+		return isValidLead(lead, order);
 	}
 
 	/**
 	 * Returns whether the given list of cards constitutes a valid lead.
 	 * @param lead
+	 * @param order
 	 * @return
 	 */
-	public static boolean isValidLead(List<Card> lead) {
+	public static boolean isValidLead(List<Card> lead, TrumpOrder order) {
 		if (lead.size() == 0) return false;
-		if (!cardsSameSuit(lead)) return false;
+		if (!cardsSameSuit(lead, order)) return false;
 		
 		// Should ensure that the cards have the same count
 		int cardMultiplicity = allCardsSameCount(lead);
@@ -103,14 +265,14 @@ public class GameRules {
 		// Straights have more than 1 card each
 		if (cardMultiplicity == 1 && lead.size() > 1) return false;
 		
-		if (isConsecutiveRanks(lead) == 0) return false;
+		if (isConsecutiveRanks(lead, order) == 0) return false;
 		
 		return true;
 	}
 	
-	public static boolean isValidPlay(List<Card> lead, Set<Integer> playIndices, List<Card> playerHand) {
-		List<Card> play = GameAIUtils.indicesToCards(playerHand, playIndices);
-		return isValidPlay(lead, play, playerHand);
+	public static boolean isValidPlay(List<Card> lead, long playSelection, List<Card> playerHand, TrumpOrder order) {
+		List<Card> play = CardSelection.toCards(playerHand, playSelection);
+		return isValidPlay(lead, play, playerHand, order);
 	}
 	
 	/**
@@ -121,22 +283,23 @@ public class GameRules {
 	 * @param play The play whose validity is to be assessed
 	 * @param playerHand The hand of the player attempting to play play (play should be
 	 * 					 a subset of playerHand)
+	 * @param order
 	 * @return
 	 */
-	public static boolean isValidPlay(List<Card> lead, List<Card> play, List<Card> playerHand) {
+	public static boolean isValidPlay(List<Card> lead, List<Card> play, List<Card> playerHand, TrumpOrder order) {
 		if (lead.size() != play.size()) return false;
 		
 		// Check suit requirement
-		Suit suit = lead.get(0).getSuit();
+		Suit suit = order.getSuit(lead.get(0));
 		// count cards matching in play
 		int countPlay = 0;
 		for (Card c : play) {
-			if (c.getSuit() == suit) countPlay++;
+			if (order.getSuit(c) == suit) countPlay++;
 		}
 		
 		int countHand = 0;
 		for (Card c : playerHand) {
-			if (c.getSuit() == suit) countHand++;
+			if (order.getSuit(c) == suit) countHand++;
 		}
 		
 		// False if didn't play all cards of suit when possible
@@ -146,98 +309,385 @@ public class GameRules {
 		// at least one playable card for remaining tests
 		if (countHand == 0) return true;
 		
-		int leadStraightLen = isConsecutiveRanks(lead);
+		int leadStraightLen = isConsecutiveRanks(lead, order);
 		if (leadStraightLen == 0) return true;
 		int leadMultiplicity = lead.size() / leadStraightLen;				// must be integer assuming valid lead
 		
 		if (leadMultiplicity == 1) return true;
 		
 		// Ensure as many groups of this consistency are played as mandated
-		List<Set<Integer>> playerStraights = partitionCardsToStraights(playerHand, suit, leadMultiplicity);
-		int playerMultiplicityCount = 0;
-		for (Set<Integer> straight : playerStraights) {
-			playerMultiplicityCount += straight.size() / leadMultiplicity;
-		}
+		int playerMultiplicityCount = new HandStraights(playerHand, order).countGroups(suit, leadMultiplicity);
+		int playedMultiplicityCount = new HandStraights(play, order).countGroups(suit, leadMultiplicity);
 		
-		List<Set<Integer>> playedStraights = partitionCardsToStraights(play, suit, leadMultiplicity);
-		int playedMultiplicityCount = 0;
-		for (Set<Integer> straight : playedStraights) {
-			playedMultiplicityCount += straight.size() / leadMultiplicity;
-		}
+		if (playedMultiplicityCount == leadStraightLen) return true;
+		return playerMultiplicityCount == playedMultiplicityCount;
+	}
+	
+	/**
+	 * Returns whether the given cards constitute a valid lead, using the same rules as 
+	 * {@link #isValidLead(List)} but evaluated directly on the bitboards of the hand.
+	 * 
+	 * @param lead
+	 * @param order
+	 * @return
+	 */
+	public static boolean isValidLead(CardHand lead, TrumpOrder order) {
+		if (lead.isEmpty()) return false;
+		if (getSuit(lead, order) == null) return false;
+		
+		int cardMultiplicity = lead.uniformCount();
+		if (cardMultiplicity == 0) return false;
+		if (cardMultiplicity == 1 && lead.size() > 1) return false;
+		
+		if (isConsecutiveRanks(lead, order) == 0) return false;
+		
+		return true;
+	}
+	
+	/**
+	 * Returns whether the play is a valid response to the lead, given the contents of the players hand, 
+	 * using the same rules as {@link #isValidPlay(List, List, List)} but without allocating.  Assumes 
+	 * that lead is a valid lead, without checking.
+	 * 
+	 * @param lead The cards originally lead for this trick
+	 * @param play The play whose validity is to be assessed
+	 * @param playerHand The hand of the player attempting to play play (play should be
+	 * 					 a subset of playerHand)
+	 * @param order
+	 * @return
+	 */
+	public static boolean isValidPlay(CardHand lead, CardHand play, CardHand playerHand, TrumpOrder order) {
+		if (lead.size() != play.size()) return false;
+		
+		Suit suit = getSuit(lead, order);
+		long suitMask = order.getSuitMask(suit);
+		int countPlay = play.countIn(suitMask);
+		int countHand = playerHand.countIn(suitMask);
+		
+		// False if didn't play all cards of suit when possible
+		if (countPlay < lead.size() && countPlay < countHand) return false;
+		
+		if (countHand == 0) return true;
+		
+		int leadStraightLen = isConsecutiveRanks(lead, order);
+		if (leadStraightLen == 0) return true;
+		int leadMultiplicity = lead.size() / leadStraightLen;
+		
+		if (leadMultiplicity == 1) return true;
+		
+		// Ensure as many groups of this consistency are played as mandated
+		int playerMultiplicityCount = playerHand.groupCount(suitMask, leadMultiplicity);
+		int playedMultiplicityCount = play.groupCount(suitMask, leadMultiplicity);
 		
 		if (playedMultiplicityCount == leadStraightLen) return true;
 		return playerMultiplicityCount == playedMultiplicityCount;
 	}
 	
 	/**
-	 * Partitions the cards of the given suit in the given hand into straights of the given 
-	 * multiplicity.  
+	 * Returns the suit shared by every card in the hand, or null if the cards are of 
+	 * multiple suits or the hand is empty.
+	 * 
+	 * @param cards
+	 * @param order
+	 * @return
+	 */
+	public static Suit getSuit(CardHand cards, TrumpOrder order) {
+		return getSuit(cards.distinct(), order);
+	}
+	
+	private static Suit getSuit(long distinct, TrumpOrder order) {
+		if (distinct == 0) return null;
+		for (Suit suit : SUITS) {
+			long mask = order.getSuitMask(suit);
+			if ((distinct & mask) != 0) {
+				return (distinct & ~mask) == 0 ? suit : null;
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * If the cards form a straight according to their ranks (ignoring multiplicity of
+	 * cards), returns the length of that straight.  Otherwise, returns 0.
+	 * 
+	 * @param cards
+	 * @param order
+	 * @return
+	 */
+	public static int isConsecutiveRanks(CardHand cards, TrumpOrder order) {
+		int rankBits = 0;
+		for (long bits = cards.distinct(); bits != 0; bits &= bits - 1) {
+			int id = Long.numberOfTrailingZeros(bits);
+			rankBits |= 1 << order.getRank(id).ordinal();
+		}
+		if (rankBits == 0) return 0;
+		
+		// Consecutive exactly when the shifted bits form a single run of ones
+		int run = rankBits >>> Integer.numberOfTrailingZeros(rankBits);
+		if ((run & (run + 1)) != 0) return 0;
+		return Integer.bitCount(run);
+	}
+	
+	/**
+	 * Returns every distinct valid lead that can be made from the given hand.
 	 * 
 	 * @param hand
-	 * @param multiplicity The multiplicity of the straight, > 1
+	 * @param order
 	 * @return
 	 */
-	public static List<Set<Integer>> partitionCardsToStraights(List<Card> cards, Suit suit, int multiplicity) {
-		List<Card> hand = new ArrayList<>(cards);
-		Collections.sort(hand);
-		// Ensure there's at least one matching suit to avoid edge cases later
-		if (!hand.stream().anyMatch(c -> c.getSuit() == suit)) return new ArrayList<>();
+	public static List<CardHand> getLegalLeads(CardHand hand, TrumpOrder order) {
+		List<CardHand> leads = new ArrayList<>();
+		int numRanks = Rank.values().length;
+		long[] rankIds = new long[numRanks];
+		for (Suit suit : Suit.values()) {
+			long suitMask = order.getSuitMask(suit);
+			for (long bits = hand.distinct() & suitMask; bits != 0; bits &= bits - 1) {
+				CardHand single = new CardHand(hand.getNumDecks());
+				single.add(Long.numberOfTrailingZeros(bits));
+				leads.add(single);
+			}
+			
+			for (int multiplicity = 2; multiplicity <= hand.getNumDecks(); multiplicity++) {
+				long candidates = hand.atLeast(multiplicity) & suitMask;
+				if (candidates == 0) continue;
+				for (int r = 0; r < numRanks; r++) {
+					rankIds[r] = 0;
+				}
+				for (long bits = candidates; bits != 0; bits &= bits - 1) {
+					int id = Long.numberOfTrailingZeros(bits);
+					rankIds[order.getRank(id).ordinal()] |= 1L << id;
+				}
+				
+				// Every run of consecutive ranks, taking any non-empty choice of cards at each rank
+				for (int start = 0; start < numRanks; start++) {
+					for (int end = start; end < numRanks && rankIds[end] != 0; end++) {
+						addStraights(leads, rankIds, start, end, 0, multiplicity, hand.getNumDecks());
+					}
+				}
+			}
+		}
+		return leads;
+	}
+	
+	private static void addStraights(List<CardHand> leads, long[] rankIds, int rank, int end, long chosen, 
+									 int multiplicity, int numDecks) {
+		if (rank > end) {
+			CardHand lead = new CardHand(numDecks);
+			for (long bits = chosen; bits != 0; bits &= bits - 1) {
+				int id = Long.numberOfTrailingZeros(bits);
+				for (int i = 0; i < multiplicity; i++) {
+					lead.add(id);
+				}
+			}
+			leads.add(lead);
+			return;
+		}
+		long ids = rankIds[rank];
+		for (long subset = ids; subset != 0; subset = (subset - 1) & ids) {
+			addStraights(leads, rankIds, rank + 1, end, chosen | subset, multiplicity, numDecks);
+		}
+	}
+	
+	/**
+	 * Lazily enumerates every distinct valid response to the lead from the given hand.  Assumes 
+	 * that lead is a valid lead, without checking.
+	 * 
+	 * @param lead
+	 * @param hand
+	 * @param order
+	 * @return
+	 */
+	public static Iterator<CardHand> getLegalPlays(CardHand lead, CardHand hand, TrumpOrder order) {
+		long suitMask = order.getSuitMask(getSuit(lead, order));
+		int suitCount = hand.countIn(suitMask);
+		if (suitCount >= lead.size()) {
+			return new ValidPlays(lead, hand, order, new CardCombinations(hand, suitMask, lead.size(), null));
+		}
 		
-		List<List<Card>> straights = new ArrayList<>();
+		// Every card of the suit must be played, and anything may fill the rest
+		CardHand suitCards = hand.copy();
+		suitCards.retain(suitMask);
+		return new CardCombinations(hand, ~suitMask, lead.size() - suitCount, suitCards);
+	}
+	
+	/**
+	 * Returns a deterministic valid lead, used in place of invalid leads.
+	 * @param hand A non-empty hand
+	 * @param order
+	 * @return
+	 */
+	public static CardHand getDefaultLead(CardHand hand, TrumpOrder order) {
+		CardHand lead = new CardHand(hand.getNumDecks());
+		lead.add(Long.numberOfTrailingZeros(hand.distinct()));
+		return lead;
+	}
+	
+	/**
+	 * Returns a deterministic valid response to the lead, used in place of invalid plays.  Plays 
+	 * the required groups of the suit first and then the lowest cards by id.
+	 * 
+	 * @param lead A valid lead
+	 * @param hand A hand with at least as many cards as the lead
+	 * @param order
+	 * @return
+	 */
+	public static CardHand getDefaultPlay(CardHand lead, CardHand hand, TrumpOrder order) {
+		int size = lead.size();
+		long suitMask = order.getSuitMask(getSuit(lead, order));
+		CardHand play = new CardHand(hand.getNumDecks());
 		
-		while (hasSuitMultiplicity(hand, multiplicity, suit)) {
-			List<Card> curStraight = new ArrayList<>();
-			
-			int searchingRank = 0;
-			while (searchingRank < Rank.values().length) {
-				Rank rank = Rank.values()[searchingRank];
-				Set<Card> multiples = suitRankMultiplicity(hand, suit, rank, multiplicity);
-				if (multiples.isEmpty()) {
-					if (!curStraight.isEmpty()) {
-						straights.add(curStraight);
-						curStraight = new ArrayList<>();
+		if (hand.countIn(suitMask) > size) {
+			int straightLen = isConsecutiveRanks(lead, order);
+			int multiplicity = size / straightLen;
+			if (multiplicity > 1) {
+				int groups = 0;
+				for (long bits = hand.atLeast(multiplicity) & suitMask; bits != 0 && groups < straightLen; bits &= bits - 1) {
+					int id = Long.numberOfTrailingZeros(bits);
+					for (int g = hand.count(id) / multiplicity; g > 0 && groups < straightLen; g--) {
+						for (int i = 0; i < multiplicity; i++) {
+							play.add(id);
+						}
+						groups++;
 					}
-					searchingRank++;
-					continue;
 				}
-				curStraight.addAll(removeCards(hand, getFirst(multiples), multiplicity));
-				searchingRank++;
 			}
 		}
 		
-		List<Set<Integer>> straightIndices = new ArrayList<>();
-		for (List<Card> straight : straights) {
-			straightIndices.add(cardsToIndices(cards, straight));
+		fillLowest(play, hand, suitMask, size);
+		fillLowest(play, hand, ~suitMask, size);
+		return play;
+	}
+	
+	/**
+	 * Adds the cards of hand not yet in play with ids in the mask, lowest id first, until play
+	 * has the given size.
+	 */
+	private static void fillLowest(CardHand play, CardHand hand, long mask, int size) {
+		for (long bits = hand.distinct() & mask; bits != 0 && play.size() < size; bits &= bits - 1) {
+			int id = Long.numberOfTrailingZeros(bits);
+			for (int c = hand.count(id) - play.count(id); c > 0 && play.size() < size; c--) {
+				play.add(id);
+			}
 		}
+	}
+	
+	/**
+	 * Returns a deterministic valid partner call: the first non-trump card not in the hand.
+	 * @param hand
+	 * @param order
+	 * @return
+	 */
+	public static PartnerCall getDefaultPartnerCall(List<Card> hand, TrumpOrder order) {
+		int id = 0;
+		Card c;
+		do {
+			c = Card.of(id);
+			id++;
+		} while (order.isTrump(c) || hand.contains(c));
 		
-		return straightIndices;
+		return new PartnerCall(c, 1);
 	}
 	
 	/**
-	 * Returns a unique index for each card in toFind such that the card at that index in hand
-	 * matches the card in toFind.  Returns null if any card cannot be found.
+	 * Filters combinations of the suit down to those that are valid responses to the lead.
+	 */
+	private static class ValidPlays implements Iterator<CardHand> {
+		private final CardHand lead;
+		private final CardHand hand;
+		private final TrumpOrder order;
+		private final Iterator<CardHand> candidates;
+		private CardHand next;
+		
+		ValidPlays(CardHand lead, CardHand hand, TrumpOrder order, Iterator<CardHand> candidates) {
+			this.lead = lead;
+			this.hand = hand;
+			this.order = order;
+			this.candidates = candidates;
+			advance();
+		}
+		
+		private void advance() {
+			next = null;
+			while (next == null && candidates.hasNext()) {
+				CardHand candidate = candidates.next();
+				if (isValidPlay(lead, candidate, hand, order)) next = candidate;
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			return next != null;
+		}
+
+		@Override
+		public CardHand next() {
+			if (next == null) throw new NoSuchElementException();
+			CardHand result = next;
+			advance();
+			return result;
+		}
+	}
+	
+	/**
+	 * Partitions the cards of the given suit in the given hand into straights of the given 
+	 * multiplicity.  Callers checking several suits or multiplicities of the same hand should
+	 * build a {@link HandStraights} once instead.
+	 * 
+	 * @param hand
+	 * @param multiplicity The multiplicity of the straight, > 1
+	 * @param order
+	 * @return
+	 */
+	public static long[] partitionCardsToStraights(List<Card> cards, Suit suit, int multiplicity, TrumpOrder order) {
+		return new HandStraights(cards, order).getStraights(suit, multiplicity);
+	}
+	
+	/**
+	 * Returns a selection of a unique index for each card in toFind such that the card at that index 
+	 * in hand matches the card in toFind.  Cards that cannot be found are left out.
 	 * 
 	 * @param hand
 	 * @param toFind
 	 * @return
 	 */
-	public static Set<Integer> cardsToIndices(List<Card> hand, List<Card> toFind) {
-		Set<Integer> indices = new HashSet<>();
-		for (Card c : toFind) {
-			for (int i = 0; i < hand.size(); i++) {
-				if (hand.get(i).equals(c) && !indices.contains(i)) {
-					indices.add(i);
-					break;
-				}
+	public static long cardsToIndices(List<Card> hand, List<Card> toFind) {
+		// Count how many copies of each card are still wanted, then take the first matches in one pass
+		int[] needed = makeCardHistogram(toFind);
+		long indices = CardSelection.NONE;
+		int numFound = 0;
+		for (int i = 0; i < hand.size() && numFound < toFind.size(); i++) {
+			int id = hand.get(i).getId();
+			if (needed[id] > 0) {
+				needed[id]--;
+				indices = CardSelection.with(indices, i);
+				numFound++;
 			}
 		}
 		
 		return indices;
 	}
 	
-	public static boolean hasSuitMultiplicity(List<Card> cards, int multiplicity, Suit suit) {
+	/**
+	 * Returns a selection of the first cards in hand that make up toFind.
+	 * 
+	 * @param hand
+	 * @param toFind A subset of hand
+	 * @return
+	 */
+	public static long cardsToIndices(List<Card> hand, CardHand toFind) {
+		CardHand remaining = toFind.copy();
+		long indices = CardSelection.NONE;
+		for (int i = 0; i < hand.size() && !remaining.isEmpty(); i++) {
+			if (remaining.remove(hand.get(i).getId())) {
+				indices = CardSelection.with(indices, i);
+			}
+		}
+		return indices;
+	}
+	
+	public static boolean hasSuitMultiplicity(List<Card> cards, int multiplicity, Suit suit, TrumpOrder order) {
 		int[] histogram = makeCardHistogram(cards);
-		return cards.stream().anyMatch(c -> histogram[c.getId()] >= multiplicity && c.getSuit() == suit);
+		return cards.stream().anyMatch(c -> histogram[c.getId()] >= multiplicity && order.getSuit(c) == suit);
 	}
 	
 	public static List<Card> removeCards(List<Card> hand, Card card, int numRemove) {
@@ -257,11 +707,12 @@ public class GameRules {
 	 * @param suit
 	 * @param rank
 	 * @param multiplicity
+	 * @param order
 	 * @return
 	 */
-	public static Set<Card> suitRankMultiplicity(List<Card> cards, Suit suit, Rank rank, int multiplicity) {
+	public static Set<Card> suitRankMultiplicity(List<Card> cards, Suit suit, Rank rank, int multiplicity, TrumpOrder order) {
 		int[] histogram = makeCardHistogram(cards);
-		Set<Card> matches = cards.stream().filter(c -> histogram[c.getId()] >= multiplicity && c.getSuit() == suit && c.getRank() == rank).collect(Collectors.toSet());	
+		Set<Card> matches = cards.stream().filter(c -> histogram[c.getId()] >= multiplicity && order.getSuit(c) == suit && order.getRank(c) == rank).collect(Collectors.toSet());	
 		return matches;
 	}
 	
@@ -290,16 +741,17 @@ public class GameRules {
 	 * If the cards form a straight according to their ranks (ignoring multiplicity of
 	 * cards), returns the length of that straight.  Otherwise, returns 0.
 	 * 
-	 * @param cardHistogram
+	 * @param cards
+	 * @param order
 	 * @return
 	 */
-	public static int isConsecutiveRanks(List<Card> cards) {
+	public static int isConsecutiveRanks(List<Card> cards, TrumpOrder order) {
 		Set<Integer> rankOrdinals = new HashSet<>();
 		int minOrdinal = Rank.values().length;
 		int maxOrdinal = -1;
 		
 		for (Card c : cards) {
-			int ordinal = c.getRank().ordinal();
+			int ordinal = order.getRank(c).ordinal();
 			rankOrdinals.add(ordinal);
 			if (minOrdinal > ordinal) minOrdinal = ordinal;
 			if (maxOrdinal < ordinal) maxOrdinal = ordinal;
@@ -316,11 +768,12 @@ public class GameRules {
 	/**
 	 * Returns whether the given list of cards are all of the same suit.
 	 * @param cards
+	 * @param order
 	 * @return
 	 */
-	public static boolean cardsSameSuit(List<Card> cards) {
-		Suit suit = cards.get(0).getSuit();
-		return cards.stream().allMatch(c -> c.getSuit() == suit);
+	public static boolean cardsSameSuit(List<Card> cards, TrumpOrder order) {
+		Suit suit = order.getSuit(cards.get(0));
+		return cards.stream().allMatch(c -> order.getSuit(c) == suit);
 	}
 	
 	/**
@@ -337,7 +790,12 @@ public class GameRules {
 		return histogram;
 	}
 	
-	public static <T> T getFirst(Set<T> set) {
-		return set.iterator().next();
+	private static long rankMask(Rank rank) {
+		long mask = 0;
+		for (Suit suit : Suit.values()) {
+			if (suit == Suit.TRUMP) continue;
+			mask |= 1L << Card.of(suit, rank).getId();
+		}
+		return mask;
 	}
 }
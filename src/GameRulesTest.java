@@ -2,7 +2,12 @@ import static org.junit.Assert.*;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 import org.junit.Test;
 
@@ -15,18 +20,521 @@ public class GameRulesTest {
 		List<Card> p2Hand = Arrays.asList(new Card(Suit.CLUBS, Rank.QUEEN), new Card(Suit.CLUBS, Rank.ACE));
 		List<Card> p3Hand = Arrays.asList(new Card(Suit.TRUMP, Rank.JOKER), new Card(Suit.CLUBS, Rank.COLOR_JOKER));
 		List<List<Card>> plays = Arrays.asList(p0Hand, p1Hand, p2Hand, p3Hand);
-		setTrump(plays, Suit.CLUBS, Rank.TWO);
 		
-		int winningIndex = GameRules.getWinningIndex(plays);
+		int winningIndex = GameRules.getWinningIndex(plays, TrumpOrder.of(Suit.CLUBS, Rank.TWO));
 		assertEquals(winningIndex, 0);
 	}
 	
-	public void setTrump(List<List<Card>> plays, Suit suit, Rank rank) {
-		for (List<Card> play : plays) {
-			for (Card c : play) {
-				c.setTrump(suit, rank);
+	@Test
+	public void cardHandValidPlayTest() {
+		List<Card> lead = Arrays.asList(new Card(Suit.HEARTS, Rank.FIVE), new Card(Suit.HEARTS, Rank.FIVE),
+				new Card(Suit.HEARTS, Rank.SIX), new Card(Suit.HEARTS, Rank.SIX));
+		List<Card> hand = Arrays.asList(new Card(Suit.HEARTS, Rank.NINE), new Card(Suit.HEARTS, Rank.NINE),
+				new Card(Suit.HEARTS, Rank.KING), new Card(Suit.HEARTS, Rank.ACE), new Card(Suit.SPADES, Rank.ACE));
+		CardHand leadHand = CardHand.fromCards(lead, 2);
+		CardHand playerHand = CardHand.fromCards(hand, 2);
+		TrumpOrder order = TrumpOrder.of(Suit.CLUBS, Rank.TWO);
+		assertTrue(GameRules.isValidLead(leadHand, order));
+		assertEquals(2, GameRules.isConsecutiveRanks(leadHand, order));
+		
+		// Must play the pair of nines along with the remaining hearts
+		CardHand withPair = CardHand.fromCards(Arrays.asList(hand.get(0), hand.get(1), hand.get(2), hand.get(3)), 2);
+		CardHand withoutPair = CardHand.fromCards(Arrays.asList(hand.get(0), hand.get(2), hand.get(3), hand.get(4)), 2);
+		assertTrue(GameRules.isValidPlay(leadHand, withPair, playerHand, order));
+		assertFalse(GameRules.isValidPlay(leadHand, withoutPair, playerHand, order));
+		
+		// The two of hearts plays as trump, so it cannot be lead alongside the ace of hearts
+		assertFalse(GameRules.isValidLead(CardHand.fromCards(Arrays.asList(hand.get(3), new Card(Suit.HEARTS, Rank.TWO)), 2), order));
+		assertTrue(GameRules.isValidLead(CardHand.fromCards(Arrays.asList(hand.get(3)), 2), TrumpOrder.of(Suit.HEARTS, Rank.TWO)));
+	}
+	
+	@Test
+	public void partitionCardsToStraightsTest() {
+		TrumpOrder order = TrumpOrder.of(Suit.SPADES, Rank.TWO);
+		List<Card> hand = Arrays.asList(new Card(Suit.TRUMP, Rank.JOKER), new Card(Suit.SPADES, Rank.NINE),
+				new Card(Suit.TRUMP, Rank.COLOR_JOKER), new Card(Suit.TRUMP, Rank.JOKER), new Card(Suit.SPADES, Rank.NINE),
+				new Card(Suit.TRUMP, Rank.COLOR_JOKER), new Card(Suit.SPADES, Rank.NINE), new Card(Suit.SPADES, Rank.NINE),
+				new Card(Suit.HEARTS, Rank.FOUR));
+		
+		// The joker tractor ends at the highest rank and must still be found
+		long[] straights = GameRules.partitionCardsToStraights(hand, Suit.TRUMP, 2, order);
+		assertEquals(3, straights.length);
+		assertEquals(CardSelection.of(0, 2, 3, 5), straights[1]);
+		
+		// Each of the four nines is used exactly once across the two pairs
+		assertEquals(0, straights[0] & straights[2]);
+		assertEquals(CardSelection.of(1, 4, 6, 7), straights[0] | straights[2]);
+		assertEquals(4, new HandStraights(hand, order).countGroups(Suit.TRUMP, 2));
+	}
+	
+	@Test
+	public void legalMovesTest() {
+		TrumpOrder order = TrumpOrder.of(Suit.CLUBS, Rank.TWO);
+		CardHand hand = CardHand.fromCards(Arrays.asList(new Card(Suit.HEARTS, Rank.SIX), new Card(Suit.HEARTS, Rank.SIX),
+				new Card(Suit.HEARTS, Rank.SEVEN), new Card(Suit.HEARTS, Rank.SEVEN), new Card(Suit.SPADES, Rank.ACE)), 2);
+		
+		// Three singles, two pairs and the tractor of both pairs
+		List<CardHand> leads = GameRules.getLegalLeads(hand, order);
+		assertEquals(6, leads.size());
+		for (CardHand lead : leads) {
+			assertTrue(GameRules.isValidLead(lead, order));
+		}
+		
+		// Following a pair of hearts requires one of the two pairs
+		CardHand lead = CardHand.fromCards(Arrays.asList(new Card(Suit.HEARTS, Rank.TEN), new Card(Suit.HEARTS, Rank.TEN)), 2);
+		Iterator<CardHand> plays = GameRules.getLegalPlays(lead, hand, order);
+		int numPlays = 0;
+		while (plays.hasNext()) {
+			assertEquals(2, plays.next().uniformCount());
+			numPlays++;
+		}
+		assertEquals(2, numPlays);
+		assertTrue(GameRules.isValidPlay(lead, GameRules.getDefaultPlay(lead, hand, order), hand, order));
+	}
+	
+	@Test
+	public void trumpOrderTest() {
+		TrumpOrder order = TrumpOrder.of(Suit.HEARTS, Rank.FIVE);
+		Card offsuitNumber = new Card(Suit.SPADES, Rank.FIVE);
+		Card suitedNumber = new Card(Suit.HEARTS, Rank.FIVE);
+		Card heartAce = new Card(Suit.HEARTS, Rank.ACE);
+		Card spadeAce = new Card(Suit.SPADES, Rank.ACE);
+		
+		assertEquals(Suit.TRUMP, order.getSuit(offsuitNumber));
+		assertEquals(Rank.NUMBER, order.getRank(offsuitNumber));
+		assertEquals(Rank.SUITED_NUMBER, order.getRank(suitedNumber));
+		assertTrue(order.getPower(heartAce) < order.getPower(offsuitNumber));
+		assertTrue(order.getPower(spadeAce) < order.getPower(new Card(Suit.HEARTS, Rank.TWO)));
+		assertEquals(order.getPower(offsuitNumber), order.getPower(new Card(Suit.CLUBS, Rank.FIVE)));
+		
+		// The card itself is unchanged by any trump setting
+		assertEquals(Suit.SPADES, offsuitNumber.getBaseSuit());
+		assertFalse(TrumpOrder.of(Suit.CLUBS, Rank.TWO).isTrump(offsuitNumber));
+	}
+	
+	@Test
+	public void gameStateUndoTest() {
+		TrumpOrder order = TrumpOrder.of(Suit.CLUBS, Rank.TWO);
+		Card heartTen = new Card(Suit.HEARTS, Rank.TEN);
+		Card heartAce = new Card(Suit.HEARTS, Rank.ACE);
+		Card spadeKing = new Card(Suit.SPADES, Rank.KING);
+		Card spadeFive = new Card(Suit.SPADES, Rank.FIVE);
+		CardHand[] hands = new CardHand[2];
+		hands[0] = CardHand.fromCards(Arrays.asList(heartTen, spadeKing), 1);
+		hands[1] = CardHand.fromCards(Arrays.asList(heartAce, spadeFive), 1);
+		GameState state = new GameState(order, hands, null, 0, new PartnerCall(spadeFive, 1));
+		GameState start = state.copy();
+		
+		state.apply(CardHand.fromCards(Arrays.asList(heartTen), 1));
+		state.apply(CardHand.fromCards(Arrays.asList(heartAce), 1));
+		assertTrue(state.isTrickComplete());
+		assertEquals(1, state.getLeader());
+		assertEquals(10, state.getPoints(1));
+		state.apply(CardHand.fromCards(Arrays.asList(spadeFive), 1));
+		assertEquals(1, state.getPartner());
+		state.apply(CardHand.fromCards(Arrays.asList(spadeKing), 1));
+		assertTrue(state.isRoundOver());
+		assertEquals(15, state.getPoints(0));
+		
+		for (int i = 0; i < 4; i++) {
+			state.undo();
+		}
+		assertEquals(start.getHand(0), state.getHand(0));
+		assertEquals(start.getHand(1), state.getHand(1));
+		assertEquals(0, state.getPoints(1));
+		assertEquals(0, state.getLeader());
+		assertEquals(-1, state.getPartner());
+		assertEquals(0, state.getNumTricks());
+	}
+	
+	@Test
+	public void knowledgeTrackerTest() {
+		KnowledgeTracker knowledge = new KnowledgeTracker(4, 2);
+		knowledge.reset(TrumpOrder.of(Suit.CLUBS, Rank.TWO));
+		Card heartFive = new Card(Suit.HEARTS, Rank.FIVE);
+		assertEquals(200, knowledge.getPointsRemaining());
+		assertEquals(24, knowledge.getRemaining(Suit.HEARTS));
+		assertEquals(50, knowledge.getPointsRemaining(Suit.HEARTS));
+		
+		knowledge.recordLead(Arrays.asList(heartFive, heartFive));
+		knowledge.recordPlay(1, Arrays.asList(new Card(Suit.HEARTS, Rank.KING), new Card(Suit.SPADES, Rank.ACE)));
+		knowledge.recordPlay(2, Arrays.asList(new Card(Suit.HEARTS, Rank.TWO), new Card(Suit.CLUBS, Rank.SIX)));
+		assertEquals(0, knowledge.getRemaining(heartFive.getId()));
+		assertEquals(21, knowledge.getRemaining(Suit.HEARTS));
+		assertEquals(30, knowledge.getPointsRemaining(Suit.HEARTS));
+		assertEquals(180, knowledge.getPointsRemaining());
+		assertTrue(knowledge.isVoid(1, Suit.HEARTS));
+		assertTrue(knowledge.isVoid(2, Suit.HEARTS));
+		assertFalse(knowledge.isVoid(2, Suit.TRUMP));
+		assertFalse(knowledge.isVoid(0, Suit.HEARTS));
+	}
+
+	@Test
+	public void partnerTrackerTest() {
+		TrumpOrder order = TrumpOrder.of(Suit.CLUBS, Rank.TWO);
+		Card heartAce = new Card(Suit.HEARTS, Rank.ACE);
+		Card heartFive = new Card(Suit.HEARTS, Rank.FIVE);
+		Card spadeAce = new Card(Suit.SPADES, Rank.ACE);
+		Card clubSix = new Card(Suit.CLUBS, Rank.SIX);
+		List<List<Card>> hands = Arrays.asList(
+				Arrays.asList(heartFive, heartFive, new Card(Suit.HEARTS, Rank.THREE), new Card(Suit.DIAMONDS, Rank.THREE), 
+						new Card(Suit.DIAMONDS, Rank.FOUR)),
+				Arrays.asList(spadeAce, clubSix, new Card(Suit.DIAMONDS, Rank.SEVEN), new Card(Suit.DIAMONDS, Rank.EIGHT), 
+						new Card(Suit.DIAMONDS, Rank.NINE)),
+				Arrays.asList(spadeAce, clubSix, new Card(Suit.DIAMONDS, Rank.TEN), new Card(Suit.DIAMONDS, Rank.JACK), 
+						new Card(Suit.DIAMONDS, Rank.QUEEN)),
+				Arrays.asList(new Card(Suit.HEARTS, Rank.SIX), new Card(Suit.HEARTS, Rank.NINE), heartAce, 
+						new Card(Suit.DIAMONDS, Rank.KING), new Card(Suit.DIAMONDS, Rank.ACE)));
+		CardHand[] cardHands = new CardHand[4];
+		for (int i = 0; i < 4; i++) {
+			cardHands[i] = CardHand.fromCards(hands.get(i), 2);
+		}
+		List<Card> kitty = new ArrayList<>();
+		for (Rank rank : Arrays.asList(Rank.THREE, Rank.FOUR, Rank.FIVE, Rank.SIX, Rank.SEVEN, Rank.EIGHT, Rank.NINE, Rank.TEN)) {
+			kitty.add(new Card(Suit.SPADES, rank));
+		}
+		GameState state = new GameState(order, cardHands, CardHand.fromCards(kitty, 2), 0, new PartnerCall(heartAce, 1));
+		KnowledgeTracker knowledge = new KnowledgeTracker(4, 2);
+		knowledge.reset(order);
+		PartnerTracker partners = new PartnerTracker(knowledge, state);
+		assertEquals(5 / 28.0, partners.getHolderProbability(1, heartAce.getId(), -1), 1e-9);
+		// The call goes unanswered, leaving the host alone, only if both aces are in the kitty
+		double unanswered = (8 / 28.0) * (8 / 28.0);
+		assertEquals(unanswered + (1 - unanswered) / 4, partners.getPartnerProbability(0, -1, 0), 1e-9);
+		
+		// Players 1 and 2 show voids in hearts, so cannot hold the ace
+		List<List<Card>> trick = Arrays.asList(Arrays.asList(heartFive, heartFive), Arrays.asList(spadeAce, clubSix),
+				Arrays.asList(spadeAce, clubSix), hands.get(3).subList(0, 2));
+		knowledge.recordLead(trick.get(0));
+		for (int i = 0; i < 4; i++) {
+			if (i > 0) knowledge.recordPlay(i, trick.get(i));
+			state.apply(CardHand.fromCards(trick.get(i), 2));
+		}
+		assertEquals(3 / 14.0, partners.getHolderProbability(3, heartAce.getId(), -1), 1e-9);
+		assertEquals(0, partners.getPartnerProbability(1, -1, 0), 0);
+		for (int observer = -1; observer < 4; observer++) {
+			int copies = observer == 3 ? 1 : 0;
+			double total = 0;
+			for (int i = 0; i < 4; i++) {
+				total += partners.getPartnerProbability(i, observer, copies);
 			}
+			assertEquals(1, total, 1e-9);
 		}
+		
+		// Playing the ace to the next trick reveals player 3, as the state of the round records it
+		assertEquals(0, state.getLeader());
+		state.apply(CardHand.fromCards(Arrays.asList(new Card(Suit.HEARTS, Rank.THREE)), 2));
+		state.apply(CardHand.fromCards(hands.get(1).subList(2, 3), 2));
+		state.apply(CardHand.fromCards(hands.get(2).subList(2, 3), 2));
+		assertEquals(1, partners.getCopiesToReveal());
+		state.apply(CardHand.fromCards(Arrays.asList(heartAce), 2));
+		assertEquals(3, partners.getPartner());
+		assertEquals(0, partners.getCopiesToReveal());
+		assertEquals(1, partners.getPartnerProbability(3, -1, 0), 0);
 	}
 
+	@Test
+	public void endgameSolverTest() {
+		TrumpOrder order = TrumpOrder.of(Suit.SPADES, Rank.TWO);
+		CardHand[] hands = {
+				CardHand.fromCards(Arrays.asList(new Card(Suit.HEARTS, Rank.ACE), new Card(Suit.CLUBS, Rank.THREE)), 1),
+				CardHand.fromCards(Arrays.asList(new Card(Suit.HEARTS, Rank.KING), new Card(Suit.SPADES, Rank.FOUR)), 1),
+				CardHand.fromCards(Arrays.asList(new Card(Suit.HEARTS, Rank.FIVE), new Card(Suit.CLUBS, Rank.ACE)), 1),
+				CardHand.fromCards(Arrays.asList(new Card(Suit.HEARTS, Rank.TEN), new Card(Suit.DIAMONDS, Rank.SIX)), 1)};
+		GameState state = new GameState(order, hands, null, 0, 0, -1, 0, 2);
+		EndgameSolver solver = new EndgameSolver(4, 1, 1 << 16);
+		
+		// Cashing the ace first keeps the attackers from trumping in and winning the hearts later
+		CardHand best = solver.solve(state);
+		assertEquals(Arrays.asList(new Card(Suit.HEARTS, Rank.ACE)), best.toCards());
+		assertEquals(0, solver.getValue());
+		assertEquals(2, state.getHand(0).size());
+		
+		// After the club, the first attacker lets the ace of clubs win and trumps the hearts instead
+		state.apply(CardHand.fromCards(Arrays.asList(new Card(Suit.CLUBS, Rank.THREE)), 1));
+		best = solver.solve(state);
+		assertEquals(Arrays.asList(new Card(Suit.HEARTS, Rank.KING)), best.toCards());
+		assertEquals(15, solver.getValue());
+	}
+
+	@Test
+	public void endgameSolverMinimaxTest() {
+		// One solver for each table size, so that its table is reused across deals and trumps.  Five
+		// tricks are only played by three players, which keeps the minimax quick.
+		int numDecks = 2;
+		EndgameSolver[] solvers = {new EndgameSolver(3, numDecks, 1 << 20), new EndgameSolver(4, numDecks, 1 << 20)};
+		Random random = new Random(13);
+		for (int deal = 0; deal < 36; deal++) {
+			int numTricks = 3 + deal % 3;
+			int numPlayers = numTricks == 5 || deal % 2 == 0 ? 3 : 4;
+			EndgameSolver solver = solvers[numPlayers - 3];
+			List<Card> deck = new ArrayList<>();
+			for (int i = 0; i < CardHand.NUM_IDS * numDecks; i++) {
+				deck.add(Card.of(i % CardHand.NUM_IDS));
+			}
+			Collections.shuffle(deck, random);
+			int host = random.nextInt(numPlayers);
+			int partner = random.nextInt(numPlayers);
+			if (partner == host) partner = -1;
+			int leader = random.nextInt(numPlayers);
+			CardHand kitty = CardHand.fromCards(deck.subList(numPlayers * numTricks, numPlayers * numTricks + 8), numDecks);
+			int hostSide = 1 << host | (partner >= 0 ? 1 << partner : 0);
+			
+			// The same hands are solved under two trumps
+			for (int t = 0; t < 2; t++) {
+				TrumpOrder order = TrumpOrder.of(Suit.values()[random.nextInt(5)], Rank.values()[random.nextInt(13)]);
+				CardHand[] hands = new CardHand[numPlayers];
+				for (int p = 0; p < numPlayers; p++) {
+					hands[p] = CardHand.fromCards(deck.subList(p * numTricks, (p + 1) * numTricks), numDecks);
+				}
+				GameState state = new GameState(order, hands, kitty, host, leader, -1, 0, partner);
+				int expected = minimax(state, hostSide, GameRules.getNumPoints(kitty));
+				
+				CardHand best = solver.solve(state);
+				assertEquals("Deal " + deal + " under " + order.getTrumpSuit() + " " + order.getTrumpRank(), 
+						expected, solver.getValue());
+				// The move found achieves the value
+				state.apply(best);
+				assertEquals(expected, getAttackerPoints(state, hostSide) + minimax(state, hostSide, GameRules.getNumPoints(kitty)));
+				state.undo();
+			}
+		}
+	}
+	
+	/**
+	 * Returns the points the attackers win from the given position on with best play, by trying every
+	 * legal play
+	 */
+	private static int minimax(GameState state, int hostSide, int kittyPoints) {
+		if (state.isRoundOver()) return 0;
+		CardHand hand = state.getHand(state.getCurrentPlayer());
+		List<CardHand> moves = new ArrayList<>();
+		if (state.isTrickComplete()) {
+			for (CardHand move : GameRules.getLegalLeads(hand, state.getTrumpOrder())) {
+				moves.add(move.copy());
+			}
+		} else {
+			Iterator<CardHand> plays = GameRules.getLegalPlays(state.getLead(), hand, state.getTrumpOrder());
+			while (plays.hasNext()) {
+				moves.add(plays.next().copy());
+			}
+		}
+		boolean maximise = (hostSide >>> state.getCurrentPlayer() & 1) == 0;
+		int best = maximise ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+		int pointsBefore = getAttackerPoints(state, hostSide);
+		for (CardHand move : moves) {
+			state.apply(move);
+			int value = getAttackerPoints(state, hostSide) - pointsBefore;
+			if (!state.isRoundOver()) {
+				value += minimax(state, hostSide, kittyPoints);
+			} else if ((hostSide >>> state.getLeader() & 1) == 0) {
+				value += GameRules.getKittyBonus(kittyPoints, move.size());
+			}
+			state.undo();
+			best = maximise ? Math.max(best, value) : Math.min(best, value);
+		}
+		return best;
+	}
+	
+	private static int getAttackerPoints(GameState state, int hostSide) {
+		int points = 0;
+		for (int p = 0; p < state.getNumPlayers(); p++) {
+			if ((hostSide >>> p & 1) == 0) points += state.getPoints(p);
+		}
+		return points;
+	}
+
+	@Test
+	public void shapeKeyTest() {
+		TrumpOrder order = TrumpOrder.of(Suit.SPADES, Rank.TWO);
+		Card heartFive = new Card(Suit.HEARTS, Rank.FIVE);
+		Card heartSix = new Card(Suit.HEARTS, Rank.SIX);
+		Card heartKing = new Card(Suit.HEARTS, Rank.KING);
+		Card spadeAce = new Card(Suit.SPADES, Rank.ACE);
+		Card clubTwo = new Card(Suit.CLUBS, Rank.TWO);
+		Card diamondTwo = new Card(Suit.DIAMONDS, Rank.TWO);
+		
+		// A higher pair beats a led pair, but a pair of different cards does not
+		List<Card> fives = Arrays.asList(heartFive, heartFive);
+		assertEquals(1, GameRules.getHigherHand(fives, Arrays.asList(heartKing, heartKing), order));
+		assertEquals(0, GameRules.getHigherHand(fives, Arrays.asList(heartKing, heartSix), order));
+		assertEquals(0, GameRules.getHigherHand(fives, Arrays.asList(clubTwo, diamondTwo), order));
+		
+		// Triple tractors are compared by their highest cards, and trump tractors run through the numbers
+		List<Card> lead = Arrays.asList(heartFive, heartFive, heartFive, heartSix, heartSix, heartSix);
+		List<Card> trumpTractor = Arrays.asList(spadeAce, spadeAce, spadeAce, clubTwo, clubTwo, clubTwo);
+		List<Card> pairs = Arrays.asList(heartKing, heartKing, heartKing, heartSix, heartSix, heartSix);
+		assertEquals(1, GameRules.getHigherHand(lead, trumpTractor, order));
+		assertEquals(0, GameRules.getHigherHand(lead, pairs, order));
+		assertEquals(2, GameRules.getWinningIndex(Arrays.asList(lead, pairs, trumpTractor), order));
+		
+		CardHand tractor = CardHand.fromCards(trumpTractor, 3);
+		assertEquals(GameRules.getShapeKey(trumpTractor, order), GameRules.getShapeKey(tractor, order));
+		assertEquals(0, GameRules.getHigherHand(tractor, CardHand.fromCards(lead, 3), order));
+	}
+
+	@Test
+	public void tractorIndexTest() {
+		TrumpOrder order = TrumpOrder.of(Suit.SPADES, Rank.TWO);
+		Card heartFive = new Card(Suit.HEARTS, Rank.FIVE);
+		Card heartSix = new Card(Suit.HEARTS, Rank.SIX);
+		Card heartEight = new Card(Suit.HEARTS, Rank.EIGHT);
+		List<Card> hand = new ArrayList<>(Arrays.asList(heartEight, heartFive, heartSix, heartFive, heartEight, 
+				heartSix, new Card(Suit.CLUBS, Rank.THREE), heartFive));
+		TractorIndex index = new TractorIndex(3, order);
+		for (Card card : hand) {
+			index.add(card);
+		}
+		assertTrue(index.matches(hand));
+		assertEquals(2, index.getLongestTractor(Suit.HEARTS, 2));
+		assertEquals(Rank.FIVE.ordinal(), index.getLongestTractorStart(Suit.HEARTS, 2));
+		assertEquals(1, index.getLongestTractor(Suit.HEARTS, 3));
+		assertEquals(3, index.countGroups(Suit.HEARTS, 2));
+		assertEquals(new HandStraights(hand, order).getStraights(Suit.HEARTS, 2)[0], 
+				index.selectLongestTractor(hand, Suit.HEARTS, 2));
+		
+		// Playing a six breaks the tractor, and declaring hearts trump moves every heart
+		index.remove(heartSix);
+		hand.remove(heartSix);
+		assertEquals(1, index.getLongestTractor(Suit.HEARTS, 2));
+		assertEquals(2, index.countGroups(Suit.HEARTS, 2));
+		index.setOrder(TrumpOrder.of(Suit.HEARTS, Rank.TWO));
+		assertEquals(0, index.getLongestTractor(Suit.HEARTS, 1));
+		assertEquals(6, index.countGroups(Suit.TRUMP, 1));
+		assertTrue(index.matches(hand));
+	}
+	
+	@Test
+	public void kittyOptimizerTest() {
+		// Burying the singleton spade ace voids spades, the club king would bury points, and the
+		// diamond threes and fours are a tractor
+		TrumpOrder order = TrumpOrder.of(Suit.HEARTS, Rank.TWO);
+		List<Card> hand = Arrays.asList(new Card(Suit.DIAMONDS, Rank.THREE), new Card(Suit.DIAMONDS, Rank.THREE),
+				new Card(Suit.DIAMONDS, Rank.FOUR), new Card(Suit.DIAMONDS, Rank.FOUR), new Card(Suit.SPADES, Rank.ACE),
+				new Card(Suit.CLUBS, Rank.KING), new Card(Suit.CLUBS, Rank.SIX), new Card(Suit.CLUBS, Rank.SEVEN),
+				new Card(Suit.HEARTS, Rank.NINE), new Card(Suit.DIAMONDS, Rank.NINE));
+		long kitty = KittyOptimizer.choose(hand, 3, order, Long.MAX_VALUE);
+		assertEquals(CardSelection.with(CardSelection.with(CardSelection.with(CardSelection.NONE, 4), 6), 7), kitty);
+		
+		// No other kitty scores higher
+		long best = Long.MIN_VALUE;
+		for (int a = 0; a < hand.size(); a++) {
+			for (int b = a + 1; b < hand.size(); b++) {
+				for (int c = b + 1; c < hand.size(); c++) {
+					long other = CardSelection.with(CardSelection.with(CardSelection.with(CardSelection.NONE, a), b), c);
+					best = Math.max(best, KittyOptimizer.score(hand, other, order));
+				}
+			}
+		}
+		assertEquals(best, KittyOptimizer.score(hand, kitty, order));
+	}
+	
+	@Test
+	public void monteCarloZeroBudgetTest() {
+		// With no iterations allowed, the search falls back to the default lead and play
+		TrumpOrder order = TrumpOrder.of(Suit.SPADES, Rank.TWO);
+		GameInfo gameInfo = new GameInfo(4, 2, 0, Rank.TWO, Suit.SPADES, new PartnerCall(new Card(Suit.HEARTS, Rank.ACE), 1), 0);
+		MonteCarloAI player = new MonteCarloAI(0, 1, 0, 0);
+		player.initializeRound(gameInfo);
+		List<Card> hand = Arrays.asList(new Card(Suit.HEARTS, Rank.THREE), new Card(Suit.HEARTS, Rank.NINE),
+				new Card(Suit.CLUBS, Rank.FIVE), new Card(Suit.SPADES, Rank.KING));
+		CardHand cards = CardHand.fromCards(hand, 2);
+		assertEquals(GameRules.cardsToIndices(hand, GameRules.getDefaultLead(cards, order)), player.lead(hand, gameInfo));
+		
+		List<Card> lead = Arrays.asList(new Card(Suit.HEARTS, Rank.SIX));
+		List<List<Card>> plays = new ArrayList<>();
+		plays.add(lead);
+		long play = player.play(plays, hand, gameInfo);
+		assertEquals(GameRules.cardsToIndices(hand, GameRules.getDefaultPlay(CardHand.fromCards(lead, 2), cards, order)), play);
+		assertTrue(GameRules.isValidPlay(lead, play, hand, order));
+	}
+	
+	@Test
+	public void kittyBonusTest() {
+		// The multiplier grows linearly with the size of the last lead, not exponentially
+		assertEquals(0, GameRules.getKittyBonus(0, 4));
+		assertEquals(30, GameRules.getKittyBonus(15, 1));
+		assertEquals(60, GameRules.getKittyBonus(15, 2));
+		assertEquals(120, GameRules.getKittyBonus(15, 4));
+	}
+	
+	@Test
+	public void levelGainTest() {
+		for (int numDecks = 1; numDecks <= 3; numDecks++) {
+			int threshold = GameRules.getAttackerThreshold(numDecks);
+			assertEquals(40 * numDecks, threshold);
+			// The host's team wins below the threshold
+			assertEquals(3, GameRules.getLevelGain(0, numDecks));
+			assertEquals(2, GameRules.getLevelGain(5, numDecks));
+			assertEquals(2, GameRules.getLevelGain(threshold / 2 - 5, numDecks));
+			assertEquals(1, GameRules.getLevelGain(threshold / 2, numDecks));
+			assertEquals(1, GameRules.getLevelGain(threshold - 5, numDecks));
+			assertTrue(GameRules.isHostWin(0, numDecks));
+			assertTrue(GameRules.isHostWin(threshold - 5, numDecks));
+			// The attackers win from the threshold, gaining a level per half threshold over it
+			assertFalse(GameRules.isHostWin(threshold, numDecks));
+			assertEquals(0, GameRules.getLevelGain(threshold, numDecks));
+			assertEquals(0, GameRules.getLevelGain(threshold + threshold / 2 - 5, numDecks));
+			assertEquals(1, GameRules.getLevelGain(threshold + threshold / 2, numDecks));
+			assertEquals(2, GameRules.getLevelGain(2 * threshold, numDecks));
+			assertEquals(3, GameRules.getLevelGain(2 * threshold + threshold / 2, numDecks));
+		}
+	}
+	
+	@Test
+	public void cardSelectionEdgeTest() {
+		long all = CardSelection.firstN(CardSelection.MAX_HAND_SIZE);
+		assertEquals(-1L, all);
+		assertEquals(CardSelection.MAX_HAND_SIZE, CardSelection.size(all));
+		assertEquals(0, CardSelection.first(all));
+		assertEquals(63, CardSelection.last(all));
+		assertEquals(CardSelection.NONE, CardSelection.firstN(0));
+		assertEquals(-1, CardSelection.first(CardSelection.NONE));
+		assertEquals(-1, CardSelection.last(CardSelection.NONE));
+		assertTrue(CardSelection.contains(CardSelection.of(63), 63));
+		
+		assertTrue(CardSelection.isWithin(all, CardSelection.MAX_HAND_SIZE));
+		assertFalse(CardSelection.isWithin(all, CardSelection.MAX_HAND_SIZE - 1));
+		assertTrue(CardSelection.isWithin(CardSelection.of(62), 63));
+		assertFalse(CardSelection.isWithin(CardSelection.of(63), 63));
+		assertTrue(CardSelection.isWithin(CardSelection.NONE, 0));
+		assertFalse(CardSelection.isWithin(CardSelection.of(0), 0));
+	}
+	
+	@Test
+	public void kittyReproducibleTest() throws Exception {
+		// The kitty depends only on the hand, not on how long the search is given or how busy the machine is
+		Random random = new Random(9);
+		int numHands = 200;
+		List<List<Card>> hands = new ArrayList<>();
+		TrumpOrder[] orders = new TrumpOrder[numHands];
+		long[] kitties = new long[numHands];
+		for (int h = 0; h < numHands; h++) {
+			int numDecks = h % 2 == 0 ? 2 : 4;
+			List<Card> deck = new ArrayList<>();
+			for (int i = 0; i < CardHand.NUM_IDS * numDecks; i++) {
+				deck.add(Card.of(i % CardHand.NUM_IDS));
+			}
+			Collections.shuffle(deck, random);
+			hands.add(new ArrayList<>(deck.subList(0, 33)));
+			orders[h] = TrumpOrder.of(Suit.values()[random.nextInt(4)], Rank.values()[random.nextInt(13)]);
+			kitties[h] = KittyOptimizer.choose(hands.get(h), 8, orders[h], CommonSenseAI.KITTY_NODES);
+			assertEquals(kitties[h], KittyOptimizer.choose(hands.get(h), 8, orders[h], CommonSenseAI.KITTY_NODES, 60000000000L));
+		}
+		
+		// Searching every hand at once on a small pool gives each search far less of the machine
+		ForkJoinPool pool = new ForkJoinPool(2);
+		try {
+			List<Future<Long>> loaded = new ArrayList<>();
+			for (int h = 0; h < numHands; h++) {
+				int hand = h;
+				loaded.add(pool.submit(() -> KittyOptimizer.choose(hands.get(hand), 8, orders[hand], CommonSenseAI.KITTY_NODES)));
+			}
+			for (int h = 0; h < numHands; h++) {
+				assertEquals(kitties[h], (long) loaded.get(h).get());
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
 }
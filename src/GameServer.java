@@ -0,0 +1,414 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Hosts many tables at once for players connecting over sockets.  Every numPlayers connections, in the
+ * order they arrive, are seated at a new table whose engine plays numRounds rounds with a
+ * {@link RemotePlayer} in each seat, speaking {@link GameProtocol} to the client.  Table i is seeded with
+ * {@link BatchSimulation#roundSeed}(seed, i).
+ *
+ * All sockets are multiplexed over a single selector thread, which only moves bytes.  Each table's engine
+ * runs on its own thread with a small stack, blocking only while it waits for its clients; engine
+ * threads write to their sockets directly and leave the selector to finish writes that do not complete
+ * at once.  Every connection has fixed buffers of at most MAX_FRAME bytes, so the memory used by a
+ * table does not grow with the number of rounds or messages.
+ */
+public class GameServer implements Closeable {
+
+	// Stack reserved for each table's thread; the engine and players never recurse deeply
+	private static final long TABLE_STACK_SIZE = 256 * 1024;
+
+	private final int numPlayers;
+	private final int numRounds;
+	private final long seed;
+	private long decisionTimeoutNanos = TimeUnit.SECONDS.toNanos(10);
+	private final ServerSocketChannel serverChannel;
+	private final Selector selector;
+	private final ExecutorService tables;
+	// Connections with output left to write, to be registered for writing by the selector thread
+	private final Queue<Connection> pendingWrites = new ConcurrentLinkedQueue<>();
+	// Connections waiting for a table to fill, only used by the selector thread
+	private final List<Connection> waiting = new ArrayList<>();
+	private final AtomicLong tablesStarted = new AtomicLong();
+	private final AtomicLong tablesFinished = new AtomicLong();
+	// Called with the result of each table once it finishes, or null
+	private Consumer<MatchResult> listener;
+	// Instrumentation shared by every table, or null
+	private GameMetrics metrics;
+	private Thread selectorThread;
+
+	/**
+	 * @param address The address to listen on; port 0 picks any free port
+	 * @param numPlayers Players at each table
+	 * @param numRounds Rounds played by each table, fewer if the match is won first
+	 * @param seed
+	 * @throws IOException
+	 */
+	public GameServer(InetSocketAddress address, int numPlayers, int numRounds, long seed) throws IOException {
+		this.numPlayers = numPlayers;
+		this.numRounds = numRounds;
+		this.seed = seed;
+		selector = Selector.open();
+		serverChannel = ServerSocketChannel.open();
+		serverChannel.bind(address, 1024);
+		serverChannel.configureBlocking(false);
+		serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+		tables = Executors.newCachedThreadPool(r -> {
+			Thread thread = new Thread(null, r, "table", TABLE_STACK_SIZE);
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Sets how long a client has to answer each decision.  A client that does not answer in time is
+	 * treated as having answered invalidly, so the engine eventually makes the default choice for it.
+	 * @param timeoutMillis
+	 */
+	public void setDecisionTimeout(long timeoutMillis) {
+		this.decisionTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+	}
+
+	public void setListener(Consumer<MatchResult> listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * Sets the metrics shared by every table, or null to not measure.  Decision latencies include the
+	 * round trip to the client.
+	 * @param metrics
+	 */
+	public void setMetrics(GameMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	public int getPort() throws IOException {
+		return ((InetSocketAddress) serverChannel.getLocalAddress()).getPort();
+	}
+
+	public long getTablesStarted() {
+		return tablesStarted.get();
+	}
+
+	public long getTablesFinished() {
+		return tablesFinished.get();
+	}
+
+	/**
+	 * Starts accepting connections on a new thread.
+	 */
+	public void start() {
+		selectorThread = new Thread(this::runSelector, "game-server");
+		selectorThread.setDaemon(true);
+		selectorThread.start();
+	}
+
+	private void runSelector() {
+		try {
+			while (selector.isOpen()) {
+				try {
+					selector.select();
+				} catch (IOException e) {
+					// Nothing was selected; try again unless the selector has been closed
+					continue;
+				}
+				Connection pending;
+				while ((pending = pendingWrites.poll()) != null) {
+					pending.registerWrite();
+				}
+				for (SelectionKey key : selector.selectedKeys()) {
+					try {
+						if (!key.isValid()) continue;
+						if (key.isAcceptable()) {
+							accept();
+							continue;
+						}
+						Connection connection = (Connection) key.attachment();
+						if (key.isReadable()) connection.read();
+						if (key.isValid() && key.isWritable()) connection.finishWrite();
+					} catch (CancelledKeyException e) {
+						// The connection was closed by its table's thread
+					}
+				}
+				selector.selectedKeys().clear();
+			}
+		} catch (ClosedSelectorException e) {
+			// Closed by close()
+		}
+	}
+
+	/**
+	 * Accepts the connections waiting on the server socket.  A connection that cannot be set up is
+	 * closed on its own; if accepting fails, the rest are left for the next select.
+	 */
+	private void accept() {
+		while (true) {
+			SocketChannel channel;
+			try {
+				channel = serverChannel.accept();
+			} catch (IOException e) {
+				return;
+			}
+			if (channel == null) return;
+			Connection connection = new Connection(this, channel);
+			try {
+				channel.configureBlocking(false);
+				channel.socket().setTcpNoDelay(true);
+				connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+			} catch (IOException e) {
+				synchronized (connection) {
+					connection.close();
+				}
+				continue;
+			}
+			waiting.removeIf(Connection::isClosed);
+			waiting.add(connection);
+			if (waiting.size() == numPlayers) {
+				List<Connection> seats = new ArrayList<>(waiting);
+				waiting.clear();
+				long tableIndex = tablesStarted.getAndIncrement();
+				tables.execute(() -> playTable(tableIndex, seats));
+			}
+		}
+	}
+
+	/**
+	 * Plays the rounds of a table on the calling thread, then sends END to its clients and closes them,
+	 * whether or not the match completed.
+	 * @param tableIndex
+	 * @param seats The connection of the player in each seat
+	 */
+	private void playTable(long tableIndex, List<Connection> seats) {
+		List<PlayerFactory> lineup = new ArrayList<>();
+		for (int i = 0; i < numPlayers; i++) {
+			Connection connection = seats.get(i);
+			lineup.add(id -> new RemotePlayer(id, connection, decisionTimeoutNanos));
+		}
+		GameEngine engine = new GameEngine(lineup, BatchSimulation.roundSeed(seed, tableIndex));
+		engine.setVerbose(false);
+		engine.setMetrics(metrics);
+		MatchResult result;
+		try {
+			result = engine.playMatch(numRounds);
+		} finally {
+			// Even if the match failed, release the seats and count the table
+			ByteBuffer frame = ByteBuffer.allocate(GameProtocol.HEADER_SIZE);
+			for (Connection connection : seats) {
+				frame.clear();
+				GameProtocol.endFrame(frame, GameProtocol.beginFrame(frame, GameProtocol.END));
+				frame.flip();
+				connection.send(frame, decisionTimeoutNanos);
+				connection.closeWhenWritten();
+			}
+			tablesFinished.incrementAndGet();
+		}
+		if (listener != null) listener.accept(result);
+	}
+
+	private void requestWrite(Connection connection) {
+		pendingWrites.add(connection);
+		selector.wakeup();
+	}
+
+	@Override
+	public void close() throws IOException {
+		selector.close();
+		serverChannel.close();
+		tables.shutdownNow();
+	}
+
+	/**
+	 * A client's socket.  The selector thread reads replies into the connection and finishes writes;
+	 * the table's thread sends messages and waits for replies.  Only one decision is outstanding at a
+	 * time, and replies arrive in order, so a late reply is recognised by the count of replies still
+	 * expected and dropped.
+	 */
+	static class Connection {
+		private final GameServer server;
+		private final SocketChannel channel;
+		private SelectionKey key;
+		// Received bytes not yet handled, only used by the selector thread
+		private final ByteBuffer in = ByteBuffer.allocate(GameProtocol.MAX_FRAME);
+		// The rest of the fields are guarded by this
+		private final ByteBuffer out = ByteBuffer.allocate(GameProtocol.MAX_FRAME);
+		// The type and payload of the reply to the latest request
+		private final ByteBuffer reply = ByteBuffer.allocate(16);
+		private int expectedReplies;
+		private boolean replied;
+		private boolean closing;
+		private boolean closed;
+
+		private Connection(GameServer server, SocketChannel channel) {
+			this.server = server;
+			this.channel = channel;
+		}
+
+		synchronized boolean isClosed() {
+			return closed;
+		}
+
+		/**
+		 * Sends a frame, waiting for the output buffer to have room for it.  Closes the connection if
+		 * the client does not read for timeoutNanos.
+		 * @param frame A complete frame in read mode
+		 * @param timeoutNanos
+		 * @return Whether the frame was sent
+		 */
+		synchronized boolean send(ByteBuffer frame, long timeoutNanos) {
+			long deadline = System.nanoTime() + timeoutNanos;
+			while (!closed && out.remaining() < frame.remaining()) {
+				if (!await(deadline)) {
+					close();
+					return false;
+				}
+			}
+			if (closed) return false;
+			// Try to write at once; the selector is only woken for writes that could not complete
+			boolean wasEmpty = out.position() == 0;
+			out.put(frame);
+			write();
+			if (!closed && out.position() > 0 && wasEmpty) server.requestWrite(this);
+			return !closed;
+		}
+
+		/**
+		 * Sends a frame and waits for the client's reply.
+		 * @param frame A complete frame in read mode
+		 * @param timeoutNanos
+		 * @return The reply, starting with its type, or null if it did not arrive in time
+		 */
+		synchronized ByteBuffer request(ByteBuffer frame, long timeoutNanos) {
+			long deadline = System.nanoTime() + timeoutNanos;
+			replied = false;
+			expectedReplies++;
+			if (!send(frame, timeoutNanos)) return null;
+			while (!replied && !closed) {
+				if (!await(deadline)) return null;
+			}
+			return replied ? reply : null;
+		}
+
+		/**
+		 * Waits to be notified until the deadline.
+		 * @return false if the deadline has passed
+		 */
+		private boolean await(long deadline) {
+			long remaining = deadline - System.nanoTime();
+			if (remaining <= 0) return false;
+			try {
+				TimeUnit.NANOSECONDS.timedWait(this, remaining);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				close();
+			}
+			return true;
+		}
+
+		/**
+		 * Called by the selector thread when the socket is readable.
+		 */
+		void read() {
+			try {
+				if (channel.read(in) < 0) {
+					synchronized (this) {
+						close();
+					}
+					return;
+				}
+				in.flip();
+				int length;
+				while ((length = GameProtocol.frameLength(in)) > 0) {
+					receive(in, length);
+					in.position(in.position() + length);
+				}
+				in.compact();
+			} catch (IOException | RuntimeException e) {
+				synchronized (this) {
+					close();
+				}
+			}
+		}
+
+		private synchronized void receive(ByteBuffer buffer, int length) {
+			if (--expectedReplies < 0 || length - 2 > reply.capacity()) {
+				throw new IllegalStateException("Unexpected reply");
+			}
+			// Only the reply to the latest request is kept
+			if (expectedReplies > 0) return;
+			reply.clear();
+			for (int i = 2; i < length; i++) {
+				reply.put(buffer.get(buffer.position() + i));
+			}
+			reply.flip();
+			replied = true;
+			notifyAll();
+		}
+
+		/**
+		 * Called by the selector thread to wait for the socket to be writable.
+		 */
+		synchronized void registerWrite() {
+			if (!closed && out.position() > 0) key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+		}
+
+		/**
+		 * Called by the selector thread when the socket is writable.
+		 */
+		synchronized void finishWrite() {
+			write();
+			if (!closed && out.position() == 0) key.interestOps(SelectionKey.OP_READ);
+		}
+
+		private void write() {
+			out.flip();
+			try {
+				channel.write(out);
+			} catch (IOException e) {
+				close();
+				return;
+			} finally {
+				out.compact();
+			}
+			if (out.position() == 0) {
+				notifyAll();
+				if (closing) close();
+			}
+		}
+
+		/**
+		 * Closes the connection once everything sent has been written.
+		 */
+		synchronized void closeWhenWritten() {
+			closing = true;
+			if (out.position() == 0) close();
+		}
+
+		private void close() {
+			if (closed) return;
+			closed = true;
+			try {
+				channel.close();
+			} catch (IOException e) {
+				// Already closed
+			}
+			notifyAll();
+		}
+	}
+}
@@ -0,0 +1,366 @@
+import java.util.Arrays;
+
+/**
+ * Compact state of the play phase of a round:  every hand, the kitty, the plays of the current trick,
+ * the points won so far and the progress of the partner call.  Plays are applied with apply, which
+ * resolves each trick as soon as it is complete, and can be taken back in reverse order with undo.
+ *
+ * Used by the game engine to run a round and by search players to simulate forward from a position,
+ * so copying is kept cheap:  the only deep copies are the hands, since plays are never modified once
+ * applied.
+ */
+public class GameState {
+
+	private TrumpOrder order;
+	private final int numPlayers;
+	private int host;
+	private final CardHand[] hands;
+	private final CardHand kitty;
+	private final int[] points;
+	// The id of the called card, or -1 if there is no call
+	private int calledId;
+
+	// Every play applied, in order
+	private CardHand[] history;
+	private int historySize;
+	// Index in history of the lead of the current trick
+	private int trickStart;
+	private int leader;
+	// The player currently winning the trick, and the shape key of their play
+	private int winner;
+	private int winningKey;
+	private int numTricks;
+	// Copies of the called card still to be played before the partner is revealed
+	private int copiesToReveal;
+	// The revealed partner, or -1
+	private int partner;
+
+	// What each apply changed, UNDO_FRAME ints per play: previous winner, leader, trickStart,
+	// copiesToReveal and partner, then the points awarded if the play completed a trick (or -1), 
+	// then the previous winning key
+	private static final int UNDO_FRAME = 7;
+	private int[] undoLog;
+
+	/**
+	 * Creates the state at the start of a trick.  The hands and kitty are used directly, not copied.
+	 * @param order
+	 * @param hands The hand of each player
+	 * @param kitty The kitty, or null if unknown
+	 * @param host
+	 * @param leader The player to lead the first trick
+	 * @param calledId The id of the card called for partner, or -1 if none
+	 * @param copiesToReveal The number of copies of the called card still to be played to reveal the partner
+	 * @param partner The partner, if already revealed, or -1
+	 */
+	public GameState(TrumpOrder order, CardHand[] hands, CardHand kitty, int host, int leader,
+					 int calledId, int copiesToReveal, int partner) {
+		this.order = order;
+		this.numPlayers = hands.length;
+		this.hands = hands;
+		this.kitty = kitty;
+		this.host = host;
+		this.leader = leader;
+		this.winner = leader;
+		this.points = new int[numPlayers];
+		this.calledId = calledId;
+		this.copiesToReveal = copiesToReveal;
+		this.partner = partner;
+
+		int capacity = 1;
+		for (CardHand hand : hands) {
+			capacity += hand.size();
+		}
+		history = new CardHand[capacity];
+		undoLog = new int[capacity * UNDO_FRAME];
+	}
+
+	/**
+	 * Creates the state at the start of the play phase, before any card of the partner call is played.
+	 * @param order
+	 * @param hands
+	 * @param kitty
+	 * @param host
+	 * @param partnerCall The host's call, or null
+	 */
+	public GameState(TrumpOrder order, CardHand[] hands, CardHand kitty, int host, PartnerCall partnerCall) {
+		this(order, hands, kitty, host, host, partnerCall == null ? -1 : partnerCall.getCard().getId(),
+				partnerCall == null ? 0 : partnerCall.getInstance(), -1);
+	}
+
+	private GameState(GameState other) {
+		this.order = other.order;
+		this.numPlayers = other.numPlayers;
+		this.host = other.host;
+		this.hands = new CardHand[numPlayers];
+		for (int i = 0; i < numPlayers; i++) {
+			hands[i] = other.hands[i].copy();
+		}
+		this.kitty = other.kitty == null ? null : other.kitty.copy();
+		this.points = other.points.clone();
+		this.calledId = other.calledId;
+		this.history = other.history.clone();
+		this.historySize = other.historySize;
+		this.trickStart = other.trickStart;
+		this.leader = other.leader;
+		this.winner = other.winner;
+		this.winningKey = other.winningKey;
+		this.numTricks = other.numTricks;
+		this.copiesToReveal = other.copiesToReveal;
+		this.partner = other.partner;
+		this.undoLog = other.undoLog.clone();
+	}
+
+	/**
+	 * Returns an independent copy of this state.
+	 * @return
+	 */
+	public GameState copy() {
+		return new GameState(this);
+	}
+
+	/**
+	 * Makes this state identical to another state of the same round, reusing this state's storage.
+	 * @param other
+	 */
+	public void copyFrom(GameState other) {
+		for (int i = 0; i < numPlayers; i++) {
+			hands[i].copyFrom(other.hands[i]);
+		}
+		if (kitty != null && other.kitty != null) kitty.copyFrom(other.kitty);
+		System.arraycopy(other.points, 0, points, 0, numPlayers);
+		if (history.length < other.history.length) {
+			history = new CardHand[other.history.length];
+			undoLog = new int[other.undoLog.length];
+		}
+		System.arraycopy(other.history, 0, history, 0, other.historySize);
+		System.arraycopy(other.undoLog, 0, undoLog, 0, other.historySize * UNDO_FRAME);
+		historySize = other.historySize;
+		trickStart = other.trickStart;
+		leader = other.leader;
+		winner = other.winner;
+		winningKey = other.winningKey;
+		numTricks = other.numTricks;
+		copiesToReveal = other.copiesToReveal;
+		partner = other.partner;
+	}
+
+	/**
+	 * Starts a new round with the same players, reusing this state's storage.  The hands and kitty
+	 * must already hold the new round's cards.
+	 * @param order
+	 * @param host
+	 * @param partnerCall The host's call, or null
+	 */
+	public void reset(TrumpOrder order, int host, PartnerCall partnerCall) {
+		this.order = order;
+		Arrays.fill(history, 0, historySize, null);
+		Arrays.fill(points, 0);
+		historySize = 0;
+		trickStart = 0;
+		numTricks = 0;
+		this.host = host;
+		this.leader = host;
+		this.winner = host;
+		this.calledId = partnerCall == null ? -1 : partnerCall.getCard().getId();
+		this.copiesToReveal = partnerCall == null ? 0 : partnerCall.getInstance();
+		this.partner = -1;
+	}
+	
+	/**
+	 * Plays the given cards from the hand of the current player, resolving the trick if it is complete.
+	 * The play must be legal and must not be modified afterwards.
+	 * @param play
+	 */
+	public void apply(CardHand play) {
+		if (historySize == history.length) {
+			history = Arrays.copyOf(history, history.length * 2);
+			undoLog = Arrays.copyOf(undoLog, undoLog.length * 2);
+		}
+		int frame = historySize * UNDO_FRAME;
+		undoLog[frame] = winner;
+		undoLog[frame + 1] = leader;
+		undoLog[frame + 2] = trickStart;
+		undoLog[frame + 3] = copiesToReveal;
+		undoLog[frame + 4] = partner;
+		undoLog[frame + 5] = -1;
+		undoLog[frame + 6] = winningKey;
+
+		int player = getCurrentPlayer();
+		hands[player].removeAll(play);
+		if (copiesToReveal > 0 && calledId >= 0) {
+			copiesToReveal -= play.count(calledId);
+			if (copiesToReveal <= 0 && partner < 0) partner = player;
+		}
+		int key = GameRules.getShapeKey(play, order);
+		if (historySize == trickStart) {
+			winningKey = key;
+		} else if (GameRules.getHigherKey(winningKey, key) == 1) {
+			winner = player;
+			winningKey = key;
+		}
+		history[historySize++] = play;
+
+		if (historySize - trickStart == numPlayers) {
+			int trickPoints = 0;
+			for (int i = trickStart; i < historySize; i++) {
+				trickPoints += GameRules.getNumPoints(history[i]);
+			}
+			points[winner] += trickPoints;
+			undoLog[frame + 5] = trickPoints;
+			leader = winner;
+			trickStart = historySize;
+			numTricks++;
+		}
+	}
+
+	/**
+	 * Takes back the last play applied.
+	 */
+	public void undo() {
+		historySize--;
+		CardHand play = history[historySize];
+		history[historySize] = null;
+		int frame = historySize * UNDO_FRAME;
+		int trickPoints = undoLog[frame + 5];
+		if (trickPoints >= 0) {
+			points[leader] -= trickPoints;
+			numTricks--;
+		}
+		winner = undoLog[frame];
+		leader = undoLog[frame + 1];
+		trickStart = undoLog[frame + 2];
+		copiesToReveal = undoLog[frame + 3];
+		partner = undoLog[frame + 4];
+		winningKey = undoLog[frame + 6];
+		hands[getCurrentPlayer()].addAll(play);
+	}
+
+	public TrumpOrder getTrumpOrder() {
+		return order;
+	}
+
+	public int getNumPlayers() {
+		return numPlayers;
+	}
+
+	public int getHost() {
+		return host;
+	}
+
+	/**
+	 * The hand of the given player.  Must not be modified.
+	 */
+	public CardHand getHand(int player) {
+		return hands[player];
+	}
+
+	/**
+	 * Null if unknown
+	 * @return
+	 */
+	public CardHand getKitty() {
+		return kitty;
+	}
+
+	/**
+	 * The player who led the current trick, or who leads next if no trick is in progress
+	 * @return
+	 */
+	public int getLeader() {
+		return leader;
+	}
+
+	/**
+	 * The player whose play is winning the current trick, or who won the last trick if no trick
+	 * is in progress
+	 * @return
+	 */
+	public int getWinner() {
+		return winner;
+	}
+
+	/**
+	 * The {@link GameRules#getShapeKey(CardHand, TrumpOrder) shape key} of the play winning the
+	 * current trick, valid while a trick is in progress
+	 * @return
+	 */
+	public int getWinningKey() {
+		return winningKey;
+	}
+
+	public int getCurrentPlayer() {
+		return (leader + historySize - trickStart) % numPlayers;
+	}
+
+	/**
+	 * Returns the number of plays made so far in the current trick.
+	 * @return
+	 */
+	public int getTrickSize() {
+		return historySize - trickStart;
+	}
+
+	/**
+	 * Returns the i-th play of the current trick, starting from the lead.
+	 * @param i
+	 * @return
+	 */
+	public CardHand getTrickPlay(int i) {
+		return history[trickStart + i];
+	}
+
+	/**
+	 * Returns the lead of the current trick, or null if no trick is in progress.
+	 * @return
+	 */
+	public CardHand getLead() {
+		return historySize > trickStart ? history[trickStart] : null;
+	}
+
+	/**
+	 * Returns whether every play made so far belongs to a completed trick.
+	 * @return
+	 */
+	public boolean isTrickComplete() {
+		return historySize == trickStart;
+	}
+
+	public boolean isRoundOver() {
+		return isTrickComplete() && hands[leader].isEmpty();
+	}
+
+	public int getNumTricks() {
+		return numTricks;
+	}
+
+	/**
+	 * The points won so far by the given player
+	 */
+	public int getPoints(int player) {
+		return points[player];
+	}
+
+	/**
+	 * The id of the card called for partner, or -1 if there is no call
+	 * @return
+	 */
+	public int getCalledId() {
+		return calledId;
+	}
+
+	/**
+	 * The number of copies of the called card still to be played before the partner is revealed
+	 * @return
+	 */
+	public int getCopiesToReveal() {
+		return copiesToReveal;
+	}
+
+	/**
+	 * The revealed partner, or -1 if not yet revealed
+	 * @return
+	 */
+	public int getPartner() {
+		return partner;
+	}
+}
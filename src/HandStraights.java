@@ -0,0 +1,117 @@
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The straights contained in a hand, computed from a single histogram of the hand.  Build once per
+ * hand and query for as many suits and multiplicities as needed; each query walks the ranks of one
+ * suit and never rescans or copies the hand.
+ */
+public class HandStraights {
+	
+	private static final int NUM_IDS = 54;
+	
+	private final TrumpOrder order;
+	// Number of copies of each card id in the hand
+	private final int[] counts = new int[NUM_IDS];
+	// Index in the hand of the first copy of each id, or -1
+	private final int[] firstIndex = new int[NUM_IDS];
+	// Index in the hand of the next copy of the same id as each index, or -1
+	private final int[] nextIndex;
+	
+	public HandStraights(List<Card> cards, TrumpOrder order) {
+		this.order = order;
+		this.nextIndex = new int[cards.size()];
+		int[] lastIndex = new int[NUM_IDS];
+		for (int id = 0; id < NUM_IDS; id++) {
+			firstIndex[id] = -1;
+		}
+		for (int i = 0; i < cards.size(); i++) {
+			int id = cards.get(i).getId();
+			nextIndex[i] = -1;
+			if (counts[id] == 0) {
+				firstIndex[id] = i;
+			} else {
+				nextIndex[lastIndex[id]] = i;
+			}
+			lastIndex[id] = i;
+			counts[id]++;
+		}
+	}
+	
+	/**
+	 * Returns the number of disjoint groups of multiplicity identical cards of the given suit.
+	 * @param suit
+	 * @param multiplicity
+	 * @return
+	 */
+	public int countGroups(Suit suit, int multiplicity) {
+		int groups = 0;
+		for (int id : order.getSuitIds(suit)) {
+			groups += counts[id] / multiplicity;
+		}
+		return groups;
+	}
+	
+	/**
+	 * Partitions the cards of the given suit into straights of the given multiplicity, as 
+	 * {@link GameRules#partitionCardsToStraights} does.  Straights are found by repeatedly taking
+	 * the longest runs of consecutive ranks from lowest to highest, with one group per rank in each 
+	 * pass; groups at a rank are taken from the lowest id first.  Every index appears at most once.
+	 * 
+	 * @param suit
+	 * @param multiplicity The multiplicity of the straight, > 1
+	 * @return A {@link CardSelection} of each straight
+	 */
+	public long[] getStraights(Suit suit, int multiplicity) {
+		int[] ids = order.getSuitIds(suit);
+		
+		// Groups available at each rank, and the passes needed to take all of them
+		int[] rankGroups = new int[Rank.values().length];
+		int maxGroups = 0;
+		for (int id : ids) {
+			int rank = order.getRank(id).ordinal();
+			rankGroups[rank] += counts[id] / multiplicity;
+			maxGroups = Math.max(maxGroups, rankGroups[rank]);
+		}
+		if (maxGroups == 0) return new long[0];
+		// Straights in one pass are separated by missing ranks
+		long[] straights = new long[maxGroups * ((rankGroups.length + 1) / 2)];
+		int numStraights = 0;
+		
+		// Copies of each id not yet placed in a straight, and where the next copy is in the hand
+		int[] remaining = new int[NUM_IDS];
+		int[] cursor = new int[NUM_IDS];
+		for (int id : ids) {
+			remaining[id] = counts[id];
+			cursor[id] = firstIndex[id];
+		}
+		
+		for (int pass = 0; pass < maxGroups; pass++) {
+			long straight = CardSelection.NONE;
+			int i = 0;
+			for (int rank = 0; rank < rankGroups.length; rank++) {
+				// Skip over the ids of lower ranks, which are already handled
+				while (i < ids.length && order.getRank(ids[i]).ordinal() < rank) i++;
+				if (rankGroups[rank] <= pass) {
+					if (straight != CardSelection.NONE) {
+						straights[numStraights++] = straight;
+						straight = CardSelection.NONE;
+					}
+					continue;
+				}
+				
+				int j = i;
+				while (remaining[ids[j]] < multiplicity) j++;
+				int id = ids[j];
+				for (int k = 0; k < multiplicity; k++) {
+					straight = CardSelection.with(straight, cursor[id]);
+					cursor[id] = nextIndex[cursor[id]];
+				}
+				remaining[id] -= multiplicity;
+			}
+			if (straight != CardSelection.NONE) straights[numStraights++] = straight;
+		}
+		
+		return Arrays.copyOf(straights, numStraights);
+	}
+}
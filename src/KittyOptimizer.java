@@ -0,0 +1,359 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Chooses the cards the host buries in the kitty by searching for the discard that leaves the
+ * strongest hand under a simple hand-strength evaluator.
+ *
+ * The evaluator scores a hand suit by suit:  a value for each card (every trump, and the high cards of
+ * the other suits), a bonus for each pair or triple and for each pair of consecutive ranks that would
+ * form a tractor, and a bonus for each other suit left void or with a single card.  Points buried
+ * count against the discard, since the kitty is scored to the attackers if they win the last trick.
+ * Because the score is a sum over suits, each suit is searched on its own for the cheapest way to
+ * discard each number of its cards, the suits in parallel, and the best split of the kitty between
+ * the suits is then found exactly.  The search of a suit prunes every branch that, counting the
+ * cheapest cards it could still add, costs as much as the best discard found of each larger size, and
+ * stops after a budget of nodes, keeping the best found so far; a greedy discard of the cheapest cards
+ * is always available.  Since the node budget does not depend on the speed of the machine, the same
+ * hand always gets the same kitty.  An optional time budget caps the search as well, at the cost of
+ * that guarantee.
+ */
+public class KittyOptimizer {
+
+	private static final int NUM_RANKS = Rank.values().length;
+	// Weights of the evaluator
+	private static final int POINT_WEIGHT = 1;
+	private static final int TRUMP_VALUE = 10;
+	private static final int PAIR_VALUE = 6;
+	private static final int TRACTOR_VALUE = 8;
+	private static final int VOID_VALUE = 20;
+	private static final int SINGLETON_VALUE = 6;
+	// The value of a card of each rank of a suit that is not trump
+	private static final int[] OFF_SUIT_VALUES = new int[NUM_RANKS];
+	// The deadline, if any, is checked once per this many nodes
+	private static final int CHECK_INTERVAL = 256;
+
+	static {
+		OFF_SUIT_VALUES[Rank.QUEEN.ordinal()] = 2;
+		OFF_SUIT_VALUES[Rank.KING.ordinal()] = 5;
+		OFF_SUIT_VALUES[Rank.ACE.ordinal()] = 8;
+	}
+
+	/**
+	 * Returns the cards to bury that leave the strongest hand, searching at most the given number of
+	 * nodes in each suit.  The result depends only on the arguments.
+	 * @param handPlusKitty
+	 * @param kittySize
+	 * @param order
+	 * @param maxNodes The nodes of each suit's search after which it keeps the best discard found so far
+	 * @return A {@link CardSelection} of kittySize cards
+	 */
+	public static long choose(List<Card> handPlusKitty, int kittySize, TrumpOrder order, long maxNodes) {
+		return choose(handPlusKitty, kittySize, order, maxNodes, 0);
+	}
+
+	/**
+	 * Returns the cards to bury that leave the strongest hand, searching at most the given number of
+	 * nodes in each suit and for at most the given time.  Each suit is searched as a separate fork join
+	 * task, in the pool of the calling thread if it is a fork join worker, or the common pool otherwise.
+	 * @param handPlusKitty
+	 * @param kittySize
+	 * @param order
+	 * @param maxNodes The nodes of each suit's search after which it keeps the best discard found so far
+	 * @param budgetNanos The time after which the search returns the best discard found so far, or 0 for
+	 *        no limit
+	 * @return A {@link CardSelection} of kittySize cards
+	 */
+	public static long choose(List<Card> handPlusKitty, int kittySize, TrumpOrder order, long maxNodes, long budgetNanos) {
+		long deadline = budgetNanos > 0 ? System.nanoTime() + budgetNanos : 0;
+		int[] counts = new int[CardHand.NUM_IDS];
+		for (int i = 0; i < handPlusKitty.size(); i++) {
+			counts[handPlusKitty.get(i).getId()]++;
+		}
+		Suit[] suits = Suit.values();
+		List<SuitSearch> searches = new ArrayList<>();
+		SuitSearch[] bySuit = new SuitSearch[suits.length];
+		for (Suit suit : suits) {
+			SuitSearch search = new SuitSearch(suit, counts, kittySize, order, maxNodes, budgetNanos > 0, deadline);
+			bySuit[suit.ordinal()] = search;
+			if (search.numIds > 0) searches.add(search);
+		}
+		ForkJoinTask.invokeAll(searches);
+
+		// best[j] is the highest score of discarding j cards from the suits so far, and split[s][j] the
+		// number of those taken from suit s
+		long[] best = new long[kittySize + 1];
+		int[][] split = new int[suits.length][kittySize + 1];
+		Arrays.fill(best, Long.MIN_VALUE);
+		best[0] = 0;
+		for (SuitSearch search : bySuit) {
+			long[] next = new long[kittySize + 1];
+			Arrays.fill(next, Long.MIN_VALUE);
+			for (int j = 0; j <= kittySize; j++) {
+				if (best[j] == Long.MIN_VALUE) continue;
+				for (int d = 0; j + d <= kittySize && d <= search.size; d++) {
+					long score = best[j] + search.getShapeValue(search.size - d) - search.bestLoss[d];
+					if (score > next[j + d]) {
+						next[j + d] = score;
+						split[search.suit.ordinal()][j + d] = d;
+					}
+				}
+			}
+			best = next;
+		}
+
+		// Recover the discard of each id, then take its copies from the end of the hand
+		int[] discard = new int[CardHand.NUM_IDS];
+		for (int s = suits.length - 1, j = kittySize; s >= 0; s--) {
+			SuitSearch search = bySuit[s];
+			int d = split[s][j];
+			for (int i = 0; i < search.numIds; i++) {
+				discard[search.ids[i]] = search.bestDiscards[d][i];
+			}
+			j -= d;
+		}
+		long selection = CardSelection.NONE;
+		for (int i = handPlusKitty.size() - 1; i >= 0; i--) {
+			int id = handPlusKitty.get(i).getId();
+			if (discard[id] > 0) {
+				discard[id]--;
+				selection = CardSelection.with(selection, i);
+			}
+		}
+		return selection;
+	}
+
+	/**
+	 * Returns the evaluator's score of the hand left after burying the selected cards, less the points
+	 * buried.  The kitty chosen by {@link #choose(List, int, TrumpOrder, long)} maximises this score
+	 * if its search finishes within the node budget.
+	 * @param handPlusKitty
+	 * @param kitty A {@link CardSelection} of the cards buried
+	 * @param order
+	 * @return
+	 */
+	public static long score(List<Card> handPlusKitty, long kitty, TrumpOrder order) {
+		int[] counts = new int[CardHand.NUM_IDS];
+		long score = 0;
+		for (int i = 0; i < handPlusKitty.size(); i++) {
+			Card card = handPlusKitty.get(i);
+			if (CardSelection.contains(kitty, i)) {
+				score -= POINT_WEIGHT * card.getPointValue();
+			} else {
+				counts[card.getId()]++;
+			}
+		}
+		for (Suit suit : Suit.values()) {
+			int[] ids = order.getSuitIds(suit);
+			int size = 0;
+			for (int id : ids) {
+				score += counts[id] * getCardValue(id, order);
+				size += counts[id];
+			}
+			score += getGroupValue(ids, counts, order) + getShapeValue(suit, size);
+		}
+		return score;
+	}
+
+	private static int getCardValue(int id, TrumpOrder order) {
+		int rank = order.getRank(id).ordinal();
+		return order.isTrump(id) ? TRUMP_VALUE + rank : OFF_SUIT_VALUES[rank];
+	}
+
+	/**
+	 * Returns the value of the groups and tractors of the given counts of the ids of one suit.
+	 */
+	private static int getGroupValue(int[] ids, int[] counts, TrumpOrder order) {
+		// The ids are in increasing order of rank, so take each rank in turn with the most copies of any
+		// of its cards, which makes a tractor with the rank before if both have at least two
+		int value = 0;
+		int lastRank = -2;
+		int lastMost = 0;
+		for (int i = 0; i < ids.length;) {
+			int rank = order.getRank(ids[i]).ordinal();
+			int most = 0;
+			for (; i < ids.length && order.getRank(ids[i]).ordinal() == rank; i++) {
+				int count = counts[ids[i]];
+				if (count >= 2) value += PAIR_VALUE * (count - 1);
+				most = Math.max(most, count);
+			}
+			int run = Math.min(most, lastMost);
+			if (rank == lastRank + 1 && run >= 2) value += TRACTOR_VALUE * (run - 1);
+			lastRank = rank;
+			lastMost = most;
+		}
+		return value;
+	}
+
+	private static int getShapeValue(Suit suit, int size) {
+		if (suit == Suit.TRUMP) return 0;
+		if (size == 0) return VOID_VALUE;
+		return size == 1 ? SINGLETON_VALUE : 0;
+	}
+
+	/**
+	 * Finds the cheapest discard of each number of cards of one suit, where the cost is the value of the
+	 * cards, groups and tractors lost plus the points buried.
+	 */
+	private static class SuitSearch extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final Suit suit;
+		private final TrumpOrder order;
+		private final long maxNodes;
+		private final boolean timed;
+		private final long deadline;
+		// The ids of the suit in the hand, in increasing order of rank, their counts, and the cost of
+		// burying one copy of each
+		private final int[] ids;
+		private final int numIds;
+		private final int[] counts;
+		private final int[] cardCosts;
+		// The number of cards of the suit and the most that can be buried
+		private final int size;
+		private final int maxDiscard;
+		private final int fullGroupValue;
+		// By number of cards discarded:  the lowest cost found and the copies of each id discarded
+		private final long[] bestLoss;
+		private final int[][] bestDiscards;
+		// The search's working state:  counts kept of every id, and copies discarded of each of ids
+		private final int[] kept = new int[CardHand.NUM_IDS];
+		private final int[] discarded;
+		// The order in which ids are tried, cheapest first
+		private final int[] searchOrder;
+		private long nodes;
+		private boolean stopped;
+
+		SuitSearch(Suit suit, int[] handCounts, int kittySize, TrumpOrder order, long maxNodes, boolean timed, long deadline) {
+			this.suit = suit;
+			this.order = order;
+			this.maxNodes = maxNodes;
+			this.timed = timed;
+			this.deadline = deadline;
+			int[] suitIds = order.getSuitIds(suit);
+			int n = 0;
+			for (int id : suitIds) {
+				if (handCounts[id] > 0) n++;
+			}
+			ids = new int[n];
+			counts = new int[n];
+			cardCosts = new int[n];
+			numIds = n;
+			n = 0;
+			int cards = 0;
+			for (int id : suitIds) {
+				if (handCounts[id] == 0) continue;
+				ids[n] = id;
+				counts[n] = handCounts[id];
+				cardCosts[n] = getCardValue(id, order) + POINT_WEIGHT * Card.of(id).getPointValue();
+				kept[id] = handCounts[id];
+				cards += handCounts[id];
+				n++;
+			}
+			size = cards;
+			maxDiscard = Math.min(size, kittySize);
+			fullGroupValue = getGroupValue(ids, kept, order);
+			bestLoss = new long[maxDiscard + 1];
+			bestDiscards = new int[maxDiscard + 1][numIds];
+			discarded = new int[numIds];
+
+			searchOrder = new int[numIds];
+			for (int i = 0; i < numIds; i++) {
+				searchOrder[i] = i;
+			}
+			// Insertion sort by cost, which is stable, so equal cards are tried lowest rank first
+			for (int i = 1; i < numIds; i++) {
+				int x = searchOrder[i];
+				int j = i - 1;
+				for (; j >= 0 && cardCosts[searchOrder[j]] > cardCosts[x]; j--) {
+					searchOrder[j + 1] = searchOrder[j];
+				}
+				searchOrder[j + 1] = x;
+			}
+		}
+
+		int getShapeValue(int remaining) {
+			return KittyOptimizer.getShapeValue(suit, remaining);
+		}
+
+		@Override
+		protected void compute() {
+			seedGreedy();
+			search(0, 0, 0);
+		}
+
+		/**
+		 * Starts each size from discarding the cheapest copies one at a time, so that the search has a
+		 * bound to prune against from the start and an answer if it runs out of nodes.
+		 */
+		private void seedGreedy() {
+			long cost = 0;
+			int d = 0;
+			bestLoss[0] = 0;
+			for (int i = 0; i < numIds && d < maxDiscard; i++) {
+				int index = searchOrder[i];
+				for (int c = 0; c < counts[index] && d < maxDiscard; c++) {
+					discarded[index]++;
+					kept[ids[index]]--;
+					cost += cardCosts[index];
+					d++;
+					bestLoss[d] = cost + fullGroupValue - getGroupValue(ids, kept, order);
+					System.arraycopy(discarded, 0, bestDiscards[d], 0, numIds);
+				}
+			}
+			for (int i = 0; i < numIds; i++) {
+				discarded[i] = 0;
+				kept[ids[i]] = counts[i];
+			}
+		}
+
+		/**
+		 * Tries discarding copies of the ids from position start of the search order onward, having
+		 * already discarded d cards at the given cost of the cards alone.
+		 */
+		private void search(int start, int d, long cardCost) {
+			if (stopped) return;
+			if (++nodes > maxNodes || timed && nodes % CHECK_INTERVAL == 0 && System.nanoTime() - deadline > 0) {
+				stopped = true;
+				return;
+			}
+			long loss = cardCost + fullGroupValue - getGroupValue(ids, kept, order);
+			if (loss < bestLoss[d]) {
+				bestLoss[d] = loss;
+				System.arraycopy(discarded, 0, bestDiscards[d], 0, numIds);
+			}
+			// Discarding more never costs less than this plus the cheapest cards left to try, so stop once
+			// that is no better than the best discard of any larger size
+			boolean improvable = false;
+			long extra = 0;
+			for (int i = start, e = d; i < numIds && e < maxDiscard && !improvable; i++) {
+				int index = searchOrder[i];
+				for (int c = 0; c < counts[index] && e < maxDiscard; c++) {
+					extra += cardCosts[index];
+					e++;
+					if (loss + extra < bestLoss[e]) {
+						improvable = true;
+						break;
+					}
+				}
+			}
+			if (!improvable) return;
+			for (int i = start; i < numIds; i++) {
+				int index = searchOrder[i];
+				int id = ids[index];
+				for (int c = 1; c <= counts[index] && d + c <= maxDiscard; c++) {
+					discarded[index] = c;
+					kept[id] = counts[index] - c;
+					search(i + 1, d + c, cardCost + (long) c * cardCosts[index]);
+				}
+				discarded[index] = 0;
+				kept[id] = counts[index];
+				if (stopped) return;
+			}
+		}
+	}
+}
@@ -0,0 +1,138 @@
+import java.util.List;
+
+/**
+ * The engine's copy of the {@link PublicKnowledge} of a round, updated once per play.  Each update only
+ * touches the cards of the play, and every query reads a single counter or flag.
+ */
+public class KnowledgeTracker implements PublicKnowledge {
+
+	private static final int NUM_SUITS = Suit.values().length;
+
+	private final int numPlayers;
+	private final int numDecks;
+	private TrumpOrder order;
+	// Copies of each card id not yet played
+	private final int[] remaining = new int[CardHand.NUM_IDS];
+	// Cards and points not yet played, by suit
+	private final int[] suitRemaining = new int[NUM_SUITS];
+	private final int[] suitPoints = new int[NUM_SUITS];
+	private int points;
+	// Bit s of each player's flags is set once the player is known to be void in suit s
+	private final int[] voids;
+	// Suit and size of the current trick's lead
+	private Suit leadSuit;
+	private int leadSize;
+
+	public KnowledgeTracker(int numPlayers, int numDecks) {
+		this.numPlayers = numPlayers;
+		this.numDecks = numDecks;
+		this.voids = new int[numPlayers];
+	}
+
+	/**
+	 * Starts a new round with every card remaining.
+	 * @param order The trump of the round
+	 */
+	public void reset(TrumpOrder order) {
+		this.order = order;
+		for (int i = 0; i < NUM_SUITS; i++) {
+			suitRemaining[i] = 0;
+			suitPoints[i] = 0;
+		}
+		points = 0;
+		for (int id = 0; id < CardHand.NUM_IDS; id++) {
+			remaining[id] = numDecks;
+			int suit = order.getSuit(id).ordinal();
+			int cardPoints = numDecks * Card.of(id).getPointValue();
+			suitRemaining[suit] += numDecks;
+			suitPoints[suit] += cardPoints;
+			points += cardPoints;
+		}
+		for (int i = 0; i < numPlayers; i++) {
+			voids[i] = 0;
+		}
+		leadSuit = null;
+	}
+
+	/**
+	 * Returns an independent copy of the knowledge so far, which later plays do not change.
+	 * @return
+	 */
+	public KnowledgeTracker copy() {
+		KnowledgeTracker copy = new KnowledgeTracker(numPlayers, numDecks);
+		copy.order = order;
+		System.arraycopy(remaining, 0, copy.remaining, 0, remaining.length);
+		System.arraycopy(suitRemaining, 0, copy.suitRemaining, 0, NUM_SUITS);
+		System.arraycopy(suitPoints, 0, copy.suitPoints, 0, NUM_SUITS);
+		copy.points = points;
+		System.arraycopy(voids, 0, copy.voids, 0, numPlayers);
+		copy.leadSuit = leadSuit;
+		copy.leadSize = leadSize;
+		return copy;
+	}
+	
+	/**
+	 * Records the lead of a trick.
+	 * @param cards
+	 */
+	public void recordLead(List<Card> cards) {
+		leadSuit = order.getSuit(cards.get(0));
+		leadSize = cards.size();
+		remove(cards);
+	}
+
+	/**
+	 * Records a play following the current lead, marking the player void in the lead suit if they
+	 * could not follow it with every card.
+	 * @param playerId
+	 * @param cards
+	 */
+	public void recordPlay(int playerId, List<Card> cards) {
+		int following = remove(cards);
+		if (following < leadSize) voids[playerId] |= 1 << leadSuit.ordinal();
+	}
+
+	/**
+	 * Removes the played cards from the counts.
+	 * @return The number of cards played of the lead suit
+	 */
+	private int remove(List<Card> cards) {
+		int following = 0;
+		for (int i = 0; i < cards.size(); i++) {
+			Card card = cards.get(i);
+			Suit suit = order.getSuit(card);
+			int cardPoints = card.getPointValue();
+			remaining[card.getId()]--;
+			suitRemaining[suit.ordinal()]--;
+			suitPoints[suit.ordinal()] -= cardPoints;
+			points -= cardPoints;
+			if (suit == leadSuit) following++;
+		}
+		return following;
+	}
+
+	@Override
+	public int getRemaining(int id) {
+		return remaining[id];
+	}
+
+	@Override
+	public int getRemaining(Suit suit) {
+		return suitRemaining[suit.ordinal()];
+	}
+
+	@Override
+	public int getPointsRemaining(Suit suit) {
+		return suitPoints[suit.ordinal()];
+	}
+
+	@Override
+	public int getPointsRemaining() {
+		return points;
+	}
+
+	@Override
+	public boolean isVoid(int playerId, Suit suit) {
+		return (voids[playerId] >>> suit.ordinal() & 1) != 0;
+	}
+}
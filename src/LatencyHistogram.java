@@ -0,0 +1,86 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread-safe histogram of durations in nanoseconds with logarithmic buckets:  each power of two is
+ * split into SUB_BUCKETS buckets, so a recorded value is known to within 1/SUB_BUCKETS of itself (four
+ * significant bits) while the whole range of a long fits in a few hundred counters.  Recording is a
+ * couple of atomic adds.
+ */
+public class LatencyHistogram {
+
+	static final int SUB_BUCKET_BITS = 3;
+	static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	static final int NUM_BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(NUM_BUCKETS);
+	private final AtomicLong count = new AtomicLong();
+	private final AtomicLong total = new AtomicLong();
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * Adds one duration to the histogram
+	 * @param nanos
+	 */
+	public void record(long nanos) {
+		if (nanos < 0) nanos = 0;
+		counts.incrementAndGet(bucket(nanos));
+		count.incrementAndGet();
+		total.addAndGet(nanos);
+		long previous;
+		while (nanos > (previous = max.get()) && !max.compareAndSet(previous, nanos));
+	}
+
+	public long getCount() {
+		return count.get();
+	}
+
+	public long getTotalNanos() {
+		return total.get();
+	}
+
+	public double getMeanNanos() {
+		long n = count.get();
+		return n == 0 ? 0 : (double) total.get() / n;
+	}
+
+	public long getMaxNanos() {
+		return max.get();
+	}
+
+	/**
+	 * Returns an upper bound on the given fraction of the recorded durations, accurate to the width
+	 * of a bucket:  at most 1/SUB_BUCKETS more than the exact percentile.
+	 * @param fraction Between 0 and 1
+	 * @return
+	 */
+	public long getPercentileNanos(double fraction) {
+		long n = count.get();
+		if (n == 0) return 0;
+		long target = Math.max(1, (long) Math.ceil(fraction * n));
+		long seen = 0;
+		for (int i = 0; i < NUM_BUCKETS; i++) {
+			seen += counts.get(i);
+			if (seen >= target) return Math.min(upperBound(i), max.get());
+		}
+		return max.get();
+	}
+
+	static int bucket(long nanos) {
+		if (nanos < SUB_BUCKETS) return (int) nanos;
+		int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+		int sub = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+	}
+
+	/**
+	 * Returns the largest duration counted in the given bucket
+	 */
+	static long upperBound(int bucket) {
+		if (bucket < SUB_BUCKETS) return bucket;
+		int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+		long sub = bucket % SUB_BUCKETS;
+		long width = 1L << (exponent - SUB_BUCKET_BITS);
+		return ((SUB_BUCKETS + sub) << (exponent - SUB_BUCKET_BITS)) + width - 1;
+	}
+}
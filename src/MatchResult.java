@@ -0,0 +1,44 @@
+/**
+ * Container class for the outcome of a match, as returned by the game engine.
+ */
+public class MatchResult {
+	private final int numRounds;
+	// The level each player finished on; a level past ACE means the player won the match
+	private final int[] levels;
+	// Whether each player won the match; all false if the match was stopped before it ended
+	private final boolean[] winners;
+	
+	public MatchResult(int numRounds, int[] levels, boolean[] winners) {
+		this.numRounds = numRounds;
+		this.levels = levels;
+		this.winners = winners;
+	}
+
+	public int getNumRounds() {
+		return numRounds;
+	}
+
+	/**
+	 * Returns the number of levels the given player advanced past TWO
+	 * @param playerId
+	 * @return
+	 */
+	public int getLevel(int playerId) {
+		return levels[playerId];
+	}
+
+	public boolean isWinner(int playerId) {
+		return winners[playerId];
+	}
+
+	/**
+	 * Returns whether the match ended, rather than being stopped after a maximum number of rounds
+	 * @return
+	 */
+	public boolean isFinished() {
+		for (boolean winner : winners) {
+			if (winner) return true;
+		}
+		return false;
+	}
+}
@@ -0,0 +1,114 @@
+/**
+ * Running results of a match between two entrants of a tournament, with a sequential probability ratio
+ * test of which entrant is stronger.  Each deal is played once per seating, and scores the difference
+ * between the average score per seat of the first entrant and of the second, where each seat scores its
+ * side's result:  the attackers' points over their threshold if it attacked, or the negation if it was
+ * on the host's team.
+ * A deal is a win for the first entrant if the difference is positive.
+ *
+ * The test compares the hypothesis that the first entrant wins P0 of the decisive deals against the
+ * hypothesis that it wins P1 of them, so it stops early when either entrant is clearly stronger.
+ */
+public class MatchStats {
+
+	public enum Decision { UNDECIDED, FIRST_STRONGER, SECOND_STRONGER }
+
+	private static final double P0 = 0.45;
+	private static final double P1 = 0.55;
+	// Probabilities of deciding wrongly in favour of each entrant
+	private static final double ALPHA = 0.05;
+	private static final double BETA = 0.05;
+	private static final double LOWER_BOUND = Math.log(BETA / (1 - ALPHA));
+	private static final double UPPER_BOUND = Math.log((1 - BETA) / ALPHA);
+
+	private final String first;
+	private final String second;
+	private long numDeals;
+	private long wins;
+	private long losses;
+	private double sumDiff;
+	private double sumDiffSquared;
+
+	public MatchStats(String first, String second) {
+		this.first = first;
+		this.second = second;
+	}
+
+	/**
+	 * Adds the outcome of one deal
+	 * @param diff Score per seat of the first entrant minus that of the second
+	 */
+	public void add(double diff) {
+		numDeals++;
+		if (diff > 0) wins++;
+		else if (diff < 0) losses++;
+		sumDiff += diff;
+		sumDiffSquared += diff * diff;
+	}
+
+	public String getFirst() {
+		return first;
+	}
+
+	public String getSecond() {
+		return second;
+	}
+
+	public long getNumDeals() {
+		return numDeals;
+	}
+
+	public long getWins() {
+		return wins;
+	}
+
+	public long getLosses() {
+		return losses;
+	}
+
+	public long getTies() {
+		return numDeals - wins - losses;
+	}
+
+	/**
+	 * The share of deals won by the first entrant, counting ties as half
+	 */
+	public double getWinRate() {
+		return numDeals == 0 ? 0.5 : (wins + 0.5 * getTies()) / numDeals;
+	}
+
+	public double getAverageDiff() {
+		return numDeals == 0 ? 0 : sumDiff / numDeals;
+	}
+
+	/**
+	 * The standard error of the average point difference
+	 */
+	public double getDiffError() {
+		if (numDeals < 2) return Double.POSITIVE_INFINITY;
+		double mean = getAverageDiff();
+		double variance = (sumDiffSquared - numDeals * mean * mean) / (numDeals - 1);
+		return Math.sqrt(Math.max(variance, 0) / numDeals);
+	}
+
+	/**
+	 * The log-likelihood ratio of P1 against P0 over the decisive deals so far
+	 */
+	public double getLogLikelihoodRatio() {
+		return wins * Math.log(P1 / P0) + losses * Math.log((1 - P1) / (1 - P0));
+	}
+
+	public Decision getDecision() {
+		double llr = getLogLikelihoodRatio();
+		if (llr >= UPPER_BOUND) return Decision.FIRST_STRONGER;
+		if (llr <= LOWER_BOUND) return Decision.SECOND_STRONGER;
+		return Decision.UNDECIDED;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s vs %s: %d deals, %d-%d-%d (%.1f%%), %+.2f +/- %.2f points/seat, LLR %.2f [%.2f, %.2f] %s",
+				first, second, numDeals, wins, losses, getTies(), 100 * getWinRate(), getAverageDiff(), getDiffError(),
+				getLogLikelihoodRatio(), LOWER_BOUND, UPPER_BOUND, getDecision());
+	}
+}
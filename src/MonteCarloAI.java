@@ -0,0 +1,530 @@
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Player that chooses leads and plays with information-set Monte Carlo tree search.  Each iteration
+ * deals the cards this player has not seen into a random determinization consistent with what it has
+ * seen (hand sizes, cards played, and suits other players have shown to be void in), descends a tree
+ * shared by all determinizations using only the moves legal in that deal, and plays the rest of the
+ * round out with random legal moves.  Independent trees are searched on several threads and their root
+ * visit counts merged.  Drawing, the kitty and the partner call are left to CommonSenseAI.  Each search
+ * tree gets its own generator split from the one the engine gives this player every round, so a search
+ * limited by iterations rather than time is reproducible.
+ */
+public class MonteCarloAI extends Player {
+
+	// Exploration constant for UCB selection; rewards are in [0, 1]
+	private static final double EXPLORATION = 0.7;
+	// Most distinct follows considered at any node, since the full set can be huge
+	private static final int MAX_FOLLOWS = 24;
+	// Attempts to deal a determinization respecting every known void before voids are ignored
+	private static final int MAX_DEAL_ATTEMPTS = 20;
+
+	private static final ExecutorService SEARCH_POOL = Executors.newFixedThreadPool(
+			Runtime.getRuntime().availableProcessors(), r -> {
+				Thread thread = new Thread(r, "MonteCarloAI search");
+				thread.setDaemon(true);
+				return thread;
+			});
+
+	private final int numThreads;
+	private final long timeBudgetNanos;
+	private final int iterationBudget;
+	private SplittableRandom random;
+	private final CommonSenseAI commonSense;
+
+	// What this player has seen during the current round
+	private int numPlayers;
+	private int numDecks;
+	// Every card played in completed tricks
+	private CardHand played;
+	// voids[player][suit] is true once the player has failed to follow the suit
+	private boolean[][] voids;
+	// The kitty this player buried, if host
+	private CardHand buriedKitty;
+	// Copies of the called card played so far, and the partner once revealed (or -1)
+	private int calledCopiesPlayed;
+	private int partner;
+
+	/**
+	 * Creates a player searching on every core for up to 200ms per decision.
+	 * @param id
+	 */
+	public MonteCarloAI(int id) {
+		this(id, Runtime.getRuntime().availableProcessors(), 200, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * @param id
+	 * @param numThreads Number of independent trees searched in parallel
+	 * @param timeBudgetMillis Time allowed for each decision, or 0 for no limit so that only the iteration 
+	 *                         budget, and not the speed of the machine, decides the search
+	 * @param iterationBudget Iterations allowed for each tree in each decision
+	 */
+	public MonteCarloAI(int id, int numThreads, long timeBudgetMillis, int iterationBudget) {
+		super(id);
+		this.numThreads = numThreads;
+		this.timeBudgetNanos = timeBudgetMillis * 1000000L;
+		this.iterationBudget = iterationBudget;
+		this.random = new SplittableRandom();
+		this.commonSense = new CommonSenseAI(id);
+	}
+
+	@Override
+	void initializeRound(GameInfo gameInfo) {
+		numPlayers = gameInfo.getNumPlayers();
+		numDecks = gameInfo.getNumDecks();
+		played = new CardHand(numDecks);
+		voids = new boolean[numPlayers][Suit.values().length];
+		buriedKitty = null;
+		calledCopiesPlayed = 0;
+		partner = -1;
+		commonSense.initializeRound(gameInfo);
+	}
+
+	@Override
+	void setRandom(SplittableRandom random) {
+		this.random = random;
+	}
+
+	@Override
+	int draw(Card newCard, DeclarationState declarations) {
+		return commonSense.draw(newCard, declarations);
+	}
+
+	@Override
+	long handleKitty(List<Card> handPlusKitty, int kittySize, GameInfo gameInfo) {
+		long kitty = commonSense.handleKitty(handPlusKitty, kittySize, gameInfo);
+		buriedKitty = new CardHand(gameInfo.getNumDecks());
+		buriedKitty.setCards(handPlusKitty, kitty);
+		return kitty;
+	}
+
+	@Override
+	PartnerCall callPartner(List<Card> hand, List<Card> kitty, GameInfo gameInfo) {
+		return commonSense.callPartner(hand, kitty, gameInfo);
+	}
+
+	@Override
+	long lead(List<Card> hand, GameInfo gameInfo) {
+		CardHand myHand = CardHand.fromCards(hand, gameInfo.getNumDecks());
+		List<CardHand> leads = GameRules.getLegalLeads(myHand, gameInfo.getTrumpOrder());
+		if (leads.size() == 1) return GameRules.cardsToIndices(hand, leads.get(0));
+		return GameRules.cardsToIndices(hand, search(myHand, new ArrayList<>(), gameInfo));
+	}
+
+	@Override
+	long play(List<List<Card>> previousPlays, List<Card> hand, GameInfo gameInfo) {
+		CardHand myHand = CardHand.fromCards(hand, gameInfo.getNumDecks());
+		List<CardHand> trick = new ArrayList<>();
+		for (List<Card> play : previousPlays) {
+			trick.add(CardHand.fromCards(play, gameInfo.getNumDecks()));
+		}
+
+		Iterator<CardHand> plays = GameRules.getLegalPlays(trick.get(0), myHand, gameInfo.getTrumpOrder());
+		CardHand onlyPlay = plays.next();
+		if (!plays.hasNext()) return GameRules.cardsToIndices(hand, onlyPlay);
+		return GameRules.cardsToIndices(hand, search(myHand, trick, gameInfo));
+	}
+
+	@Override
+	void trickComplete(List<List<Card>> plays, int leadPlayerId, int winnerId, GameInfo gameInfo) {
+		TrumpOrder order = gameInfo.getTrumpOrder();
+		PartnerCall call = gameInfo.getPartnerCall();
+		Suit suit = order.getSuit(plays.get(0).get(0));
+		for (int i = 0; i < plays.size(); i++) {
+			int player = (leadPlayerId + i) % numPlayers;
+			int suitCount = 0;
+			for (Card c : plays.get(i)) {
+				played.add(c);
+				if (order.getSuit(c) == suit) suitCount++;
+				if (call != null && c.equals(call.getCard())) {
+					calledCopiesPlayed++;
+					if (calledCopiesPlayed == call.getInstance() && partner < 0) partner = player;
+				}
+			}
+			if (suitCount < plays.get(0).size()) voids[player][suit.ordinal()] = true;
+		}
+	}
+
+	/**
+	 * Searches for the best move for this player given the current trick, using every thread.
+	 * @param myHand
+	 * @param trick The plays made so far in the current trick
+	 * @param gameInfo
+	 * @return
+	 */
+	private CardHand search(CardHand myHand, List<CardHand> trick, GameInfo gameInfo) {
+		Observation observation = new Observation(myHand, trick, gameInfo);
+		long deadline = timeBudgetNanos > 0 ? System.nanoTime() + timeBudgetNanos : Long.MAX_VALUE;
+
+		List<Future<Map<CardHand, Integer>>> futures = new ArrayList<>();
+		for (int t = 1; t < numThreads; t++) {
+			SplittableRandom treeRandom = random.split();
+			futures.add(SEARCH_POOL.submit(() -> new Search(observation, treeRandom).run(deadline)));
+		}
+		Map<CardHand, Integer> visits = new Search(observation, random.split()).run(deadline);
+		for (Future<Map<CardHand, Integer>> future : futures) {
+			try {
+				for (Map.Entry<CardHand, Integer> entry : future.get().entrySet()) {
+					visits.merge(entry.getKey(), entry.getValue(), Integer::sum);
+				}
+			} catch (InterruptedException | ExecutionException e) {
+				throw new IllegalStateException("Search failed", e);
+			}
+		}
+
+		CardHand best = null;
+		int bestVisits = -1;
+		for (Map.Entry<CardHand, Integer> entry : visits.entrySet()) {
+			if (entry.getValue() > bestVisits) {
+				best = entry.getKey();
+				bestVisits = entry.getValue();
+			}
+		}
+		// No iteration finished within the budget, so fall back to the move the engine would choose
+		if (best == null) {
+			TrumpOrder order = gameInfo.getTrumpOrder();
+			return trick.isEmpty() ? GameRules.getDefaultLead(myHand, order) : GameRules.getDefaultPlay(trick.get(0), myHand, order);
+		}
+		return best;
+	}
+
+	/**
+	 * Immutable snapshot of what this player knows at a decision, shared by all search threads.
+	 */
+	private class Observation {
+		final TrumpOrder order;
+		final CardHand myHand;
+		final List<CardHand> trick;
+		final int leader;
+		final int host;
+		// Cards this player has not seen, to be dealt to the other players and the kitty
+		final CardHand unseen;
+		// Number of cards in each player's hand
+		final int[] handSizes;
+		final boolean[][] voids;
+		final int calledId;
+		// Copies of the called card still to be played, and the partner, at the start of the trick
+		final int copiesToReveal;
+		final int partner;
+
+		Observation(CardHand myHand, List<CardHand> trick, GameInfo gameInfo) {
+			this.order = gameInfo.getTrumpOrder();
+			this.myHand = myHand;
+			this.trick = trick;
+			this.leader = Math.floorMod(getId() - trick.size(), numPlayers);
+			this.host = gameInfo.getHost();
+			this.voids = new boolean[numPlayers][];
+			for (int i = 0; i < numPlayers; i++) {
+				this.voids[i] = MonteCarloAI.this.voids[i].clone();
+			}
+
+			unseen = new CardHand(numDecks);
+			for (int id = 0; id < CardHand.NUM_IDS; id++) {
+				for (int c = 0; c < numDecks; c++) {
+					unseen.add(id);
+				}
+			}
+			unseen.removeAll(myHand);
+			unseen.removeAll(MonteCarloAI.this.played);
+			if (buriedKitty != null) unseen.removeAll(buriedKitty);
+
+			Suit suit = trick.isEmpty() ? null : GameRules.getSuit(trick.get(0), order);
+			for (int i = 0; i < trick.size(); i++) {
+				CardHand play = trick.get(i);
+				int player = (leader + i) % numPlayers;
+				unseen.removeAll(play);
+				if (play.countIn(order.getSuitMask(suit)) < play.size()) this.voids[player][suit.ordinal()] = true;
+			}
+
+			PartnerCall call = gameInfo.getPartnerCall();
+			this.calledId = call == null ? -1 : call.getCard().getId();
+			this.copiesToReveal = call == null ? 0 : Math.max(0, call.getInstance() - calledCopiesPlayed);
+			this.partner = MonteCarloAI.this.partner;
+
+			handSizes = new int[numPlayers];
+			int leadSize = trick.isEmpty() ? 0 : trick.get(0).size();
+			for (int i = 0; i < numPlayers; i++) {
+				int position = Math.floorMod(i - leader, numPlayers);
+				handSizes[i] = position < trick.size() ? myHand.size() - leadSize : myHand.size();
+			}
+		}
+
+		/**
+		 * Deals the unseen cards into a full game state, respecting known voids when possible.
+		 */
+		GameState determinize(SplittableRandom random) {
+			int[] pool = new int[unseen.size()];
+			int n = 0;
+			for (long bits = unseen.distinct(); bits != 0; bits &= bits - 1) {
+				int id = Long.numberOfTrailingZeros(bits);
+				for (int c = unseen.count(id); c > 0; c--) {
+					pool[n++] = id;
+				}
+			}
+
+			for (int attempt = 0; attempt <= MAX_DEAL_ATTEMPTS; attempt++) {
+				boolean respectVoids = attempt < MAX_DEAL_ATTEMPTS;
+				GameState state = tryDeal(pool, random, respectVoids);
+				if (state != null) return state;
+			}
+			throw new IllegalStateException("Unable to deal determinization");
+		}
+
+		private GameState tryDeal(int[] pool, SplittableRandom random, boolean respectVoids) {
+			CardHand[] hands = new CardHand[numPlayers];
+			int[] room = new int[numPlayers];
+			for (int i = 0; i < numPlayers; i++) {
+				hands[i] = new CardHand(numDecks);
+				room[i] = i == getId() ? 0 : handSizes[i];
+			}
+			hands[getId()].copyFrom(myHand);
+			CardHand kitty = buriedKitty == null ? new CardHand(numDecks) : buriedKitty.copy();
+			// Whatever is not dealt to a player is in the kitty, which is never void
+			int kittyRoom = pool.length;
+			for (int r : room) kittyRoom -= r;
+
+			for (int i = pool.length - 1; i > 0; i--) {
+				int j = random.nextInt(i + 1);
+				int tmp = pool[i];
+				pool[i] = pool[j];
+				pool[j] = tmp;
+			}
+
+			int[] eligible = new int[numPlayers + 1];
+			for (int id : pool) {
+				int suit = order.getSuit(id).ordinal();
+				int numEligible = 0;
+				for (int p = 0; p < numPlayers; p++) {
+					if (room[p] > 0 && !(respectVoids && voids[p][suit])) eligible[numEligible++] = p;
+				}
+				if (kittyRoom > 0) eligible[numEligible++] = -1;
+				if (numEligible == 0) return null;
+
+				int p = eligible[random.nextInt(numEligible)];
+				if (p < 0) {
+					kitty.add(id);
+					kittyRoom--;
+				} else {
+					hands[p].add(id);
+					room[p]--;
+				}
+			}
+
+			// Give back the plays already made this trick, and replay them
+			for (int i = 0; i < trick.size(); i++) {
+				hands[(leader + i) % numPlayers].addAll(trick.get(i));
+			}
+			GameState state = new GameState(order, hands, kitty, host, leader, calledId, copiesToReveal, partner);
+			for (CardHand play : trick) {
+				state.apply(play);
+			}
+			return state;
+		}
+	}
+
+	/**
+	 * One tree search over many determinizations, run on a single thread.
+	 */
+	private class Search {
+		private final Observation observation;
+		private final SplittableRandom random;
+		private final Node root;
+
+		Search(Observation observation, SplittableRandom random) {
+			this.observation = observation;
+			this.random = random;
+			this.root = new Node(null, -1);
+		}
+
+		/**
+		 * Searches until the deadline or the iteration budget is reached.
+		 * @return The number of visits of each move from the root
+		 */
+		Map<CardHand, Integer> run(long deadline) {
+			List<Node> path = new ArrayList<>();
+			for (int i = 0; i < iterationBudget && System.nanoTime() < deadline; i++) {
+				path.clear();
+				GameState state = observation.determinize(random);
+				Node node = root;
+
+				// Selection and expansion, restricted to moves legal in this determinization
+				while (!state.isRoundOver()) {
+					List<CardHand> moves = getMoves(state, MAX_FOLLOWS, random);
+					Node selected = null;
+					double bestScore = Double.NEGATIVE_INFINITY;
+					List<CardHand> untried = new ArrayList<>();
+					for (CardHand move : moves) {
+						Node child = node.children.get(move);
+						if (child == null) {
+							untried.add(move);
+							continue;
+						}
+						child.availability++;
+						double score = child.reward / child.visits
+								+ EXPLORATION * Math.sqrt(StrictMath.log(child.availability) / child.visits);
+						if (score > bestScore) {
+							bestScore = score;
+							selected = child;
+						}
+					}
+
+					if (!untried.isEmpty()) {
+						CardHand move = untried.get(random.nextInt(untried.size()));
+						Node child = new Node(move, state.getCurrentPlayer());
+						child.availability++;
+						node.children.put(move, child);
+						state.apply(move);
+						path.add(child);
+						break;
+					}
+					state.apply(selected.move);
+					path.add(selected);
+					node = selected;
+				}
+
+				// Playout
+				while (!state.isRoundOver()) {
+					state.apply(getRandomMove(state, random));
+				}
+
+				double[] rewards = getRewards(state);
+				for (Node n : path) {
+					n.visits++;
+					n.reward += rewards[n.player];
+				}
+			}
+
+			Map<CardHand, Integer> visits = new LinkedHashMap<>();
+			for (Node child : root.children.values()) {
+				visits.put(child.move, child.visits);
+			}
+			return visits;
+		}
+	}
+
+	private static class Node {
+		// The move leading to this node, and the player who made it
+		final CardHand move;
+		final int player;
+		// In order of expansion, so that ties between moves are broken the same way every run
+		final Map<CardHand, Node> children = new LinkedHashMap<>();
+		int visits;
+		// Number of iterations in which this node's move was legal
+		int availability;
+		double reward;
+
+		Node(CardHand move, int player) {
+			this.move = move;
+			this.player = player;
+		}
+	}
+
+	/**
+	 * Returns the legal moves of the current player, limited to maxFollows when following.
+	 */
+	private static List<CardHand> getMoves(GameState state, int maxFollows, SplittableRandom random) {
+		CardHand hand = state.getHand(state.getCurrentPlayer());
+		if (state.isTrickComplete()) return GameRules.getLegalLeads(hand, state.getTrumpOrder());
+
+		List<CardHand> moves = new ArrayList<>();
+		Iterator<CardHand> plays = GameRules.getLegalPlays(state.getLead(), hand, state.getTrumpOrder());
+		while (plays.hasNext() && moves.size() < maxFollows) {
+			moves.add(plays.next());
+		}
+		if (plays.hasNext()) {
+			CardHand extra = getRandomMove(state, random);
+			if (!moves.contains(extra)) moves.add(extra);
+		}
+		return moves;
+	}
+
+	/**
+	 * Returns a random legal move for the current player.
+	 */
+	private static CardHand getRandomMove(GameState state, SplittableRandom random) {
+		TrumpOrder order = state.getTrumpOrder();
+		CardHand hand = state.getHand(state.getCurrentPlayer());
+		if (state.isTrickComplete()) {
+			List<CardHand> leads = GameRules.getLegalLeads(hand, order);
+			return leads.get(random.nextInt(leads.size()));
+		}
+
+		CardHand lead = state.getLead();
+		int size = lead.size();
+		long suitMask = order.getSuitMask(GameRules.getSuit(lead, order));
+		CardHand play = new CardHand(hand.getNumDecks());
+		if (hand.countIn(suitMask) > size) {
+			// Take the required groups at random, then fill as in GameRules.getDefaultPlay
+			int straightLen = GameRules.isConsecutiveRanks(lead, order);
+			int multiplicity = size / straightLen;
+			if (multiplicity > 1) {
+				int[] groupIds = new int[size];
+				int numGroups = 0;
+				for (long bits = hand.atLeast(multiplicity) & suitMask; bits != 0; bits &= bits - 1) {
+					int id = Long.numberOfTrailingZeros(bits);
+					for (int g = hand.count(id) / multiplicity; g > 0 && numGroups < groupIds.length; g--) {
+						groupIds[numGroups++] = id;
+					}
+				}
+				for (int g = 0; g < Math.min(numGroups, straightLen); g++) {
+					int j = g + random.nextInt(numGroups - g);
+					int id = groupIds[j];
+					groupIds[j] = groupIds[g];
+					for (int i = 0; i < multiplicity; i++) {
+						play.add(id);
+					}
+				}
+			}
+		}
+		fillRandom(play, hand, suitMask, size, random);
+		fillRandom(play, hand, ~suitMask, size, random);
+		return play;
+	}
+
+	private static void fillRandom(CardHand play, CardHand hand, long mask, int size, SplittableRandom random) {
+		if (play.size() >= size) return;
+		int[] pool = new int[hand.countIn(mask)];
+		int n = 0;
+		for (long bits = hand.distinct() & mask; bits != 0; bits &= bits - 1) {
+			int id = Long.numberOfTrailingZeros(bits);
+			for (int c = hand.count(id) - play.count(id); c > 0; c--) {
+				pool[n++] = id;
+			}
+		}
+		for (int i = 0; i < n && play.size() < size; i++) {
+			int j = i + random.nextInt(n - i);
+			int id = pool[j];
+			pool[j] = pool[i];
+			play.add(id);
+		}
+	}
+
+	/**
+	 * Returns the share of the points won during the simulation by each player's team.
+	 */
+	private static double[] getRewards(GameState state) {
+		int numPlayers = state.getNumPlayers();
+		int host = state.getHost();
+		int partner = state.getPartner();
+		int total = 0;
+		for (int i = 0; i < numPlayers; i++) total += state.getPoints(i);
+		int hostTeam = state.getPoints(host) + (partner >= 0 && partner != host ? state.getPoints(partner) : 0);
+		double[] rewards = new double[numPlayers];
+		for (int i = 0; i < numPlayers; i++) {
+			boolean onHostTeam = i == host || i == partner;
+			int teamPoints = onHostTeam ? hostTeam : total - hostTeam;
+			rewards[i] = total == 0 ? 0.5 : (double) teamPoints / total;
+		}
+		return rewards;
+	}
+}
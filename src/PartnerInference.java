@@ -0,0 +1,56 @@
+/**
+ * What every player can infer about the partner call from the cards played so far in a round, kept up
+ * to date by the engine after each play alongside the {@link PublicKnowledge} it builds on.  Before
+ * the partner is revealed, it estimates how likely each player is to become the partner and where the
+ * cards not yet played are.
+ *
+ * The estimates treat each card not yet played as equally likely to be any hidden card of a hand that
+ * has not shown a void in its suit, or of the kitty, so a location is as likely as the number of
+ * hidden cards it holds.  An observer is the player asking, whose own hand is not hidden from them;
+ * -1 asks for the view of someone who has seen no hand.  The kitty counts as hidden even to the host.
+ */
+public interface PartnerInference {
+
+	/**
+	 * Returns the revealed partner, the host if the host played the called copy, or -1 if not yet revealed
+	 * @return
+	 */
+	int getPartner();
+
+	/**
+	 * Returns the number of copies of the called card still to be played before the partner is revealed,
+	 * or 0 if there is no call or it has been answered
+	 * @return
+	 */
+	int getCopiesToReveal();
+
+	/**
+	 * Returns the probability that the player becomes the partner, or has become it.  For the host, this
+	 * is the probability that the host ends up playing alone, by playing the called copy or because not
+	 * enough copies are left outside the kitty.  The probabilities of all players sum to 1.
+	 * @param playerId
+	 * @param observer The player asking, or -1
+	 * @param observerCopies The copies of the called card the observer holds, or 0 if no observer
+	 * @return
+	 */
+	double getPartnerProbability(int playerId, int observer, int observerCopies);
+
+	/**
+	 * Returns the probability that a copy of the card not yet played, and not held by the observer, is
+	 * in the player's hand.  This is 0 for the observer and for players void in the card's suit.
+	 * @param playerId
+	 * @param id
+	 * @param observer The player asking, or -1
+	 * @return
+	 */
+	double getHolderProbability(int playerId, int id, int observer);
+
+	/**
+	 * Returns the probability that a copy of the card not yet played, and not held by the observer, is
+	 * in the kitty
+	 * @param id
+	 * @param observer The player asking, or -1
+	 * @return
+	 */
+	double getKittyProbability(int id, int observer);
+}
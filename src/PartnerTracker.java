@@ -0,0 +1,88 @@
+/**
+ * The engine's {@link PartnerInference} of a round, read from the round's {@link GameState} and
+ * {@link PublicKnowledge}, which the engine already updates once per play.  The state reveals the
+ * partner as it applies each play and knows the hidden hand and kitty sizes, so nothing is counted
+ * twice; the probabilities are worked out when asked, in time linear in the number of players.
+ */
+public class PartnerTracker implements PartnerInference {
+
+	private final PublicKnowledge knowledge;
+	private final GameState state;
+
+	/**
+	 * @param knowledge The public knowledge of the round
+	 * @param state The state of the same round, from the start of its play phase
+	 */
+	public PartnerTracker(PublicKnowledge knowledge, GameState state) {
+		this.knowledge = knowledge;
+		this.state = state;
+	}
+
+	@Override
+	public int getPartner() {
+		return state.getPartner();
+	}
+
+	@Override
+	public int getCopiesToReveal() {
+		return state.getPartner() >= 0 ? 0 : Math.max(0, state.getCopiesToReveal());
+	}
+
+	@Override
+	public double getPartnerProbability(int playerId, int observer, int observerCopies) {
+		int partner = state.getPartner();
+		int calledId = state.getCalledId();
+		int copiesToReveal = getCopiesToReveal();
+		if (partner >= 0) return playerId == partner ? 1 : 0;
+		if (calledId < 0) return playerId == state.getHost() ? 1 : 0;
+
+		// The copies the observer cannot see are each in the kitty with probability kitty, and the
+		// partner call goes unanswered if fewer than needed of them are in hands
+		int unseen = knowledge.getRemaining(calledId) - observerCopies;
+		int needed = copiesToReveal - observerCopies;
+		double kitty = getKittyProbability(calledId, observer);
+		double unanswered = 0;
+		if (kitty == 0) {
+			unanswered = unseen < needed ? 1 : 0;
+		} else {
+			double term = Math.pow(kitty, unseen);
+			for (int x = 0; x < needed && x <= unseen; x++) {
+				unanswered += term;
+				term *= (unseen - x) / (x + 1.0) * (1 - kitty) / kitty;
+			}
+		}
+
+		// Otherwise the partner is more likely the more copies a player is expected to hold
+		double inHands = observerCopies + unseen * (1 - kitty);
+		double held = playerId == observer ? observerCopies : unseen * getHolderProbability(playerId, calledId, observer);
+		double probability = inHands > 0 ? (1 - unanswered) * held / inHands : 0;
+		if (playerId == state.getHost()) probability += unanswered;
+		return probability;
+	}
+
+	@Override
+	public double getHolderProbability(int playerId, int id, int observer) {
+		TrumpOrder order = state.getTrumpOrder();
+		if (playerId == observer || knowledge.isVoid(playerId, order.getSuit(id))) return 0;
+		int room = getHiddenRoom(order.getSuit(id), observer);
+		return room == 0 ? 0 : state.getHand(playerId).size() / (double) room;
+	}
+
+	@Override
+	public double getKittyProbability(int id, int observer) {
+		int room = getHiddenRoom(state.getTrumpOrder().getSuit(id), observer);
+		return room == 0 ? 0 : state.getKitty().size() / (double) room;
+	}
+
+	/**
+	 * Returns the number of hidden cards that could be of the given suit:  the kitty, and the hands of
+	 * players other than the observer that have not shown a void in it.
+	 */
+	private int getHiddenRoom(Suit suit, int observer) {
+		int room = state.getKitty().size();
+		for (int i = 0; i < state.getNumPlayers(); i++) {
+			if (i != observer && !knowledge.isVoid(i, suit)) room += state.getHand(i).size();
+		}
+		return room;
+	}
+}
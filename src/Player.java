@@ -1,5 +1,5 @@
 import java.util.List;
-import java.util.Set;
+import java.util.SplittableRandom;
 
 /**
  * Interface to represent a generic player; could be human or computer
@@ -26,27 +26,40 @@ public abstract class Player {
 	abstract void initializeRound(GameInfo gameInfo);
 	
 	/**
-	 * Called each time a card is added to this players hand when cards are drawn.
+	 * Called before each round with a generator derived from the engine's seed and the round number,
+	 * for players that make random choices.  Players should draw only from the latest generator given, 
+	 * so that every round can be replayed exactly.  Does nothing unless overridden.
 	 * 
-	 * @param newCard A copy of the newly drawn card
-	 * @param hand An immutable view of the entire hand drawn so far (for convenience)
-	 * @param curTrumpSuit The currently called trump suit
-	 * @return The indices of the cards the player would like to reveal to declare trump,
-	 *         if any.  null if nothing should be declared
+	 * @param random
 	 */
-	abstract Set<Integer> draw(Card newCard, List<Card> hand, GameInfo gameInfo);
+	void setRandom(SplittableRandom random) {
+	}
+	
+	/**
+	 * Called each time a card is added to this players hand when cards are drawn.  Only the new card is
+	 * given; players that want their hand while drawing keep it themselves, starting empty at 
+	 * initializeRound.  Cards are immutable and shared, and every list passed to a player is an unmodifiable
+	 * view that is only valid for the duration of the call; copy it to keep it.
+	 * 
+	 * @param newCard The newly drawn card
+	 * @param declarations The trump declared so far, shared and updated by the engine, so only valid for
+	 * 					   the duration of the call
+	 * @return A {@link DeclarationState#bid(Card, int) bid} of the cards the player would like to reveal to
+	 *         declare trump, if any.  DeclarationState.NONE if nothing should be declared
+	 */
+	abstract int draw(Card newCard, DeclarationState declarations);
 	
 	/**
 	 * Called if player is host; given the cards in his hand as well as the kitty, the
-	 * player must return a set of the indices of the cards to put back into the kitty.
+	 * player must select the cards to put back into the kitty.
 	 * 
-	 * @param handPlusKitty An immutable view of the list of cards in the players hand 
+	 * @param handPlusKitty An unmodifiable view of the list of cards in the players hand 
 	 * 						including the kitty
 	 * @param kittySize The number of cards in the kitty
 	 * @param gameInfo
-	 * @return
+	 * @return A {@link CardSelection} of kittySize cards
 	 */
-	abstract Set<Integer> handleKitty(List<Card> handPlusKitty, int kittySize, GameInfo gameInfo);
+	abstract long handleKitty(List<Card> handPlusKitty, int kittySize, GameInfo gameInfo);
 	
 	/**
 	 * Called after the host player handles the kitty, when he must declare who is to be the partner.
@@ -61,21 +74,33 @@ public abstract class Player {
 	/**
 	 * Called when the player should lead for a trick.
 	 * 
-	 * @param hand A copy of the hand from which the player should play
+	 * @param hand An unmodifiable view of the hand from which the player should play
 	 * @param gameInfo
-	 * @return A set containing the indices of the cards in the hand to play
+	 * @return A {@link CardSelection} of the cards in the hand to play
 	 */
-	abstract Set<Integer> lead(List<Card> hand, GameInfo gameInfo);
+	abstract long lead(List<Card> hand, GameInfo gameInfo);
 	
 	/**
 	 * Called when a player should play in a trick, in response to previous plays.
 	 * 
 	 * @param previousPlays A list of previous plays, in the order they occurred.  Each play is given by a list 
 	 * 						of cards
-	 * @param hand			A copy of the hand from which the player should play
+	 * @param hand			An unmodifiable view of the hand from which the player should play
 	 * @param gameInfo
-	 * @return A set containing the indices of the cards in the hand to play
+	 * @return A {@link CardSelection} of the cards in the hand to play
 	 */
-	abstract Set<Integer> play(List<List<Card>> previousPlays, List<Card> hand, GameInfo gameInfo);
+	abstract long play(List<List<Card>> previousPlays, List<Card> hand, GameInfo gameInfo);
+	
+	/**
+	 * Called for every player once a trick is complete, so that players may keep track of the cards
+	 * that have been played.  Does nothing unless overridden.
+	 * 
+	 * @param plays			The plays of the trick, in the order they occurred, starting with the lead
+	 * @param leadPlayerId	The id of the player who lead the trick
+	 * @param winnerId		The id of the player who won the trick
+	 * @param gameInfo
+	 */
+	void trickComplete(List<List<Card>> plays, int leadPlayerId, int winnerId, GameInfo gameInfo) {
+	}
 
 }
@@ -0,0 +1,12 @@
+/**
+ * Creates the player for a seat, so that engines can be built with any combination of players.
+ */
+public interface PlayerFactory {
+	
+	/**
+	 * Creates a new player sitting in the given seat
+	 * @param id
+	 * @return
+	 */
+	Player create(int id);
+}
@@ -0,0 +1,44 @@
+/**
+ * What every player can deduce from the cards played so far in a round, kept up to date by the engine
+ * after each play so that players can ask in constant time instead of rescanning the plays.  Suits
+ * are the suits cards play as under the round's trump, so trumps of every base suit count as TRUMP.
+ * Cards in hands and in the kitty count as remaining.
+ */
+public interface PublicKnowledge {
+
+	/**
+	 * Returns the number of copies of the card with the given id that have not been played
+	 * @param id
+	 * @return
+	 */
+	int getRemaining(int id);
+
+	/**
+	 * Returns the number of cards that play as the given suit that have not been played
+	 * @param suit
+	 * @return
+	 */
+	int getRemaining(Suit suit);
+
+	/**
+	 * Returns the points of the cards that play as the given suit that have not been played
+	 * @param suit
+	 * @return
+	 */
+	int getPointsRemaining(Suit suit);
+
+	/**
+	 * Returns the points of all cards that have not been played, including those in the kitty
+	 * @return
+	 */
+	int getPointsRemaining();
+
+	/**
+	 * Returns whether the player has shown they hold no cards of the given suit, by not following it
+	 * with every card of a play
+	 * @param playerId
+	 * @param suit
+	 * @return
+	 */
+	boolean isVoid(int playerId, Suit suit);
+}
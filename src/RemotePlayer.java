@@ -0,0 +1,113 @@
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * A player in a {@link GameServer} table, played by a client over its connection.  Every callback is
+ * sent as a {@link GameProtocol} message; decisions wait for the client's answer, and a client that
+ * does not answer in time or has disconnected answers with an empty selection or no partner call, so
+ * the engine makes the default choice for it.
+ */
+public class RemotePlayer extends Player {
+
+	private final GameServer.Connection connection;
+	private final long timeoutNanos;
+	// The message being sent, reused for every callback
+	private final ByteBuffer frame = ByteBuffer.allocate(GameProtocol.MAX_FRAME);
+	// Seed of the client's generator for the next round
+	private long roundSeed;
+
+	public RemotePlayer(int id, GameServer.Connection connection, long timeoutNanos) {
+		super(id);
+		this.connection = connection;
+		this.timeoutNanos = timeoutNanos;
+		frame.clear();
+		int start = GameProtocol.beginFrame(frame, GameProtocol.SEAT);
+		frame.put((byte) id);
+		GameProtocol.endFrame(frame, start);
+		frame.flip();
+		connection.send(frame, timeoutNanos);
+	}
+
+	@Override
+	void setRandom(SplittableRandom random) {
+		roundSeed = random.nextLong();
+	}
+
+	@Override
+	void initializeRound(GameInfo gameInfo) {
+		int start = begin(GameProtocol.ROUND, gameInfo);
+		frame.putLong(roundSeed);
+		connection.send(end(start), timeoutNanos);
+	}
+
+	@Override
+	int draw(Card newCard, DeclarationState declarations) {
+		frame.clear();
+		int start = GameProtocol.beginFrame(frame, GameProtocol.DRAW);
+		GameProtocol.putCard(frame, newCard);
+		GameProtocol.putDeclarations(frame, declarations);
+		return (int) requestSelection(start);
+	}
+
+	@Override
+	long handleKitty(List<Card> handPlusKitty, int kittySize, GameInfo gameInfo) {
+		int start = begin(GameProtocol.KITTY, gameInfo);
+		frame.put((byte) kittySize);
+		GameProtocol.putCards(frame, handPlusKitty);
+		return requestSelection(start);
+	}
+
+	@Override
+	PartnerCall callPartner(List<Card> hand, List<Card> kitty, GameInfo gameInfo) {
+		int start = begin(GameProtocol.CALL_PARTNER, gameInfo);
+		GameProtocol.putCards(frame, hand);
+		GameProtocol.putCards(frame, kitty);
+		ByteBuffer reply = connection.request(end(start), timeoutNanos);
+		if (reply == null || reply.get() != GameProtocol.PARTNER || reply.remaining() < 2) return null;
+		return GameProtocol.getPartnerCall(reply);
+	}
+
+	@Override
+	long lead(List<Card> hand, GameInfo gameInfo) {
+		int start = begin(GameProtocol.LEAD, gameInfo);
+		GameProtocol.putCards(frame, hand);
+		return requestSelection(start);
+	}
+
+	@Override
+	long play(List<List<Card>> previousPlays, List<Card> hand, GameInfo gameInfo) {
+		int start = begin(GameProtocol.PLAY, gameInfo);
+		GameProtocol.putPlays(frame, previousPlays);
+		GameProtocol.putCards(frame, hand);
+		return requestSelection(start);
+	}
+
+	@Override
+	void trickComplete(List<List<Card>> plays, int leadPlayerId, int winnerId, GameInfo gameInfo) {
+		int start = begin(GameProtocol.TRICK, gameInfo);
+		frame.put((byte) leadPlayerId);
+		frame.put((byte) winnerId);
+		GameProtocol.putPlays(frame, plays);
+		connection.send(end(start), timeoutNanos);
+	}
+
+	private int begin(byte type, GameInfo gameInfo) {
+		frame.clear();
+		int start = GameProtocol.beginFrame(frame, type);
+		GameProtocol.putInfo(frame, gameInfo);
+		return start;
+	}
+
+	private ByteBuffer end(int start) {
+		GameProtocol.endFrame(frame, start);
+		frame.flip();
+		return frame;
+	}
+
+	private long requestSelection(int start) {
+		ByteBuffer reply = connection.request(end(start), timeoutNanos);
+		if (reply == null || reply.get() != GameProtocol.SELECTION || reply.remaining() < 8) return CardSelection.NONE;
+		return reply.getLong();
+	}
+}
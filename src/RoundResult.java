@@ -0,0 +1,76 @@
+/**
+ * Container class for the outcome of a single round, as returned by the game engine.
+ */
+public class RoundResult {
+	// The player id of the host
+	private final int host;
+	// The player id of the revealed partner, or -1 if the host played alone
+	private final int partner;
+	// Null if no trump
+	private final Suit trumpSuit;
+	private final Rank trumpRank;
+	// Points won in tricks by each player, indexed by player id
+	private final int[] playerPoints;
+	// Points left in the kitty at the end of the round
+	private final int kittyPoints;
+	private final int numTricks;
+	// Points won by the team opposing the host, including any kitty bonus
+	private final int attackerPoints;
+	
+	public RoundResult(int host, int partner, Suit trumpSuit, Rank trumpRank, int[] playerPoints, int kittyPoints, 
+					   int numTricks, int attackerPoints) {
+		this.host = host;
+		this.partner = partner;
+		this.trumpSuit = trumpSuit;
+		this.trumpRank = trumpRank;
+		this.playerPoints = playerPoints;
+		this.kittyPoints = kittyPoints;
+		this.numTricks = numTricks;
+		this.attackerPoints = attackerPoints;
+	}
+
+	public int getHost() {
+		return host;
+	}
+
+	public int getPartner() {
+		return partner;
+	}
+
+	/**
+	 * Returns whether the given player was on the host's team
+	 * @param playerId
+	 * @return
+	 */
+	public boolean isHostTeam(int playerId) {
+		return playerId == host || playerId == partner;
+	}
+
+	public Suit getTrumpSuit() {
+		return trumpSuit;
+	}
+
+	public Rank getTrumpRank() {
+		return trumpRank;
+	}
+
+	public int getPlayerPoints(int playerId) {
+		return playerPoints[playerId];
+	}
+
+	public int getNumPlayers() {
+		return playerPoints.length;
+	}
+
+	public int getKittyPoints() {
+		return kittyPoints;
+	}
+
+	public int getNumTricks() {
+		return numTricks;
+	}
+
+	public int getAttackerPoints() {
+		return attackerPoints;
+	}
+}
@@ -1,7 +1,277 @@
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+
 public class Runner {
 
-	public static void main(String[] args) {
+	public static void main(String[] args) throws IOException, InterruptedException {
+		if (args.length > 0 && args[0].equals("batch")) {
+			runBatch(args);
+			return;
+		}
+		if (args.length > 0 && args[0].equals("profile")) {
+			runProfile(args);
+			return;
+		}
+		if (args.length > 0 && args[0].equals("match")) {
+			runMatch(args);
+			return;
+		}
+		if (args.length > 0 && args[0].equals("tournament")) {
+			runTournament(args);
+			return;
+		}
+		if (args.length > 2 && args[0].equals("deals")) {
+			generateDeals(args);
+			return;
+		}
+		if (args.length > 2 && args[0].equals("replay")) {
+			replayRound(args);
+			return;
+		}
+		if (args.length > 0 && args[0].equals("server")) {
+			runServer(args);
+			return;
+		}
+		if (args.length > 3 && args[0].equals("clients")) {
+			runClients(args);
+			return;
+		}
+		if (args.length > 1 && args[0].equals("records")) {
+			summarizeRecords(args[1]);
+			return;
+		}
 		GameEngine engine = new GameEngine(4);
 		engine.start();
 	}
+	
+	/**
+	 * Runs many rounds without console output and prints the aggregated results.
+	 * Usage: batch [rounds] [players] [threads] [seed] [record file]
+	 * @param args
+	 * @throws IOException 
+	 */
+	private static void runBatch(String[] args) throws IOException {
+		int numRounds = args.length > 1 ? Integer.parseInt(args[1]) : 10000;
+		int numPlayers = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+		int numThreads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+		long seed = args.length > 4 ? Long.parseLong(args[4]) : System.nanoTime();
+		
+		System.out.println("Running " + numRounds + " rounds with " + numPlayers + " players on " 
+				+ numThreads + " threads, seed " + seed);
+		long start = System.nanoTime();
+		BatchSimulation batch = new BatchSimulation(numRounds, numPlayers, numThreads, seed);
+		SimulationStats stats;
+		if (args.length > 5) {
+			try (GameRecordWriter writer = new GameRecordWriter(Paths.get(args[5]))) {
+				batch.setRecordWriter(writer);
+				stats = batch.run();
+			}
+		} else {
+			stats = batch.run();
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+		System.out.println(stats);
+		System.out.println(String.format("%.2f s, %.0f rounds/s", seconds, numRounds / seconds));
+	}
+	
+	/**
+	 * Replays a single round of a batch with console output, exactly as it was played in the batch.
+	 * Usage: replay seed round [players]
+	 * @param args
+	 */
+	private static void replayRound(String[] args) {
+		long seed = Long.parseLong(args[1]);
+		int roundIndex = Integer.parseInt(args[2]);
+		int numPlayers = args.length > 3 ? Integer.parseInt(args[3]) : 4;
+		
+		BatchSimulation batch = new BatchSimulation(roundIndex + 1, numPlayers, 1, seed);
+		batch.setVerbose(true);
+		RoundResult result = batch.runRound(roundIndex);
+		System.out.println("Attackers won " + result.getAttackerPoints() + " points");
+	}
+	
+	/**
+	 * Runs a batch with instrumentation, printing a metrics report every second and once finished.
+	 * Usage: profile [rounds] [players] [threads] [seed]
+	 * @param args
+	 */
+	private static void runProfile(String[] args) {
+		int numRounds = args.length > 1 ? Integer.parseInt(args[1]) : 10000;
+		int numPlayers = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+		int numThreads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+		long seed = args.length > 4 ? Long.parseLong(args[4]) : System.nanoTime();
+		
+		BatchSimulation batch = new BatchSimulation(numRounds, numPlayers, numThreads, seed);
+		GameMetrics metrics = new GameMetrics(numPlayers);
+		batch.setMetrics(metrics);
+		ScheduledExecutorService reporter = metrics.reportPeriodically(1000, report -> System.out.println(report + "\n"));
+		try {
+			batch.run();
+		} finally {
+			reporter.shutdown();
+		}
+		System.out.println(metrics);
+	}
+	
+	/**
+	 * Plays a whole match without console output from the engine, printing a line per round.
+	 * Usage: match [players] [max rounds] [seed]
+	 * @param args
+	 */
+	private static void runMatch(String[] args) {
+		int numPlayers = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+		int maxRounds = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+		long seed = args.length > 3 ? Long.parseLong(args[3]) : System.nanoTime();
+		
+		GameEngine engine = new GameEngine(numPlayers, seed);
+		engine.setVerbose(false);
+		int numRounds = 0;
+		while (!engine.isMatchOver() && numRounds < maxRounds) {
+			RoundResult result = engine.start();
+			numRounds++;
+			StringBuilder levels = new StringBuilder();
+			for (int i = 0; i < numPlayers; i++) {
+				levels.append(' ').append(engine.getLevel(i).getDisplayString());
+			}
+			System.out.println(String.format("Round %d: host %d, partner %d, trump %s, attackers %d, levels%s", 
+					numRounds, result.getHost(), result.getPartner(), result.getTrumpRank().getDisplayString(), 
+					result.getAttackerPoints(), levels));
+		}
+		System.out.println(engine.isMatchOver() ? "Match over after " + numRounds + " rounds" : "Stopped after " + numRounds + " rounds");
+	}
+	
+	/**
+	 * Plays every AI against every other, printing the results of each match as it progresses.
+	 * Usage: tournament [max deals] [players] [threads] [seed] [deal bank file]
+	 * @param args
+	 * @throws IOException 
+	 */
+	private static void runTournament(String[] args) throws IOException {
+		int maxDeals = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+		int numPlayers = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+		int numThreads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+		long seed = args.length > 4 ? Long.parseLong(args[4]) : System.nanoTime();
+		
+		List<Tournament.Entrant> entrants = new ArrayList<>();
+		entrants.add(new Tournament.Entrant("MonteCarlo", id -> new MonteCarloAI(id, 1, 0, 200)));
+		entrants.add(new Tournament.Entrant("CommonSense", CommonSenseAI::new));
+		entrants.add(new Tournament.Entrant("Dumb", DumbAIPlayer::new));
+		
+		System.out.println("Running tournament with " + numPlayers + " players on " + numThreads + " threads, seed " + seed);
+		Tournament tournament = new Tournament(entrants, numPlayers, maxDeals, numThreads, seed);
+		tournament.setListener(System.out::println);
+		List<MatchStats> results;
+		if (args.length > 5) {
+			try (DealBank bank = new DealBank(Paths.get(args[5]))) {
+				tournament.setDealBank(bank);
+				results = tournament.run();
+			}
+		} else {
+			results = tournament.run();
+		}
+		for (MatchStats match : results) {
+			System.out.println("Final: " + match);
+		}
+	}
+	
+	/**
+	 * Writes a deal bank of shuffled decks for the given number of players.
+	 * Usage: deals <deal bank file> <deals> [players] [seed]
+	 * @param args
+	 * @throws IOException
+	 */
+	private static void generateDeals(String[] args) throws IOException {
+		long numDeals = Long.parseLong(args[2]);
+		int numPlayers = args.length > 3 ? Integer.parseInt(args[3]) : 4;
+		long seed = args.length > 4 ? Long.parseLong(args[4]) : System.nanoTime();
+		
+		long start = System.nanoTime();
+		DealBank.generate(Paths.get(args[1]), (numPlayers + 1) / 2, numDeals, seed);
+		System.out.println(String.format("Wrote %d deals for %d players with seed %d in %.2f s", 
+				numDeals, numPlayers, seed, (System.nanoTime() - start) / 1e9));
+	}
+	
+	/**
+	 * Hosts tables for remote players until killed, printing the result of each table as it finishes.
+	 * Usage: server [port] [players] [rounds] [seed]
+	 * @param args
+	 * @throws IOException
+	 * @throws InterruptedException 
+	 */
+	private static void runServer(String[] args) throws IOException, InterruptedException {
+		int port = args.length > 1 ? Integer.parseInt(args[1]) : 7070;
+		int numPlayers = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+		int numRounds = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+		long seed = args.length > 4 ? Long.parseLong(args[4]) : System.nanoTime();
+		
+		try (GameServer server = new GameServer(new InetSocketAddress(port), numPlayers, numRounds, seed)) {
+			server.setListener(result -> System.out.println("Table finished after " + result.getNumRounds() + " rounds"));
+			server.start();
+			System.out.println("Hosting tables of " + numPlayers + " players on port " + server.getPort() + ", seed " + seed);
+			Thread.currentThread().join();
+		}
+	}
+	
+	/**
+	 * Connects AI players to a server, using the default lineup for each seat, and waits for their 
+	 * tables to finish.
+	 * Usage: clients <host> <port> <connections> [players]
+	 * @param args
+	 * @throws IOException
+	 * @throws InterruptedException 
+	 */
+	private static void runClients(String[] args) throws IOException, InterruptedException {
+		InetSocketAddress address = new InetSocketAddress(args[1], Integer.parseInt(args[2]));
+		int numConnections = Integer.parseInt(args[3]);
+		int numPlayers = args.length > 4 ? Integer.parseInt(args[4]) : 4;
+		
+		List<PlayerFactory> lineup = GameEngine.defaultLineup(numPlayers);
+		try (GameClient client = new GameClient(id -> lineup.get(id).create(id))) {
+			client.start();
+			for (int i = 0; i < numConnections; i++) {
+				client.connect(address);
+			}
+			while (client.getNumOpen() > 0) {
+				Thread.sleep(100);
+			}
+			System.out.println(client.getNumFinished() + " of " + numConnections + " clients finished their tables");
+		}
+	}
+	
+	/**
+	 * Reads a file of recorded rounds and prints the number of rounds and tricks and the points 
+	 * won by the host.
+	 * Usage: records <record file>
+	 * @param fileName
+	 * @throws IOException
+	 */
+	private static void summarizeRecords(String fileName) throws IOException {
+		long numRounds = 0;
+		long numTricks = 0;
+		long hostPoints = 0;
+		CardHand play = new CardHand(1);
+		try (GameRecordReader reader = new GameRecordReader(Paths.get(fileName))) {
+			while (reader.next()) {
+				if (play.getNumDecks() != reader.getNumDecks()) play = new CardHand(reader.getNumDecks());
+				numRounds++;
+				numTricks += reader.getNumTricks();
+				for (int t = 0; t < reader.getNumTricks(); t++) {
+					if (reader.getTrickWinner(t) != reader.getHost()) continue;
+					for (int p = 0; p < reader.getNumPlayers(); p++) {
+						reader.getPlay(t, p, play);
+						hostPoints += GameRules.getNumPoints(play);
+					}
+				}
+			}
+		}
+		System.out.println("Rounds: " + numRounds + ", tricks: " + numTricks);
+		if (numRounds > 0) {
+			System.out.println(String.format("Host: %.2f points/round", (double) hostPoints / numRounds));
+		}
+	}
 }
@@ -0,0 +1,108 @@
+import java.util.Arrays;
+
+/**
+ * Aggregated results of many simulated rounds.  Each worker accumulates its own instance, and the
+ * instances are merged once all rounds are finished, so no state is shared while simulating.
+ */
+public class SimulationStats {
+	private final int numPlayers;
+	private long numRounds;
+	private long numTricks;
+	// Total points won in tricks by each seat
+	private final long[] seatPoints;
+	// Total points won in tricks by the host of each round
+	private long hostPoints;
+	private long kittyPoints;
+	// Number of rounds hosted by each seat
+	private final long[] seatHosted;
+	
+	public SimulationStats(int numPlayers) {
+		this.numPlayers = numPlayers;
+		this.seatPoints = new long[numPlayers];
+		this.seatHosted = new long[numPlayers];
+	}
+	
+	/**
+	 * Adds the outcome of one round to these statistics
+	 * @param result
+	 */
+	public void add(RoundResult result) {
+		numRounds++;
+		numTricks += result.getNumTricks();
+		for (int i = 0; i < numPlayers; i++) {
+			seatPoints[i] += result.getPlayerPoints(i);
+		}
+		hostPoints += result.getPlayerPoints(result.getHost());
+		kittyPoints += result.getKittyPoints();
+		seatHosted[result.getHost()]++;
+	}
+	
+	/**
+	 * Adds all rounds counted by other into these statistics
+	 * @param other Statistics for the same number of players
+	 */
+	public void merge(SimulationStats other) {
+		numRounds += other.numRounds;
+		numTricks += other.numTricks;
+		for (int i = 0; i < numPlayers; i++) {
+			seatPoints[i] += other.seatPoints[i];
+			seatHosted[i] += other.seatHosted[i];
+		}
+		hostPoints += other.hostPoints;
+		kittyPoints += other.kittyPoints;
+	}
+
+	public int getNumPlayers() {
+		return numPlayers;
+	}
+
+	public long getNumRounds() {
+		return numRounds;
+	}
+
+	public long getNumTricks() {
+		return numTricks;
+	}
+
+	public double getAveragePoints(int seat) {
+		return numRounds == 0 ? 0 : (double) seatPoints[seat] / numRounds;
+	}
+
+	public double getAverageHostPoints() {
+		return numRounds == 0 ? 0 : (double) hostPoints / numRounds;
+	}
+
+	public double getAverageKittyPoints() {
+		return numRounds == 0 ? 0 : (double) kittyPoints / numRounds;
+	}
+
+	public long getRoundsHosted(int seat) {
+		return seatHosted[seat];
+	}
+	
+	@Override
+	public boolean equals(Object o) {
+		if (!(o instanceof SimulationStats)) return false;
+		SimulationStats other = (SimulationStats) o;
+		return numRounds == other.numRounds && numTricks == other.numTricks && hostPoints == other.hostPoints
+				&& kittyPoints == other.kittyPoints && Arrays.equals(seatPoints, other.seatPoints)
+				&& Arrays.equals(seatHosted, other.seatHosted);
+	}
+	
+	@Override
+	public int hashCode() {
+		return Long.hashCode(numRounds) * 31 + Arrays.hashCode(seatPoints);
+	}
+	
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("Rounds: ").append(numRounds).append(", tricks: ").append(numTricks).append('\n');
+		for (int i = 0; i < numPlayers; i++) {
+			sb.append(String.format("Player %d: %.2f points/round, hosted %d%n", i, getAveragePoints(i), seatHosted[i]));
+		}
+		sb.append(String.format("Host: %.2f points/round%n", getAverageHostPoints()));
+		sb.append(String.format("Kitty: %.2f points/round", getAverageKittyPoints()));
+		return sb.toString();
+	}
+}
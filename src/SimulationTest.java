@@ -0,0 +1,326 @@
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class SimulationTest {
+
+	@Test
+	public void matchStatsTest() {
+		// The first entrant wins 7 of every 10 deals
+		MatchStats stronger = new MatchStats("A", "B");
+		for (int i = 0; stronger.getDecision() == MatchStats.Decision.UNDECIDED && i < 1000; i++) {
+			stronger.add(i % 10 < 7 ? 12.5 : -7.5);
+		}
+		assertEquals(MatchStats.Decision.FIRST_STRONGER, stronger.getDecision());
+		
+		MatchStats weaker = new MatchStats("A", "B");
+		for (int i = 0; weaker.getDecision() == MatchStats.Decision.UNDECIDED && i < 1000; i++) {
+			weaker.add(i % 10 < 7 ? -12.5 : 7.5);
+		}
+		assertEquals(MatchStats.Decision.SECOND_STRONGER, weaker.getDecision());
+		
+		// Alternating wins and losses, with ties, never decide
+		MatchStats balanced = new MatchStats("A", "B");
+		for (int i = 0; i < 3000; i++) {
+			balanced.add(i % 3 == 0 ? 10 : i % 3 == 1 ? -10 : 0);
+			assertEquals(MatchStats.Decision.UNDECIDED, balanced.getDecision());
+		}
+		assertEquals(1000, balanced.getTies());
+		assertEquals(0.5, balanced.getWinRate(), 1e-12);
+		assertEquals(0, balanced.getAverageDiff(), 1e-12);
+	}
+	
+	@Test
+	public void dealBankTest() throws IOException {
+		int numDecks = 2;
+		int numDeals = 50;
+		Path path = Files.createTempFile("deals", ".bin");
+		Path same = Files.createTempFile("deals", ".bin");
+		Path other = Files.createTempFile("deals", ".bin");
+		try {
+			DealBank.generate(path, numDecks, numDeals, 17);
+			DealBank.generate(same, numDecks, numDeals, 17);
+			DealBank.generate(other, numDecks, numDeals, 18);
+			assertArrayEquals(Files.readAllBytes(path), Files.readAllBytes(same));
+			assertFalse(Arrays.equals(Files.readAllBytes(path), Files.readAllBytes(other)));
+			
+			try (DealBank bank = new DealBank(path)) {
+				assertEquals(numDecks, bank.getNumDecks());
+				assertEquals(numDeals, bank.getNumDeals());
+				assertEquals(17, bank.getSeed());
+				
+				int dealSize = CardHand.NUM_IDS * numDecks;
+				List<Card> deck = new ArrayList<>(Collections.nCopies(dealSize, (Card) null));
+				for (int d = 0; d < numDeals; d++) {
+					bank.copyDeal(d, deck);
+					// Every deal holds each card of the decks exactly once
+					int[] copies = new int[CardHand.NUM_IDS];
+					for (int i = 0; i < dealSize; i++) {
+						assertEquals(bank.getCard(d, i), deck.get(i).getId());
+						copies[deck.get(i).getId()]++;
+					}
+					for (int id = 0; id < CardHand.NUM_IDS; id++) {
+						assertEquals(numDecks, copies[id]);
+					}
+				}
+				
+				// The bank's decks must match the number of players
+				BatchSimulation batch = new BatchSimulation(numDeals, 4, 1, 0);
+				batch.setDealBank(bank);
+				Tournament tournament = new Tournament(new ArrayList<>(), 5, numDeals, 1, 0);
+				try {
+					tournament.setDealBank(bank);
+					fail("Accepted a bank of " + numDecks + " decks for 5 players");
+				} catch (IllegalArgumentException e) {
+					// Expected
+				}
+			}
+			
+			// Headers with no decks or a negative number of deals are rejected as malformed
+			byte[] bytes = Files.readAllBytes(path);
+			ByteBuffer.wrap(bytes).putInt(8, 0);
+			Files.write(other, bytes);
+			assertRejected(other);
+			bytes = Files.readAllBytes(path);
+			ByteBuffer.wrap(bytes).putLong(12, -1);
+			Files.write(other, bytes);
+			assertRejected(other);
+		} finally {
+			Files.delete(path);
+			Files.delete(same);
+			Files.delete(other);
+		}
+	}
+	
+	private static void assertRejected(Path path) {
+		try {
+			new DealBank(path).close();
+			fail("Opened a malformed deal bank");
+		} catch (IOException e) {
+			// Expected
+		}
+	}
+	
+	@Test
+	public void gameRecordTest() throws IOException {
+		int numPlayers = 4;
+		int numDecks = 2;
+		int handSize = 25;
+		int numRounds = 5;
+		// Each hand is played out over tricks of these sizes
+		int[] trickSizes = {1, 2, 3, 4, 5, 10};
+		Random random = new Random(5);
+		List<List<List<Card>>> hands = new ArrayList<>();
+		List<List<Card>> kitties = new ArrayList<>();
+		List<List<Card>> buried = new ArrayList<>();
+		int[][] winners = new int[numRounds][trickSizes.length];
+		Path path = Files.createTempFile("records", ".bin");
+		try {
+			try (GameRecordWriter writer = new GameRecordWriter(path)) {
+				for (int r = 0; r < numRounds; r++) {
+					List<Card> deck = new ArrayList<>();
+					for (int i = 0; i < CardHand.NUM_IDS * numDecks; i++) {
+						deck.add(Card.of(i % CardHand.NUM_IDS));
+					}
+					Collections.shuffle(deck, random);
+					List<List<Card>> roundHands = new ArrayList<>();
+					for (int p = 0; p < numPlayers; p++) {
+						roundHands.add(deck.subList(p * handSize, (p + 1) * handSize));
+					}
+					List<Card> kitty = deck.subList(numPlayers * handSize, deck.size());
+					List<Card> roundBuried = new ArrayList<>(kitty);
+					Collections.reverse(roundBuried);
+					hands.add(roundHands);
+					kitties.add(kitty);
+					buried.add(roundBuried);
+					
+					// Odd rounds have no trump suit and no partner call
+					boolean odd = r % 2 == 1;
+					GameRecordWriter.Round record = writer.beginRound(100 + r, r, numPlayers, numDecks);
+					record.deal(roundHands, kitty);
+					record.trump(r % numPlayers, odd ? null : Suit.HEARTS, Rank.values()[r]);
+					record.host(roundBuried, odd ? null : new PartnerCall(new Card(Suit.SPADES, Rank.ACE), 2));
+					int leader = r % numPlayers;
+					int played = 0;
+					for (int t = 0; t < trickSizes.length; t++) {
+						List<List<Card>> plays = new ArrayList<>();
+						for (int i = 0; i < numPlayers; i++) {
+							plays.add(roundHands.get((leader + i) % numPlayers).subList(played, played + trickSizes[t]));
+						}
+						winners[r][t] = random.nextInt(numPlayers);
+						record.trick(leader, winners[r][t], plays);
+						leader = winners[r][t];
+						played += trickSizes[t];
+					}
+					record.finish();
+				}
+			}
+			
+			// Read through a single mapping and through windows small enough for records to cross them
+			for (long window : new long[] {Integer.MAX_VALUE, 300, 301, 333, 517}) {
+				try (GameRecordReader reader = new GameRecordReader(path, window)) {
+					for (int r = 0; r < numRounds; r++) {
+						assertTrue(reader.next());
+						boolean odd = r % 2 == 1;
+						assertEquals(100 + r, reader.getSeed());
+						assertEquals(r, reader.getRound());
+						assertEquals(numPlayers, reader.getNumPlayers());
+						assertEquals(numDecks, reader.getNumDecks());
+						assertEquals(handSize, reader.getHandSize());
+						assertEquals(kitties.get(r).size(), reader.getKittySize());
+						for (int p = 0; p < numPlayers; p++) {
+							for (int i = 0; i < handSize; i++) {
+								assertEquals(hands.get(r).get(p).get(i).getId(), reader.getDealtCard(p, i));
+							}
+						}
+						for (int i = 0; i < reader.getKittySize(); i++) {
+							assertEquals(kitties.get(r).get(i).getId(), reader.getDealtKittyCard(i));
+							assertEquals(buried.get(r).get(i).getId(), reader.getBuriedKittyCard(i));
+						}
+						assertEquals(r % numPlayers, reader.getHost());
+						assertEquals(odd ? null : Suit.HEARTS, reader.getTrumpSuit());
+						assertEquals(Rank.values()[r], reader.getTrumpRank());
+						assertEquals(odd ? -1 : new Card(Suit.SPADES, Rank.ACE).getId(), reader.getPartnerCard());
+						assertEquals(odd ? 0 : 2, reader.getPartnerInstance());
+						
+						assertEquals(trickSizes.length, reader.getNumTricks());
+						int leader = r % numPlayers;
+						int played = 0;
+						CardHand play = new CardHand(numDecks);
+						for (int t = 0; t < trickSizes.length; t++) {
+							assertEquals(leader, reader.getTrickLeader(t));
+							assertEquals(winners[r][t], reader.getTrickWinner(t));
+							assertEquals(trickSizes[t], reader.getPlaySize(t));
+							for (int i = 0; i < numPlayers; i++) {
+								List<Card> expected = hands.get(r).get((leader + i) % numPlayers).subList(played, played + trickSizes[t]);
+								for (int c = 0; c < trickSizes[t]; c++) {
+									assertEquals(expected.get(c).getId(), reader.getPlayCard(t, i, c));
+								}
+								reader.getPlay(t, i, play);
+								assertEquals(CardHand.fromCards(expected, numDecks), play);
+							}
+							leader = winners[r][t];
+							played += trickSizes[t];
+						}
+					}
+					assertFalse(reader.next());
+				}
+			}
+			
+			// A record cut short is reported rather than read past the end of the file
+			byte[] bytes = Files.readAllBytes(path);
+			Files.write(path, Arrays.copyOf(bytes, bytes.length - 1));
+			try (GameRecordReader reader = new GameRecordReader(path)) {
+				for (int r = 0; r < numRounds - 1; r++) {
+					assertTrue(reader.next());
+				}
+				reader.next();
+				fail("Read a truncated record");
+			} catch (IOException e) {
+				// Expected
+			}
+			
+			// Files of another version are rejected
+			bytes[7]++;
+			Files.write(path, bytes);
+			try {
+				new GameRecordReader(path).close();
+				fail("Read a file of version " + (GameRecordWriter.VERSION + 1));
+			} catch (IOException e) {
+				// Expected
+			}
+		} finally {
+			Files.delete(path);
+		}
+	}
+	
+	@Test
+	public void latencyBucketTest() {
+		// Values below 16 each have their own bucket
+		for (long nanos = 0; nanos < 2 * LatencyHistogram.SUB_BUCKETS; nanos++) {
+			assertEquals(nanos, LatencyHistogram.bucket(nanos));
+			assertEquals(nanos, LatencyHistogram.upperBound(LatencyHistogram.bucket(nanos)));
+		}
+		assertEquals(16, LatencyHistogram.bucket(17));
+		assertEquals(17, LatencyHistogram.upperBound(16));
+		int last = LatencyHistogram.NUM_BUCKETS - 1;
+		assertEquals(last, LatencyHistogram.bucket(Long.MAX_VALUE));
+		assertEquals(Long.MAX_VALUE, LatencyHistogram.upperBound(last));
+		
+		// Buckets are contiguous, and each is at most 1/8 as wide as the values in it
+		for (int bucket = 1; bucket <= last; bucket++) {
+			long lower = LatencyHistogram.upperBound(bucket - 1) + 1;
+			long upper = LatencyHistogram.upperBound(bucket);
+			assertEquals(bucket, LatencyHistogram.bucket(lower));
+			assertEquals(bucket, LatencyHistogram.bucket(upper));
+			assertTrue(upper - lower <= lower / LatencyHistogram.SUB_BUCKETS);
+		}
+	}
+	
+	@Test
+	public void latencyPercentileTest() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		int n = 100000;
+		for (int i = 1; i <= n; i++) {
+			histogram.record(i * 37L);
+		}
+		assertEquals(n, histogram.getCount());
+		assertEquals(n * 37L, histogram.getMaxNanos());
+		for (double fraction : new double[] {0.01, 0.5, 0.9, 0.99, 0.999}) {
+			long exact = (long) Math.ceil(fraction * n) * 37;
+			long percentile = histogram.getPercentileNanos(fraction);
+			assertTrue(percentile >= exact);
+			assertTrue(percentile <= exact + exact / LatencyHistogram.SUB_BUCKETS);
+		}
+		assertEquals(n * 37L, histogram.getPercentileNanos(1));
+		assertEquals(0, new LatencyHistogram().getPercentileNanos(0.5));
+	}
+	
+	@Test
+	public void latencyConcurrencyTest() throws InterruptedException {
+		LatencyHistogram histogram = new LatencyHistogram();
+		int numThreads = 8;
+		int perThread = 100000;
+		Thread[] threads = new Thread[numThreads];
+		for (int t = 0; t < numThreads; t++) {
+			long offset = t;
+			threads[t] = new Thread(() -> {
+				for (int i = 0; i < perThread; i++) {
+					histogram.record(i * numThreads + offset);
+				}
+			});
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		// Every value from 0 to n - 1 was recorded exactly once
+		long n = (long) numThreads * perThread;
+		assertEquals(n, histogram.getCount());
+		assertEquals(n * (n - 1) / 2, histogram.getTotalNanos());
+		assertEquals(n - 1, histogram.getMaxNanos());
+		long median = histogram.getPercentileNanos(0.5);
+		assertTrue(median >= n / 2 - 1);
+		assertTrue(median <= n / 2 - 1 + (n / 2 - 1) / LatencyHistogram.SUB_BUCKETS);
+	}
+	
+	@Test
+	public void batchReproducibleTest() {
+		// Each round is seeded from its index alone, so the thread count does not change the results
+		SimulationStats single = new BatchSimulation(60, 4, 1, 21).run();
+		SimulationStats parallel = new BatchSimulation(60, 4, 4, 21).run();
+		assertEquals(60, single.getNumRounds());
+		assertEquals(single, parallel);
+		assertNotEquals(single, new BatchSimulation(60, 4, 4, 22).run());
+	}
+}
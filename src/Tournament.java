@@ -0,0 +1,191 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * Round-robin tournament between player implementations.  Every pair of entrants plays a match of
+ * duplicate deals:  each deal is played once per seating of the two entrants, with the same seed, so
+ * the luck of the cards cancels out.  Deals are spread over a thread pool in fixed-size batches, and a
+ * match stops after the batch in which its sequential test reaches a decision, or after maxDeals.
+ * Results depend only on the seed, not on the number of threads.
+ */
+public class Tournament {
+
+	// Deals played between checks of a match's sequential test
+	private static final int DEALS_PER_BATCH = 32;
+
+	/**
+	 * Container class for a named player implementation
+	 */
+	public static class Entrant {
+		private final String name;
+		private final PlayerFactory factory;
+
+		public Entrant(String name, PlayerFactory factory) {
+			this.name = name;
+			this.factory = factory;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public PlayerFactory getFactory() {
+			return factory;
+		}
+	}
+
+	private final List<Entrant> entrants;
+	private final int numPlayers;
+	private final int maxDeals;
+	private final int numThreads;
+	private final long seed;
+	// For each seating, whether the first entrant of a match sits in each seat
+	private List<boolean[]> seatings;
+	// Called with the current results of a match after each batch of deals, or null
+	private Consumer<MatchStats> listener;
+	// Deals played by every match, by deal index, or null to shuffle from the seed
+	private DealBank dealBank;
+
+	/**
+	 * @param entrants
+	 * @param numPlayers
+	 * @param maxDeals Most deals played in a match that stays undecided
+	 * @param numThreads
+	 * @param seed
+	 */
+	public Tournament(List<Entrant> entrants, int numPlayers, int maxDeals, int numThreads, long seed) {
+		this.entrants = entrants;
+		this.numPlayers = numPlayers;
+		this.maxDeals = maxDeals;
+		this.numThreads = numThreads;
+		this.seed = seed;
+
+		// By default, alternate the entrants around the table, then swap them
+		boolean[] alternating = new boolean[numPlayers];
+		boolean[] swapped = new boolean[numPlayers];
+		for (int i = 0; i < numPlayers; i++) {
+			alternating[i] = i % 2 == 0;
+			swapped[i] = !alternating[i];
+		}
+		seatings = new ArrayList<>();
+		seatings.add(alternating);
+		seatings.add(swapped);
+	}
+
+	/**
+	 * Sets the seatings each deal is played with.  Each seating must give at least one seat to each
+	 * entrant, and should be accompanied by its complement so that neither entrant is favoured.
+	 * @param seatings For each seating, whether the first entrant sits in each seat
+	 */
+	public void setSeatings(List<boolean[]> seatings) {
+		this.seatings = seatings;
+	}
+
+	public void setListener(Consumer<MatchStats> listener) {
+		this.listener = listener;
+	}
+	
+	/**
+	 * Sets the bank that deal i of every match is taken from, or null to shuffle.  The bank must hold 
+	 * at least maxDeals deals of (numPlayers + 1) / 2 decks.
+	 * @param dealBank
+	 */
+	public void setDealBank(DealBank dealBank) {
+		int numDecks = (numPlayers + 1) / 2;
+		if (dealBank != null && dealBank.getNumDecks() != numDecks) {
+			throw new IllegalArgumentException("Deal bank has " + dealBank.getNumDecks() + " decks, tournament uses " + numDecks);
+		}
+		if (dealBank != null && dealBank.getNumDeals() < maxDeals) {
+			throw new IllegalArgumentException("Deal bank holds " + dealBank.getNumDeals() + " deals, tournament needs " + maxDeals);
+		}
+		this.dealBank = dealBank;
+	}
+
+	/**
+	 * Plays a match between every pair of entrants, blocking until all are finished.
+	 * @return The results of each match
+	 */
+	public List<MatchStats> run() {
+		ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+		try {
+			List<MatchStats> results = new ArrayList<>();
+			for (int i = 0; i < entrants.size(); i++) {
+				for (int j = i + 1; j < entrants.size(); j++) {
+					results.add(playMatch(entrants.get(i), entrants.get(j), pool));
+				}
+			}
+			return results;
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Plays deals between two entrants until the sequential test decides or maxDeals are played.
+	 * Every match uses the same sequence of deals.
+	 */
+	private MatchStats playMatch(Entrant first, Entrant second, ExecutorService pool) {
+		MatchStats stats = new MatchStats(first.getName(), second.getName());
+		int dealIndex = 0;
+		while (dealIndex < maxDeals && stats.getDecision() == MatchStats.Decision.UNDECIDED) {
+			List<Future<Double>> batch = new ArrayList<>();
+			for (int i = 0; i < DEALS_PER_BATCH && dealIndex < maxDeals; i++, dealIndex++) {
+				long deal = dealIndex;
+				batch.add(pool.submit(() -> playDeal(first, second, deal)));
+			}
+			for (Future<Double> deal : batch) {
+				try {
+					stats.add(deal.get());
+				} catch (InterruptedException | ExecutionException e) {
+					throw new IllegalStateException("Deal failed", e);
+				}
+			}
+			if (listener != null) listener.accept(stats);
+		}
+		return stats;
+	}
+
+	/**
+	 * Plays one deal with every seating.  Teams are set by the host and the called partner rather than
+	 * by seating, so each seat scores its side's result:  the attackers' points over the threshold they
+	 * need to win for an attacker, and the negation for a seat on the host's team.  Measuring against
+	 * the threshold keeps hosting, which declaring trump decides, from counting as a loss in itself.
+	 * @return The average score per seat of the first entrant minus that of the second, averaged
+	 *         over the seatings
+	 */
+	private double playDeal(Entrant first, Entrant second, long deal) {
+		long dealSeed = BatchSimulation.roundSeed(seed, deal);
+		double diff = 0;
+		for (boolean[] seating : seatings) {
+			List<PlayerFactory> lineup = new ArrayList<>();
+			for (int i = 0; i < numPlayers; i++) {
+				lineup.add(seating[i] ? first.getFactory() : second.getFactory());
+			}
+			GameEngine engine = new GameEngine(lineup, dealSeed);
+			engine.setVerbose(false);
+			engine.setDealBank(dealBank, deal);
+			RoundResult result = engine.start();
+
+			int margin = result.getAttackerPoints() - GameRules.getAttackerThreshold((numPlayers + 1) / 2);
+			int firstScore = 0;
+			int firstSeats = 0;
+			int secondScore = 0;
+			for (int i = 0; i < numPlayers; i++) {
+				int score = result.isHostTeam(i) ? -margin : margin;
+				if (seating[i]) {
+					firstScore += score;
+					firstSeats++;
+				} else {
+					secondScore += score;
+				}
+			}
+			diff += (double) firstScore / firstSeats - (double) secondScore / (numPlayers - firstSeats);
+		}
+		return diff / seatings.size();
+	}
+}
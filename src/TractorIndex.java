@@ -0,0 +1,288 @@
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * The pairs, triples and tractors of a hand for each effective suit, updated one card at a time as
+ * cards are dealt or played.  Each update touches only the counters of its card's suit and rank, and
+ * queries read a few counters, finding the longest run of ranks again only after it has changed.  Players
+ * can keep an index of their hand for the whole round instead of partitioning the hand into straights
+ * at every decision.
+ *
+ * A group of multiplicity k is k copies of one card, and a tractor of multiplicity k is a run of
+ * groups of consecutive ranks, as {@link HandStraights} finds them.  Tractors of one group are
+ * counted, so the longest tractor of multiplicity 2 is 1 for a hand with pairs but no two consecutive.
+ */
+public class TractorIndex {
+
+	private static final int NUM_SUITS = Suit.values().length;
+	private static final int NUM_RANKS = Rank.values().length;
+	// A random key of each card id, summed over the hand to tell whether the index matches a hand
+	private static final long[] CARD_KEYS = new long[CardHand.NUM_IDS];
+
+	static {
+		SplittableRandom random = new SplittableRandom(0x54524143544F5253L);
+		for (int id = 0; id < CardHand.NUM_IDS; id++) {
+			CARD_KEYS[id] = random.nextLong();
+		}
+	}
+
+	private final int numDecks;
+	private TrumpOrder order;
+	// Copies of each card id in the hand
+	private final int[] counts = new int[CardHand.NUM_IDS];
+	private int size;
+	private long fingerprint;
+	// By suit and rank, then multiplicity k:  the number of ids with at least k copies
+	private final int[] rankIds;
+	// By suit, then multiplicity k:  a bit for each rank with a card of at least k copies, the number
+	// of ids with at least k copies, and the start and length of the longest run of ranks
+	private final int[] rankBits;
+	private final int[] atLeast;
+	private final int[] longestStart;
+	private final int[] longestLength;
+	// Bit i is set if the longest run of slot i must be found again, which is left until it is asked for
+	private long stale;
+
+	/**
+	 * Creates an index of an empty hand.
+	 * @param numDecks
+	 * @param order The trump of the round so far
+	 */
+	public TractorIndex(int numDecks, TrumpOrder order) {
+		this.numDecks = numDecks;
+		this.order = order;
+		rankIds = new int[NUM_SUITS * NUM_RANKS * (numDecks + 1)];
+		rankBits = new int[NUM_SUITS * (numDecks + 1)];
+		atLeast = new int[rankBits.length];
+		longestStart = new int[rankBits.length];
+		longestLength = new int[rankBits.length];
+	}
+
+	/**
+	 * Replaces the contents of the index with the given hand.
+	 * @param hand
+	 * @param order
+	 */
+	public void reset(List<Card> hand, TrumpOrder order) {
+		this.order = order;
+		Arrays.fill(counts, 0);
+		Arrays.fill(rankIds, 0);
+		Arrays.fill(rankBits, 0);
+		Arrays.fill(atLeast, 0);
+		stale = -1;
+		size = 0;
+		fingerprint = 0;
+		for (int i = 0; i < hand.size(); i++) {
+			add(hand.get(i));
+		}
+	}
+
+	/**
+	 * Changes the trump, such as when trump is declared while drawing, and re-indexes the hand by the
+	 * new effective suits and ranks.
+	 * @param order
+	 */
+	public void setOrder(TrumpOrder order) {
+		this.order = order;
+		Arrays.fill(rankIds, 0);
+		Arrays.fill(rankBits, 0);
+		Arrays.fill(atLeast, 0);
+		stale = -1;
+		for (int id = 0; id < CardHand.NUM_IDS; id++) {
+			for (int k = 1; k <= counts[id]; k++) {
+				addCopy(id, k);
+			}
+		}
+	}
+
+	public TrumpOrder getOrder() {
+		return order;
+	}
+
+	public void add(Card card) {
+		int id = card.getId();
+		counts[id]++;
+		size++;
+		fingerprint += CARD_KEYS[id];
+		addCopy(id, counts[id]);
+	}
+
+	public void remove(Card card) {
+		int id = card.getId();
+		removeCopy(id, counts[id]);
+		counts[id]--;
+		size--;
+		fingerprint -= CARD_KEYS[id];
+	}
+
+	/**
+	 * Removes every card of a play.
+	 * @param cards
+	 */
+	public void removeAll(List<Card> cards) {
+		for (int i = 0; i < cards.size(); i++) {
+			remove(cards.get(i));
+		}
+	}
+
+	/**
+	 * Updates the suit of the card for its k-th copy having been added.
+	 */
+	private void addCopy(int id, int k) {
+		int suit = order.getSuit(id).ordinal();
+		int rank = order.getRank(id).ordinal();
+		int slot = suit * (numDecks + 1) + k;
+		atLeast[slot]++;
+		if (rankIds[(suit * NUM_RANKS + rank) * (numDecks + 1) + k]++ == 0) {
+			rankBits[slot] |= 1 << rank;
+			stale |= 1L << slot;
+		}
+	}
+
+	/**
+	 * Updates the suit of the card for its k-th copy being removed.
+	 */
+	private void removeCopy(int id, int k) {
+		int suit = order.getSuit(id).ordinal();
+		int rank = order.getRank(id).ordinal();
+		int slot = suit * (numDecks + 1) + k;
+		atLeast[slot]--;
+		if (--rankIds[(suit * NUM_RANKS + rank) * (numDecks + 1) + k] == 0) {
+			rankBits[slot] &= ~(1 << rank);
+			stale |= 1L << slot;
+		}
+	}
+
+	/**
+	 * Finds the longest run of ranks of a suit and multiplicity, taking the lowest of equal runs.
+	 */
+	private void updateLongest(int slot) {
+		stale &= ~(1L << slot);
+		int start = 0;
+		int length = 0;
+		for (int bits = rankBits[slot]; bits != 0;) {
+			int low = Integer.numberOfTrailingZeros(bits);
+			int run = Integer.numberOfTrailingZeros(~(bits >>> low));
+			if (run > length) {
+				start = low;
+				length = run;
+			}
+			bits &= ~0 << low + run;
+		}
+		longestStart[slot] = start;
+		longestLength[slot] = length;
+	}
+
+	/**
+	 * Returns the number of cards in the hand
+	 * @return
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the number of copies of the card with the given id in the hand
+	 * @param id
+	 * @return
+	 */
+	public int getCount(int id) {
+		return counts[id];
+	}
+
+	/**
+	 * Returns whether the index holds exactly the cards of the given hand, with near certainty.  Takes
+	 * time linear in the size of the hand, but never allocates.
+	 * @param hand
+	 * @return
+	 */
+	public boolean matches(List<Card> hand) {
+		if (hand.size() != size) return false;
+		long key = 0;
+		for (int i = 0; i < hand.size(); i++) {
+			key += CARD_KEYS[hand.get(i).getId()];
+		}
+		return key == fingerprint;
+	}
+
+	/**
+	 * Returns the number of disjoint groups of multiplicity identical cards of the given suit, as
+	 * {@link HandStraights#countGroups(Suit, int)} does
+	 * @param suit
+	 * @param multiplicity Between 1 and the number of decks
+	 * @return
+	 */
+	public int countGroups(Suit suit, int multiplicity) {
+		// A card with c copies makes one group for each multiple of the multiplicity up to c
+		int groups = 0;
+		for (int k = multiplicity; k <= numDecks; k += multiplicity) {
+			groups += atLeast[suit.ordinal() * (numDecks + 1) + k];
+		}
+		return groups;
+	}
+
+	/**
+	 * Returns the number of groups in the longest tractor of the given suit and multiplicity, or 0 if
+	 * there is no group of that multiplicity
+	 * @param suit
+	 * @param multiplicity Between 1 and the number of decks
+	 * @return
+	 */
+	public int getLongestTractor(Suit suit, int multiplicity) {
+		int slot = suit.ordinal() * (numDecks + 1) + multiplicity;
+		if ((stale >>> slot & 1) != 0) updateLongest(slot);
+		return longestLength[slot];
+	}
+
+	/**
+	 * Returns the rank ordinal of the lowest group of the longest tractor of the given suit and
+	 * multiplicity, taking the lowest of tractors of equal length
+	 * @param suit
+	 * @param multiplicity Between 1 and the number of decks
+	 * @return
+	 */
+	public int getLongestTractorStart(Suit suit, int multiplicity) {
+		int slot = suit.ordinal() * (numDecks + 1) + multiplicity;
+		if ((stale >>> slot & 1) != 0) updateLongest(slot);
+		return longestStart[slot];
+	}
+
+	/**
+	 * Selects the cards of the longest tractor of the given suit and multiplicity from the indexed hand,
+	 * choosing the same cards as the first straight of that length found by
+	 * {@link HandStraights#getStraights(Suit, int)}:  the lowest id at each rank with enough copies, and
+	 * its first copies in the hand.
+	 * @param hand The indexed hand
+	 * @param suit
+	 * @param multiplicity Between 1 and the number of decks
+	 * @return A {@link CardSelection} of the tractor, or NONE if there is none
+	 */
+	public long selectLongestTractor(List<Card> hand, Suit suit, int multiplicity) {
+		int start = getLongestTractorStart(suit, multiplicity);
+		int end = start + getLongestTractor(suit, multiplicity);
+		// The ids of the tractor, then copies of each taken in hand order
+		long ids = 0;
+		int[] suitIds = order.getSuitIds(suit);
+		int lastRank = -1;
+		for (int i = 0; i < suitIds.length; i++) {
+			int id = suitIds[i];
+			int rank = order.getRank(id).ordinal();
+			if (rank < start || rank == lastRank || counts[id] < multiplicity) continue;
+			if (rank >= end) break;
+			ids |= 1L << id;
+			lastRank = rank;
+		}
+		long selection = CardSelection.NONE;
+		for (long bits = ids; bits != 0; bits &= bits - 1) {
+			int id = Long.numberOfTrailingZeros(bits);
+			for (int i = 0, taken = 0; taken < multiplicity; i++) {
+				if (hand.get(i).getId() == id) {
+					selection = CardSelection.with(selection, i);
+					taken++;
+				}
+			}
+		}
+		return selection;
+	}
+}
@@ -0,0 +1,160 @@
+import java.util.Comparator;
+
+/**
+ * Immutable description of how every card plays for a given trump suit and trump rank.  Each card id
+ * maps to its effective suit and rank as well as a single power key, so that trump lookups are array
+ * reads and Card objects never need to be modified.  One shared instance exists per trump setting.
+ *
+ * As a comparator, orders cards by suit and rank (not base suit and base rank), giving an absolute
+ * ordering that places all trump above non-trump.  Used for displaying and sorting cards.
+ */
+public class TrumpOrder implements Comparator<Card> {
+
+	private static final int NUM_IDS = 54;
+	private static final int NUM_RANKS = Rank.values().length;
+	// ORDERS[trumpSuit][trumpRank], where a trump suit of TRUMP means no trump suit
+	private static final TrumpOrder[][] ORDERS = new TrumpOrder[Suit.values().length][Rank.ACE.ordinal() + 1];
+
+	static {
+		for (Suit suit : Suit.values()) {
+			for (int r = 0; r <= Rank.ACE.ordinal(); r++) {
+				ORDERS[suit.ordinal()][r] = new TrumpOrder(suit == Suit.TRUMP ? null : suit, Rank.values()[r]);
+			}
+		}
+	}
+
+	private final Suit trumpSuit;
+	private final Rank trumpRank;
+	private final Suit[] suits = new Suit[NUM_IDS];
+	private final Rank[] ranks = new Rank[NUM_IDS];
+	private final int[] powers = new int[NUM_IDS];
+	private final long[] suitMasks = new long[Suit.values().length];
+	// The ids of each suit in increasing order of rank, then id
+	private final int[][] suitIds = new int[Suit.values().length][];
+
+	private TrumpOrder(Suit trumpSuit, Rank trumpRank) {
+		this.trumpSuit = trumpSuit;
+		this.trumpRank = trumpRank;
+		for (int id = 0; id < NUM_IDS; id++) {
+			Card c = Card.of(id);
+			Suit suit;
+			Rank rank;
+			if (c.isJoker()) {
+				suit = Suit.TRUMP;
+				rank = c.getBaseRank();
+			} else if (c.getBaseRank() == trumpRank) {
+				suit = Suit.TRUMP;
+				rank = (c.getBaseSuit() == trumpSuit) ? Rank.SUITED_NUMBER : Rank.NUMBER;
+			} else {
+				suit = (c.getBaseSuit() == trumpSuit) ? Suit.TRUMP : c.getBaseSuit();
+				rank = c.getBaseRank();
+			}
+			suits[id] = suit;
+			ranks[id] = rank;
+			powers[id] = suit.ordinal() * NUM_RANKS + rank.ordinal();
+			suitMasks[suit.ordinal()] |= 1L << id;
+		}
+		
+		for (Suit suit : Suit.values()) {
+			suitIds[suit.ordinal()] = new int[Long.bitCount(suitMasks[suit.ordinal()])];
+			int n = 0;
+			for (int power = suit.ordinal() * NUM_RANKS; power < (suit.ordinal() + 1) * NUM_RANKS; power++) {
+				for (int id = 0; id < NUM_IDS; id++) {
+					if (powers[id] == power) suitIds[suit.ordinal()][n++] = id;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the shared ordering for the given trump.
+	 * @param trumpSuit Null if no trump
+	 * @param trumpRank 2 through A only
+	 * @return
+	 */
+	public static TrumpOrder of(Suit trumpSuit, Rank trumpRank) {
+		return ORDERS[trumpSuit == null ? Suit.TRUMP.ordinal() : trumpSuit.ordinal()][trumpRank.ordinal()];
+	}
+
+	/**
+	 * Null if no trump
+	 * @return
+	 */
+	public Suit getTrumpSuit() {
+		return trumpSuit;
+	}
+
+	public Rank getTrumpRank() {
+		return trumpRank;
+	}
+
+	/**
+	 * The suit, for the purposes of playing (includes trump)
+	 */
+	public Suit getSuit(int id) {
+		return suits[id];
+	}
+
+	public Suit getSuit(Card card) {
+		return suits[card.getId()];
+	}
+
+	/**
+	 * The rank, for the purposes of playing (reorders to account for trump)
+	 */
+	public Rank getRank(int id) {
+		return ranks[id];
+	}
+
+	public Rank getRank(Card card) {
+		return ranks[card.getId()];
+	}
+
+	/**
+	 * Returns a key that orders cards by effective suit and then effective rank.  Within a suit, a card
+	 * with higher power beats one with lower power, and every trump has more power than every non-trump.
+	 * Cards of equal strength (such as offsuit trump numbers) have equal power.
+	 */
+	public int getPower(int id) {
+		return powers[id];
+	}
+
+	public int getPower(Card card) {
+		return powers[card.getId()];
+	}
+
+	public boolean isTrump(int id) {
+		return suits[id] == Suit.TRUMP;
+	}
+
+	public boolean isTrump(Card card) {
+		return suits[card.getId()] == Suit.TRUMP;
+	}
+
+	/**
+	 * Returns the mask of card ids that play as the given suit.
+	 * @param suit
+	 * @return
+	 */
+	public long getSuitMask(Suit suit) {
+		return suitMasks[suit.ordinal()];
+	}
+
+	/**
+	 * Returns the ids of the cards that play as the given suit, in increasing order of rank and then id.
+	 * The returned array is shared and must not be modified.
+	 * @param suit
+	 * @return
+	 */
+	public int[] getSuitIds(Suit suit) {
+		return suitIds[suit.ordinal()];
+	}
+
+	@Override
+	public int compare(Card a, Card b) {
+		int dif = powers[a.getId()] - powers[b.getId()];
+		if (dif != 0) return dif;
+		// Differentiate between offsuit trumps
+		return a.getId() - b.getId();
+	}
+}